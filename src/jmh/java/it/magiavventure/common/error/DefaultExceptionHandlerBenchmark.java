@@ -0,0 +1,133 @@
+package it.magiavventure.common.error;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.magiavventure.common.configuration.CommonProperties;
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties;
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
+import it.magiavventure.common.error.handler.DefaultExceptionHandler;
+import it.magiavventure.common.error.handler.ErrorResponseRenderer;
+import it.magiavventure.common.error.handler.ExceptionLogSuppressor;
+import it.magiavventure.common.mapper.HttpErrorMapper;
+import it.magiavventure.common.metrics.CommonMetrics;
+import it.magiavventure.common.model.HttpError;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.FieldError;
+import org.springframework.web.HttpRequestMethodNotSupportedException;
+import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.web.servlet.NoHandlerFoundException;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DefaultExceptionHandlerBenchmark {
+
+    private DefaultExceptionHandler defaultExceptionHandler;
+    private MagiavventureException expectedException;
+    private MagiavventureException exceptionWithArgs;
+    private HttpRequestMethodNotSupportedException clientException;
+    private NoHandlerFoundException noHandlerFoundException;
+    private MethodArgumentNotValidException methodArgumentNotValidException;
+    private IllegalStateException defaultException;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        CommonProperties commonProperties = BenchmarkCatalog.commonProperties();
+        HttpErrorMapper httpErrorMapper = Mappers.getMapper(HttpErrorMapper.class);
+        ErrorCatalogHolder errorCatalogHolder = new ErrorCatalogHolder(
+                commonProperties.getErrors().retrieveErrorCatalog());
+        defaultExceptionHandler = new DefaultExceptionHandler(errorCatalogHolder, httpErrorMapper, CommonMetrics.NOOP,
+                new ErrorResponseRenderer(errorCatalogHolder, httpErrorMapper, new ObjectMapper()),
+                new ExceptionLogSuppressor(Duration.ofMinutes(1), 5, 1024));
+        expectedException = errorCatalogHolder.exception(MagiavventureException.NOT_FOUND);
+        exceptionWithArgs = errorCatalogHolder.exception("user-exists", "prova");
+        clientException = new HttpRequestMethodNotSupportedException("PATCH");
+        noHandlerFoundException = new NoHandlerFoundException("GET", "/missing", HttpHeaders.EMPTY);
+        BeanPropertyBindingResult bindingResult = new BeanPropertyBindingResult(new Object(), "user");
+        bindingResult.addError(new FieldError("user", "name", "must not be blank"));
+        methodArgumentNotValidException = new MethodArgumentNotValidException(
+                new MethodParameter(Object.class.getMethod("equals", Object.class), 0), bindingResult);
+        defaultException = new IllegalStateException("downstream unavailable");
+    }
+
+    @Benchmark
+    public ResponseEntity<HttpError> handleExpectedException() {
+        return defaultExceptionHandler.handleException(expectedException);
+    }
+
+    @Benchmark
+    public ResponseEntity<HttpError> handleExceptionWithArgs() {
+        return defaultExceptionHandler.handleException(exceptionWithArgs);
+    }
+
+    @Benchmark
+    public ResponseEntity<HttpError> handleClientException() {
+        return defaultExceptionHandler.handleClientException(clientException);
+    }
+
+    @Benchmark
+    public ResponseEntity<HttpError> handleNoHandlerException() {
+        return defaultExceptionHandler.handleNoHandlerException(noHandlerFoundException);
+    }
+
+    @Benchmark
+    public ResponseEntity<HttpError> handleMethodArgumentNotValid() {
+        return defaultExceptionHandler.handleMethodArgumentNotValid(methodArgumentNotValidException);
+    }
+
+    @Benchmark
+    public ResponseEntity<HttpError> handleDefaultException() {
+        return defaultExceptionHandler.handleDefaultException(defaultException);
+    }
+
+    static final class BenchmarkCatalog {
+
+        private BenchmarkCatalog() {
+        }
+
+        static CommonProperties commonProperties() {
+            Map<String, ErrorMessage> errorsMessages = new HashMap<>();
+            errorsMessages.put("unknown-error", errorMessage("unknown-error", 500, "Si è verificato un errore", false));
+            errorsMessages.put("not-found", errorMessage("not-found", 404, "Si è verificato un errore", true));
+            errorsMessages.put("bad-request", errorMessage("bad-request", 400, "Si è verificato un errore", true));
+            errorsMessages.put("validation-error",
+                    errorMessage("validation-error", 400, "Si è verificato un errore", true));
+            errorsMessages.put("service-unavailable",
+                    errorMessage("service-unavailable", 503, "Si è verificato un errore", false));
+            errorsMessages.put("user-exists", errorMessage("user-exists", 403, "il nome '%s' non è disponibile", true));
+            ErrorsProperties errorsProperties = new ErrorsProperties();
+            errorsProperties.setErrorsMessages(errorsMessages);
+            errorsProperties.setServiceErrorsMessages(Map.of(
+                    "user-not-found", errorMessage("user-not-found", 404, "Utente non trovato", true)));
+            CommonProperties commonProperties = new CommonProperties();
+            commonProperties.setErrors(errorsProperties);
+            return commonProperties;
+        }
+
+        private static ErrorMessage errorMessage(String code, int status, String message, boolean expected) {
+            return ErrorMessage
+                    .builder()
+                    .code(code)
+                    .status(status)
+                    .message(message)
+                    .description(code)
+                    .expected(expected)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package it.magiavventure.common.error;
+
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties;
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ErrorCatalogBenchmark {
+
+    private ErrorsProperties errorsProperties;
+    private ErrorCatalogHolder errorCatalogHolder;
+
+    @Setup
+    public void setUp() {
+        errorsProperties = DefaultExceptionHandlerBenchmark.BenchmarkCatalog.commonProperties().getErrors();
+        errorCatalogHolder = new ErrorCatalogHolder(errorsProperties.retrieveErrorCatalog());
+    }
+
+    @Benchmark
+    public Map<String, ErrorMessage> retrieveErrorsMessages() {
+        return errorsProperties.retrieveErrorsMessages();
+    }
+
+    @Benchmark
+    public ErrorMessage retrieveKnownKey() {
+        return errorsProperties.retrieveErrorCatalog().retrieve("user-not-found");
+    }
+
+    @Benchmark
+    public ErrorMessage retrieveUnknownKey() {
+        return errorsProperties.retrieveErrorCatalog().retrieve("error-not-exists");
+    }
+
+    @Benchmark
+    public MagiavventureException createExpectedException() {
+        return errorCatalogHolder.exception(MagiavventureException.NOT_FOUND);
+    }
+
+    @Benchmark
+    public MagiavventureException createExpectedExceptionWithArgs() {
+        return errorCatalogHolder.exception("user-exists", "prova");
+    }
+
+    @Benchmark
+    public MagiavventureException createUnexpectedException() {
+        return errorCatalogHolder.exception(MagiavventureException.SERVICE_UNAVAILABLE);
+    }
+}
@@ -0,0 +1,72 @@
+package it.magiavventure.common.filter;
+
+import it.magiavventure.common.logging.JsonLogEncoder;
+import it.magiavventure.common.logging.LoggingPolicy;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RequestResponseLoggingFilterBenchmark {
+
+    @Param({"0", "1024", "65536"})
+    private int bodySize;
+
+    private RequestResponseLoggingFilter filter;
+    private byte[] body;
+    private FilterChain filterChain;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @Setup(Level.Trial)
+    public void setUpTrial(Blackhole blackhole) {
+        JsonLogEncoder jsonLogEncoder = new JsonLogEncoder();
+        filter = new RequestResponseLoggingFilter(logRecord -> blackhole.consume(jsonLogEncoder.encode(logRecord)),
+                LoggingPolicy.DEFAULT);
+        body = jsonBody(bodySize);
+        filterChain = (servletRequest, servletResponse) -> {
+            blackhole.consume(servletRequest.getInputStream().readAllBytes());
+            servletResponse.setContentType("application/json");
+            servletResponse.getOutputStream().write(body);
+        };
+        request = new MockHttpServletRequest("POST", "/users");
+        request.addHeader("Content-Type", "application/json");
+        request.addHeader("transactionId", "0190f6b4-2b7e-7d2a-9c1e-5b8f0a6d3e21");
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse doFilter() throws ServletException, IOException {
+        // a new input stream over the body, and an empty response committed again by the large bodies
+        request.setContent(body);
+        response.setCommitted(false);
+        response.reset();
+        filter.doFilter(request, response, filterChain);
+        return response;
+    }
+
+    static byte[] jsonBody(int size) {
+        if (size == 0) return new byte[0];
+        char[] value = new char[Math.max(0, size - 12)];
+        Arrays.fill(value, 'x');
+        return ("{\"value\":\"" + new String(value) + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+}
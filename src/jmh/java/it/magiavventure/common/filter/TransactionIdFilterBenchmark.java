@@ -0,0 +1,48 @@
+package it.magiavventure.common.filter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TransactionIdFilterBenchmark {
+
+    @Param({"false", "true"})
+    private boolean withHeader;
+
+    private final TransactionIdFilter filter = new TransactionIdFilter();
+    private final FilterChain filterChain = (servletRequest, servletResponse) -> { };
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        request = new MockHttpServletRequest("GET", "/users");
+        if (withHeader) request.addHeader("transactionId", "0190f6b4-2b7e-7d2a-9c1e-5b8f0a6d3e21");
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse doFilter() throws ServletException, IOException {
+        // the context kept in the request attributes would skip the resolution on the next call
+        request.clearAttributes();
+        response.reset();
+        filter.doFilter(request, response, filterChain);
+        return response;
+    }
+}
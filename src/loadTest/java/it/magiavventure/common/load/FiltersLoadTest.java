@@ -0,0 +1,169 @@
+package it.magiavventure.common.load;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.IntFunction;
+
+/**
+ * End-to-end load tests of the library filters and exception handler on embedded Tomcat. Two applications are
+ * started, with and without the transaction id and logging filters, and the budgets that gate a release are
+ * relative to the application without filters: share of its throughput kept and bytes allocated per request on
+ * top of it by the request threads. The absolute budgets, which depend on the machine, are checked only with
+ * the {@code loadTest.absoluteBudgets} system property. The whole run is recorded in a JFR file,
+ * {@code build/load-test/load-test.jfr} when run by the {@code loadTest} task.
+ */
+@DisplayName("Filters load tests")
+class FiltersLoadTest {
+
+    private static final int CONCURRENCY = 16;
+    private static final int WARMUP_REQUESTS = 3000;
+    private static final int REQUESTS = 6000;
+    private static final int UPLOAD_REQUESTS = 300;
+    private static final int UPLOAD_SIZE = 1024 * 1024;
+    private static final String SMALL_JSON = "{\"name\":\"prova\",\"password\":\"secret\",\"tags\":[\"a\",\"b\"]}";
+
+    private static final double MIN_THROUGHPUT_RATIO = 0.5;
+    private static final long MAX_FILTERS_BYTES_PER_REQUEST = 16 * 1024;
+
+    private static final boolean ABSOLUTE_BUDGETS = Boolean.getBoolean("loadTest.absoluteBudgets");
+    private static final double MIN_THROUGHPUT = 200;
+    private static final long MAX_JSON_BYTES_PER_REQUEST = 64 * 1024;
+    private static final long MAX_UPLOAD_BYTES_PER_REQUEST = 128 * 1024;
+    private static final long MAX_ERROR_BYTES_PER_REQUEST = 64 * 1024;
+
+    private static ConfigurableApplicationContext withFilters;
+    private static ConfigurableApplicationContext withoutFilters;
+    private static Recording recording;
+    private final LoadDriver loadDriver = new LoadDriver(CONCURRENCY);
+    private final TestReporter testReporter;
+
+    FiltersLoadTest(TestReporter testReporter) {
+        this.testReporter = testReporter;
+    }
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        recording = new Recording(Configuration.getConfiguration("profile"));
+        recording.setName("magiavventure-load-test");
+        recording.start();
+        withFilters = LoadTestApplication.start(true);
+        withoutFilters = LoadTestApplication.start(false);
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        if (withFilters != null) withFilters.close();
+        if (withoutFilters != null) withoutFilters.close();
+        recording.stop();
+        Path jfrFile = Path.of(System.getProperty("loadTest.jfrFile", "build/load-test/load-test.jfr"));
+        Files.createDirectories(jfrFile.toAbsolutePath().getParent());
+        recording.dump(jfrFile);
+        recording.close();
+    }
+
+    @Test
+    @DisplayName("Only the application with filters adds the transaction id")
+    void onlyFilteredApplication_addsTransactionId() throws Exception {
+        var httpClient = HttpClient.newHttpClient();
+        var filtered = httpClient.send(smallJson(withFilters).apply(0), HttpResponse.BodyHandlers.discarding());
+        var baseline = httpClient.send(smallJson(withoutFilters).apply(0), HttpResponse.BodyHandlers.discarding());
+
+        Assertions.assertTrue(filtered.headers().firstValue("transactionId").isPresent());
+        Assertions.assertTrue(baseline.headers().firstValue("transactionId").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Small JSON requests stay within the throughput and allocation budgets")
+    void smallJson_withinBudgets() throws Exception {
+        var filtered = measure("small json with filters", REQUESTS, smallJson(withFilters), 200);
+        var baseline = measure("small json without filters", REQUESTS, smallJson(withoutFilters), 200);
+
+        assertRelativeBudgets(filtered, baseline);
+        if (!ABSOLUTE_BUDGETS) return;
+        Assertions.assertTrue(filtered.throughput() >= MIN_THROUGHPUT, "throughput " + filtered);
+        Assertions.assertTrue(filtered.allocatedBytesPerRequest() <= MAX_JSON_BYTES_PER_REQUEST,
+                "allocations " + filtered);
+    }
+
+    @Test
+    @DisplayName("1 MB uploads are streamed without copying the body")
+    void uploads_withinBudgets() throws Exception {
+        byte[] body = new byte[UPLOAD_SIZE];
+
+        var filtered = measure("1 MB uploads with filters", UPLOAD_REQUESTS, upload(withFilters, body), 200);
+        var baseline = measure("1 MB uploads without filters", UPLOAD_REQUESTS, upload(withoutFilters, body), 200);
+
+        Assertions.assertTrue(filtered.allocatedBytesPerRequest() - baseline.allocatedBytesPerRequest()
+                <= MAX_FILTERS_BYTES_PER_REQUEST, "filters allocations " + filtered + " vs " + baseline);
+        if (!ABSOLUTE_BUDGETS) return;
+        Assertions.assertTrue(filtered.allocatedBytesPerRequest() <= MAX_UPLOAD_BYTES_PER_REQUEST,
+                "allocations " + filtered);
+    }
+
+    @Test
+    @DisplayName("Error storms are handled within the throughput and allocation budgets")
+    void errorStorm_withinBudgets() throws Exception {
+        var filtered = measure("error storm with filters", REQUESTS, fail(withFilters), 503);
+        var baseline = measure("error storm without filters", REQUESTS, fail(withoutFilters), 503);
+
+        assertRelativeBudgets(filtered, baseline);
+        if (!ABSOLUTE_BUDGETS) return;
+        Assertions.assertTrue(filtered.throughput() >= MIN_THROUGHPUT, "throughput " + filtered);
+        Assertions.assertTrue(filtered.allocatedBytesPerRequest() <= MAX_ERROR_BYTES_PER_REQUEST,
+                "allocations " + filtered);
+    }
+
+    private static void assertRelativeBudgets(LoadDriver.Result filtered, LoadDriver.Result baseline) {
+        Assertions.assertTrue(filtered.throughput() >= baseline.throughput() * MIN_THROUGHPUT_RATIO,
+                "throughput " + filtered + " vs " + baseline);
+        Assertions.assertTrue(filtered.allocatedBytesPerRequest() - baseline.allocatedBytesPerRequest()
+                <= MAX_FILTERS_BYTES_PER_REQUEST, "filters allocations " + filtered + " vs " + baseline);
+    }
+
+    private LoadDriver.Result measure(String scenario, int requests, IntFunction<HttpRequest> requestFactory,
+                                      int expectedStatus) throws Exception {
+        loadDriver.run(Math.min(WARMUP_REQUESTS, requests), requestFactory, expectedStatus);
+        var result = loadDriver.run(requests, requestFactory, expectedStatus);
+        testReporter.publishEntry(scenario, result.toString());
+        Assertions.assertEquals(0, result.failures(), "failed requests " + result);
+        return result;
+    }
+
+    private static IntFunction<HttpRequest> smallJson(ConfigurableApplicationContext context) {
+        int port = port(context);
+        return index -> LoadDriver.request(port, "/load/json")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(SMALL_JSON))
+                .build();
+    }
+
+    private static IntFunction<HttpRequest> upload(ConfigurableApplicationContext context, byte[] body) {
+        int port = port(context);
+        return index -> LoadDriver.request(port, "/load/upload")
+                .header("Content-Type", "application/octet-stream")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    private static IntFunction<HttpRequest> fail(ConfigurableApplicationContext context) {
+        int port = port(context);
+        return index -> LoadDriver.request(port, "/load/fail").GET().build();
+    }
+
+    private static int port(ConfigurableApplicationContext context) {
+        return LoadTestApplication.port(context);
+    }
+}
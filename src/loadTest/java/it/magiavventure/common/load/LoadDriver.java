@@ -0,0 +1,98 @@
+package it.magiavventure.common.load;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Sends the requests of a scenario from a fixed number of client threads and measures the throughput and
+ * the bytes allocated by the Tomcat request threads, read from the per-thread allocation counters of the
+ * JVM, so that the allocations of the client are not counted.
+ */
+final class LoadDriver {
+
+    private static final String TOMCAT_THREAD_MARKER = "-exec-";
+
+    private final HttpClient httpClient = HttpClient
+            .newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final int concurrency;
+
+    LoadDriver(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    /** Runs the requests, returning the throughput and the allocations per request. */
+    Result run(int requests, IntFunction<HttpRequest> requestFactory, int expectedStatus) throws Exception {
+        long allocatedBefore = tomcatAllocatedBytes();
+        AtomicInteger next = new AtomicInteger();
+        AtomicLong failures = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                workers.add(executor.submit(() -> {
+                    int index;
+                    while ((index = next.getAndIncrement()) < requests) {
+                        HttpResponse<Void> response = httpClient.send(requestFactory.apply(index),
+                                HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != expectedStatus) failures.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) worker.get();
+        } finally {
+            executor.shutdownNow();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = tomcatAllocatedBytes() - allocatedBefore;
+        return new Result(requests, failures.get(), requests / (elapsed / 1_000_000_000.0),
+                allocated / requests);
+    }
+
+    static HttpRequest.Builder request(int port, String path) {
+        return HttpRequest
+                .newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(30));
+    }
+
+    private static long tomcatAllocatedBytes() {
+        var threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] threadIds = threadMXBean.getAllThreadIds();
+        ThreadInfo[] threadInfos = threadMXBean.getThreadInfo(threadIds);
+        long[] allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadIds);
+        long total = 0;
+        for (int i = 0; i < threadIds.length; i++) {
+            if (threadInfos[i] != null && allocatedBytes[i] > 0
+                    && threadInfos[i].getThreadName().contains(TOMCAT_THREAD_MARKER)) {
+                total += allocatedBytes[i];
+            }
+        }
+        return total;
+    }
+
+    record Result(int requests, long failures, double throughput, long allocatedBytesPerRequest) {
+
+        @Override
+        public String toString() {
+            return String.format("%d requests, %d failures, %.0f req/s, %d bytes allocated per request",
+                    requests, failures, throughput, allocatedBytesPerRequest);
+        }
+    }
+}
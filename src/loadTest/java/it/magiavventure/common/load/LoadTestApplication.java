@@ -0,0 +1,77 @@
+package it.magiavventure.common.load;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Minimal application with the library configuration, started on embedded Tomcat on a random port. The
+ * request and response log lines are built but, without console pattern, not written anywhere, so that the
+ * load tests measure the library and not the disk.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration
+public class LoadTestApplication {
+
+    static ConfigurableApplicationContext start(boolean filters) {
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(LoadTestApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.main.banner-mode=off",
+                        "logging.pattern.console=",
+                        "logging.level.root=WARN",
+                        "logging.level.it.magiavventure.common.filter.RequestResponseLoggingFilter=INFO");
+        if (!filters) {
+            builder.properties(
+                    "magiavventure.lib.common.logging.enabled=false",
+                    "magiavventure.lib.common.transaction-id.enabled=false");
+        }
+        return builder.run();
+    }
+
+    static int port(ConfigurableApplicationContext context) {
+        return ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    public static void main(String[] args) {
+        SpringApplication.run(LoadTestApplication.class, args);
+    }
+
+    @RestController
+    static class LoadTestController {
+
+        @PostMapping(value = "/load/json", consumes = MediaType.APPLICATION_JSON_VALUE)
+        public Map<String, Object> json(@RequestBody Map<String, Object> body) {
+            return body;
+        }
+
+        @PostMapping(value = "/load/upload", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+        public Map<String, Long> upload(HttpServletRequest request) throws IOException {
+            long size = 0;
+            byte[] buffer = new byte[8192];
+            try (InputStream inputStream = request.getInputStream()) {
+                int read;
+                while ((read = inputStream.read(buffer)) >= 0) size += read;
+            }
+            return Map.of("size", size);
+        }
+
+        @GetMapping("/load/fail")
+        public Map<String, Object> fail() {
+            throw new IllegalStateException("load test failure");
+        }
+    }
+}
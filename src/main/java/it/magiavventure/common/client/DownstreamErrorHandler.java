@@ -0,0 +1,196 @@
+package it.magiavventure.common.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
+import it.magiavventure.common.error.DownstreamException;
+import it.magiavventure.common.error.ErrorCatalog;
+import it.magiavventure.common.error.ErrorCatalogHolder;
+import it.magiavventure.common.error.MagiavventureException;
+import it.magiavventure.common.model.HttpError;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResponseErrorHandler;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns the error responses of the called services into {@link DownstreamException}s, for a
+ * {@code RestTemplate} with {@code setErrorHandler} or a {@code RestClient} with {@code defaultStatusHandler}.
+ * <p>
+ * The body is parsed as an {@link HttpError} while it is read and no further than the maximum size, so a large
+ * body is never buffered; a body cut by the limit keeps the fields read so far. The remote code is mapped to
+ * the catalog key with the same code. The codes unknown to the catalog become error messages built from the
+ * remote body and cached by code and status, up to the maximum number, so a repeated downstream failure is
+ * translated with two hash lookups. Since remote messages may carry ids, a body whose message or description
+ * differs from the cached one gets an error message of its own, which is not cached, so such messages never
+ * fill the cache. A body without code is mapped by status to {@code not-found}, {@code bad-request} or
+ * {@code service-unavailable}.
+ */
+public class DownstreamErrorHandler implements ResponseErrorHandler {
+
+    public static final int DEFAULT_MAX_BODY_BYTES = 16 * 1024;
+    public static final int DEFAULT_MAX_CACHED_ERRORS = 256;
+
+    private final ErrorCatalogHolder errorCatalogHolder;
+    private final JsonFactory jsonFactory;
+    private final int maxBodyBytes;
+    private final int maxCachedErrors;
+    private final Map<RemoteError, ErrorMessage> remoteErrors = new ConcurrentHashMap<>();
+
+    public DownstreamErrorHandler(ErrorCatalogHolder errorCatalogHolder, JsonFactory jsonFactory) {
+        this(errorCatalogHolder, jsonFactory, DEFAULT_MAX_BODY_BYTES, DEFAULT_MAX_CACHED_ERRORS);
+    }
+
+    public DownstreamErrorHandler(ErrorCatalogHolder errorCatalogHolder, JsonFactory jsonFactory,
+                                  int maxBodyBytes, int maxCachedErrors) {
+        this.errorCatalogHolder = errorCatalogHolder;
+        this.jsonFactory = jsonFactory;
+        this.maxBodyBytes = maxBodyBytes;
+        this.maxCachedErrors = maxCachedErrors;
+    }
+
+    @Override
+    public boolean hasError(ClientHttpResponse response) throws IOException {
+        return response.getStatusCode().isError();
+    }
+
+    @Override
+    public void handleError(ClientHttpResponse response) throws IOException {
+        throw decode(response.getStatusCode().value(), response.getBody());
+    }
+
+    /** Decodes an error body; the stream is read up to the maximum size and not closed. */
+    public DownstreamException decode(int status, InputStream body) {
+        RemoteBody remoteBody = read(body);
+        ErrorCatalog errorCatalog = errorCatalogHolder.current();
+        String key = Objects.isNull(remoteBody.code) ? keyOf(status) : errorCatalog.keyOf(remoteBody.code);
+        if (Objects.nonNull(key)) {
+            return new DownstreamException(key, errorCatalog.retrieve(key), status, remoteBody.fields);
+        }
+        return new DownstreamException(remoteBody.code, remoteErrorMessage(status, remoteBody), status,
+                remoteBody.fields);
+    }
+
+    /** Number of remote errors unknown to the catalog that are cached. */
+    public int getCachedErrorCount() {
+        return remoteErrors.size();
+    }
+
+    private ErrorMessage remoteErrorMessage(int status, RemoteBody remoteBody) {
+        var remoteError = new RemoteError(remoteBody.code, status);
+        ErrorMessage errorMessage = remoteErrors.get(remoteError);
+        if (Objects.nonNull(errorMessage) && Objects.equals(errorMessage.getMessage(), remoteBody.message)
+                && Objects.equals(errorMessage.getDescription(), remoteBody.description)) {
+            return errorMessage;
+        }
+        errorMessage = ErrorMessage
+                .builder()
+                .code(remoteBody.code)
+                .status(status)
+                .message(remoteBody.message)
+                .description(remoteBody.description)
+                .expected(status < 500)
+                .build();
+        if (remoteErrors.size() < maxCachedErrors) remoteErrors.putIfAbsent(remoteError, errorMessage);
+        return errorMessage;
+    }
+
+    private RemoteBody read(InputStream body) {
+        var remoteBody = new RemoteBody();
+        try (JsonParser parser = jsonFactory.createParser(new LimitedInputStream(body, maxBodyBytes))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) return remoteBody;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (name) {
+                    case "code" -> remoteBody.code = text(parser, value);
+                    case "message" -> remoteBody.message = text(parser, value);
+                    case "description" -> remoteBody.description = text(parser, value);
+                    case "fields" -> remoteBody.fields = fields(parser, value);
+                    default -> parser.skipChildren();
+                }
+            }
+        } catch (IOException exception) {
+            // not JSON or cut by the limit: the fields read so far are kept
+        }
+        return remoteBody;
+    }
+
+    private static String text(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_STRING) return parser.getText();
+        parser.skipChildren();
+        return null;
+    }
+
+    private static List<String> fields(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return List.of();
+        }
+        List<String> fields = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == JsonToken.VALUE_STRING) {
+                fields.add(parser.getText());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return fields;
+    }
+
+    private static String keyOf(int status) {
+        if (status == 404) return MagiavventureException.NOT_FOUND;
+        if (status >= 400 && status < 500) return MagiavventureException.BAD_REQUEST;
+        return MagiavventureException.SERVICE_UNAVAILABLE;
+    }
+
+    private static final class RemoteBody {
+        private String code;
+        private String message;
+        private String description;
+        private List<String> fields = List.of();
+    }
+
+    private record RemoteError(String code, int status) {
+    }
+
+    /** Ends the stream after the limit, and leaves the underlying stream open. */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private int remaining;
+
+        private LimitedInputStream(InputStream inputStream, int limit) {
+            super(inputStream);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int read = super.read();
+            if (read >= 0) remaining--;
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) return -1;
+            int read = super.read(buffer, offset, Math.min(length, remaining));
+            if (read > 0) remaining -= read;
+            return read;
+        }
+
+        @Override
+        public void close() {
+            // the response owns the stream
+        }
+    }
+}
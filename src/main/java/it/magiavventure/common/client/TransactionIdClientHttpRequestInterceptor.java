@@ -0,0 +1,26 @@
+package it.magiavventure.common.client;
+
+import it.magiavventure.common.transaction.TransactionContext;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Forwards the transaction id and the W3C trace context of the request being served to the services called
+ * through a {@code RestTemplate} or a {@code RestClient}. The headers are taken as they are from the
+ * {@link TransactionContext} current on the thread; headers already set on the request are kept.
+ */
+public class TransactionIdClientHttpRequestInterceptor implements ClientHttpRequestInterceptor {
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        TransactionContext transactionContext = TransactionContext.current();
+        if (Objects.nonNull(transactionContext)) transactionContext.writeHeaders(request.getHeaders());
+        return execution.execute(request, body);
+    }
+}
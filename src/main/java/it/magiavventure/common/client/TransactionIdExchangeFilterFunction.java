@@ -0,0 +1,31 @@
+package it.magiavventure.common.client;
+
+import it.magiavventure.common.transaction.TransactionContext;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.util.Objects;
+
+/**
+ * Forwards the transaction id and the W3C trace context to the services called through a {@code WebClient}.
+ * The {@link TransactionContext} is read from the Reactor context written by the reactive filter or, for the
+ * calls subscribed on a servlet request thread, from the thread.
+ */
+public class TransactionIdExchangeFilterFunction implements ExchangeFilterFunction {
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.deferContextual(context -> {
+            TransactionContext transactionContext = context.getOrDefault(TransactionContext.CONTEXT_KEY, null);
+            if (Objects.isNull(transactionContext)) transactionContext = TransactionContext.current();
+            if (Objects.isNull(transactionContext)) return next.exchange(request);
+            return next.exchange(ClientRequest
+                    .from(request)
+                    .headers(transactionContext::writeHeaders)
+                    .build());
+        });
+    }
+}
@@ -1,22 +1,389 @@
 package it.magiavventure.common.configuration;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.magiavventure.common.client.DownstreamErrorHandler;
+import it.magiavventure.common.client.TransactionIdClientHttpRequestInterceptor;
+import it.magiavventure.common.client.TransactionIdExchangeFilterFunction;
+import it.magiavventure.common.error.ErrorCatalogEndpoint;
+import it.magiavventure.common.error.ErrorCatalogHolder;
+import it.magiavventure.common.error.ErrorCatalogReloader;
+import it.magiavventure.common.error.handler.DefaultExceptionHandler;
+import it.magiavventure.common.error.handler.ErrorResponseRenderer;
+import it.magiavventure.common.error.handler.ExceptionLogSuppressor;
+import it.magiavventure.common.error.handler.ReactiveExceptionHandler;
+import it.magiavventure.common.error.handler.RenderedHttpErrorMessageConverter;
+import it.magiavventure.common.filter.ReactiveRequestResponseLoggingFilter;
+import it.magiavventure.common.filter.ReactiveRequestTimingFilter;
+import it.magiavventure.common.filter.ReactiveTransactionIdFilter;
 import it.magiavventure.common.filter.RequestResponseLoggingFilter;
+import it.magiavventure.common.filter.RequestTimingFilter;
+import it.magiavventure.common.filter.ResponseBufferingFilter;
+import it.magiavventure.common.filter.ResponsePolicy;
 import it.magiavventure.common.filter.TransactionIdFilter;
+import it.magiavventure.common.logging.AsyncHttpLogWriter;
+import it.magiavventure.common.logging.HttpLogWriter;
+import it.magiavventure.common.logging.JsonLogEncoder;
+import it.magiavventure.common.logging.LoggingPolicy;
+import it.magiavventure.common.logging.Redaction;
+import it.magiavventure.common.logging.SyncHttpLogWriter;
+import it.magiavventure.common.mapper.HttpErrorMapper;
+import it.magiavventure.common.mapper.HttpErrorMapperImpl;
+import it.magiavventure.common.metrics.CommonMetrics;
+import it.magiavventure.common.metrics.MicrometerCommonMetrics;
+import it.magiavventure.common.transaction.MdcTaskDecorator;
+import it.magiavventure.common.transaction.TimeOrderedTransactionIdGenerator;
+import it.magiavventure.common.transaction.TransactionIdGenerator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.client.RestClientCustomizer;
+import org.springframework.boot.web.client.RestTemplateCustomizer;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
 import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
-@Configuration
-@ComponentScan("it.magiavventure")
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Auto-configuration of the library. Every bean is declared here instead of being found by classpath
+ * scanning, so the services only scan their own packages. The filters and the exception handler can be
+ * switched off one by one with the {@code enabled} properties; the beans needed only to answer an error
+ * are created lazily, on the first error.
+ * <p>
+ * The mapper is created without reflection and {@link CommonRuntimeHints} covers the rest for native images.
+ * The components that own threads, files or random seeds follow the lifecycle of the context, so they are
+ * stopped before a CRaC checkpoint and started again after the restore: the transaction id generator, the error
+ * catalog reloader, the async log writer and the exception log suppressor, this one once created by an error.
+ */
+@AutoConfiguration
+@EnableConfigurationProperties(CommonProperties.class)
+@ImportRuntimeHints(CommonRuntimeHints.class)
 @PropertySource({"classpath:default-application.properties"})
 public class CommonConfig {
 
+    static final String PREFIX = "magiavventure.lib.common";
+
+    @Bean
+    public LoggingPolicy loggingPolicy(CommonProperties commonProperties) {
+        var loggingProperties = commonProperties.getLogging();
+        return LoggingPolicy
+                .builder()
+                .maxBodyBytes(loggingProperties.getMaxBodyBytes())
+                .sampleRate(loggingProperties.getSampleRate())
+                .body(loggingProperties.getBody())
+                .slowThreshold(loggingProperties.getSlowThreshold())
+                .excludedBodyContentTypes(loggingProperties.getExcludedBodyContentTypes())
+                .routes(loggingProperties
+                        .getRoutes()
+                        .stream()
+                        .map(route -> LoggingPolicy.Route
+                                .builder()
+                                .pattern(route.getPattern())
+                                .sampleRate(route.getSampleRate())
+                                .body(route.getBody())
+                                .slowThreshold(route.getSlowThreshold())
+                                .build())
+                        .toList())
+                .build();
+    }
+
+    @Bean
+    public ResponsePolicy responsePolicy(CommonProperties commonProperties) {
+        var responseProperties = commonProperties.getResponse();
+        return ResponsePolicy
+                .builder()
+                .etag(responseProperties.isEtag())
+                .compression(responseProperties.getCompression().isEnabled())
+                .routes(responseProperties
+                        .getRoutes()
+                        .stream()
+                        .map(route -> ResponsePolicy.Route
+                                .builder()
+                                .pattern(route.getPattern())
+                                .etag(route.getEtag())
+                                .compression(route.getCompression())
+                                .build())
+                        .toList())
+                .build();
+    }
+
     @Bean
-    public RequestResponseLoggingFilter requestResponseLoggingFilter() {
-        return new RequestResponseLoggingFilter();
+    public HttpLogWriter httpLogWriter(CommonProperties commonProperties) {
+        var asyncProperties = commonProperties.getLogging().getAsync();
+        var redactionProperties = commonProperties.getLogging().getRedaction();
+        var redaction = Redaction.builder()
+                .headers(redactionProperties.getHeaders())
+                .bodyFields(redactionProperties.getBodyFields())
+                .build();
+        var httpLogWriter = new SyncHttpLogWriter(
+                new JsonLogEncoder(redaction, commonProperties.getLogging().getMaxBodyBytes()));
+        if (!asyncProperties.isEnabled()) return httpLogWriter;
+        return new AsyncHttpLogWriter(httpLogWriter, asyncProperties.getQueueCapacity(),
+                asyncProperties.getOverflowPolicy(), asyncProperties.getShutdownTimeout());
     }
 
     @Bean
-    public TransactionIdFilter transactionIdFilter() { return new TransactionIdFilter(); }
+    @Lazy
+    @ConditionalOnMissingBean(HttpErrorMapper.class)
+    public HttpErrorMapper httpErrorMapper() {
+        return new HttpErrorMapperImpl();
+    }
+
+    @Bean
+    @Lazy
+    public ErrorResponseRenderer errorResponseRenderer(ErrorCatalogHolder errorCatalogHolder,
+                                                       HttpErrorMapper httpErrorMapper,
+                                                       ObjectProvider<ObjectMapper> objectMapper) {
+        return new ErrorResponseRenderer(errorCatalogHolder, httpErrorMapper,
+                objectMapper.getIfAvailable(ObjectMapper::new));
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(TransactionIdGenerator.class)
+    public TransactionIdGenerator transactionIdGenerator() {
+        return new TimeOrderedTransactionIdGenerator();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(TaskDecorator.class)
+    public TaskDecorator mdcTaskDecorator() {
+        return new MdcTaskDecorator();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(CommonMetrics.class)
+    public CommonMetrics commonMetrics() {
+        return CommonMetrics.NOOP;
+    }
+
+    @Bean
+    public ErrorCatalogHolder errorCatalogHolder(CommonProperties commonProperties) {
+        return new ErrorCatalogHolder(commonProperties.getErrors().retrieveErrorCatalog());
+    }
+
+    @Bean
+    public ErrorCatalogReloader errorCatalogReloader(ErrorCatalogHolder errorCatalogHolder,
+                                                     CommonProperties commonProperties) {
+        return new ErrorCatalogReloader(errorCatalogHolder, commonProperties.getErrors());
+    }
+
+    @Bean
+    @Lazy
+    public DownstreamErrorHandler downstreamErrorHandler(ErrorCatalogHolder errorCatalogHolder,
+                                                         CommonProperties commonProperties,
+                                                         ObjectProvider<ObjectMapper> objectMapper) {
+        var clientProperties = commonProperties.getClient();
+        var jsonFactory = objectMapper.getIfAvailable(ObjectMapper::new).getFactory();
+        return new DownstreamErrorHandler(errorCatalogHolder, jsonFactory, clientProperties.getMaxErrorBodyBytes(),
+                clientProperties.getMaxCachedErrors());
+    }
+
+    /**
+     * A plain {@link org.springframework.context.Lifecycle} started by its init method: a {@code SmartLifecycle}
+     * would be created by the lifecycle processor on startup instead of on the first error.
+     */
+    @Bean(initMethod = "start")
+    @Lazy
+    public ExceptionLogSuppressor exceptionLogSuppressor(CommonProperties commonProperties) {
+        var logProperties = commonProperties.getErrors().getLog();
+        return new ExceptionLogSuppressor(logProperties.getSuppressionWindow(), logProperties.getStackFrames(),
+                logProperties.getMaxFingerprints());
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    static class ServletConfig {
+
+        @Bean
+        @ConditionalOnProperty(prefix = PREFIX, name = "logging.timing-enabled", matchIfMissing = true)
+        public RequestTimingFilter requestTimingFilter(LoggingPolicy loggingPolicy,
+                                                       CommonProperties commonProperties) {
+            return new RequestTimingFilter(loggingPolicy, commonProperties.getLogging().isServerTiming());
+        }
+
+        @Bean
+        @ConditionalOnProperty(prefix = PREFIX, name = "logging.enabled", matchIfMissing = true)
+        public RequestResponseLoggingFilter requestResponseLoggingFilter(HttpLogWriter httpLogWriter,
+                                                                         LoggingPolicy loggingPolicy,
+                                                                         CommonMetrics commonMetrics) {
+            return new RequestResponseLoggingFilter(httpLogWriter, loggingPolicy, commonMetrics);
+        }
+
+        @Bean
+        @ConditionalOnProperty(prefix = PREFIX, name = "response.enabled", matchIfMissing = true)
+        public ResponseBufferingFilter responseBufferingFilter(ResponsePolicy responsePolicy,
+                                                               CommonProperties commonProperties) {
+            var responseProperties = commonProperties.getResponse();
+            return new ResponseBufferingFilter(responsePolicy, responseProperties.getMaxBufferedBodyBytes(),
+                    responseProperties.getCompression().getMinSize(),
+                    responseProperties.getCompression().getMimeTypes());
+        }
+
+        @Bean
+        @ConditionalOnProperty(prefix = PREFIX, name = "transaction-id.enabled", matchIfMissing = true)
+        public TransactionIdFilter transactionIdFilter(TransactionIdGenerator transactionIdGenerator,
+                                                       CommonProperties commonProperties) {
+            var transactionIdProperties = commonProperties.getTransactionId();
+            return new TransactionIdFilter(transactionIdGenerator, transactionIdProperties.getMaxLength(),
+                    transactionIdProperties.isTraceContext());
+        }
+
+        @Bean
+        @Lazy
+        @ConditionalOnProperty(prefix = PREFIX, name = "errors.handler-enabled", matchIfMissing = true)
+        public DefaultExceptionHandler defaultExceptionHandler(ErrorCatalogHolder errorCatalogHolder,
+                                                               HttpErrorMapper httpErrorMapper,
+                                                               CommonMetrics commonMetrics,
+                                                               ErrorResponseRenderer errorResponseRenderer,
+                                                               ExceptionLogSuppressor exceptionLogSuppressor) {
+            return new DefaultExceptionHandler(errorCatalogHolder, httpErrorMapper, commonMetrics,
+                    errorResponseRenderer, exceptionLogSuppressor);
+        }
+
+        @Bean
+        @ConditionalOnProperty(prefix = PREFIX, name = "errors.handler-enabled", matchIfMissing = true)
+        public WebMvcConfigurer renderedHttpErrorWebMvcConfigurer(
+                ObjectProvider<ErrorResponseRenderer> errorResponseRenderer) {
+            return new WebMvcConfigurer() {
+                @Override
+                public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+                    converters.add(0, new RenderedHttpErrorMessageConverter(errorResponseRenderer::getObject));
+                }
+            };
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    static class ReactiveConfig {
+
+        @Bean
+        @ConditionalOnProperty(prefix = PREFIX, name = "logging.timing-enabled", matchIfMissing = true)
+        public ReactiveRequestTimingFilter reactiveRequestTimingFilter(LoggingPolicy loggingPolicy,
+                                                                       CommonProperties commonProperties) {
+            return new ReactiveRequestTimingFilter(loggingPolicy, commonProperties.getLogging().isServerTiming());
+        }
+
+        @Bean
+        @ConditionalOnProperty(prefix = PREFIX, name = "logging.enabled", matchIfMissing = true)
+        public ReactiveRequestResponseLoggingFilter reactiveRequestResponseLoggingFilter(HttpLogWriter httpLogWriter,
+                                                                                         LoggingPolicy loggingPolicy,
+                                                                                         CommonMetrics commonMetrics) {
+            return new ReactiveRequestResponseLoggingFilter(httpLogWriter, loggingPolicy, commonMetrics);
+        }
+
+        @Bean
+        @ConditionalOnProperty(prefix = PREFIX, name = "transaction-id.enabled", matchIfMissing = true)
+        public ReactiveTransactionIdFilter reactiveTransactionIdFilter(TransactionIdGenerator transactionIdGenerator,
+                                                                       CommonProperties commonProperties) {
+            var transactionIdProperties = commonProperties.getTransactionId();
+            return new ReactiveTransactionIdFilter(transactionIdGenerator, transactionIdProperties.getMaxLength(),
+                    transactionIdProperties.isTraceContext());
+        }
+
+        @Bean
+        @ConditionalOnProperty(prefix = PREFIX, name = "errors.handler-enabled", matchIfMissing = true)
+        public ReactiveExceptionHandler reactiveExceptionHandler(ErrorCatalogHolder errorCatalogHolder,
+                                                                 HttpErrorMapper httpErrorMapper,
+                                                                 CommonMetrics commonMetrics,
+                                                                 ErrorResponseRenderer errorResponseRenderer,
+                                                                 ExceptionLogSuppressor exceptionLogSuppressor) {
+            return new ReactiveExceptionHandler(errorCatalogHolder, httpErrorMapper, commonMetrics,
+                    errorResponseRenderer, exceptionLogSuppressor);
+        }
+    }
+
+    /**
+     * Opt-in with {@code client.propagate-headers}: an interceptor on the {@code RestTemplate} and
+     * {@code RestClient} makes them buffer the whole request body before sending it.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(prefix = PREFIX, name = "transaction-id.enabled", matchIfMissing = true)
+    static class TransactionIdClientConfig {
+
+        @Bean
+        @ConditionalOnProperty(prefix = PREFIX, name = "client.propagate-headers", havingValue = "true")
+        public RestTemplateCustomizer transactionIdRestTemplateCustomizer() {
+            var interceptor = new TransactionIdClientHttpRequestInterceptor();
+            return restTemplate -> restTemplate.getInterceptors().add(interceptor);
+        }
+
+        @Bean
+        @ConditionalOnProperty(prefix = PREFIX, name = "client.propagate-headers", havingValue = "true")
+        public RestClientCustomizer transactionIdRestClientCustomizer() {
+            var interceptor = new TransactionIdClientHttpRequestInterceptor();
+            return restClientBuilder -> restClientBuilder.requestInterceptor(interceptor);
+        }
+
+        @Configuration(proxyBeanMethods = false)
+        @ConditionalOnClass(name = "org.springframework.web.reactive.function.client.WebClient")
+        @ConditionalOnProperty(prefix = PREFIX, name = "client.propagate-headers", havingValue = "true")
+        static class WebClientConfig {
+
+            @Bean
+            public WebClientCustomizer transactionIdWebClientCustomizer() {
+                var filter = new TransactionIdExchangeFilterFunction();
+                return webClientBuilder -> webClientBuilder.filter(filter);
+            }
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(prefix = PREFIX, name = "client.decode-errors", havingValue = "true")
+    static class DownstreamErrorConfig {
+
+        @Bean
+        public RestTemplateCustomizer downstreamErrorRestTemplateCustomizer(
+                ObjectProvider<DownstreamErrorHandler> downstreamErrorHandler) {
+            return restTemplate -> restTemplate.setErrorHandler(downstreamErrorHandler.getObject());
+        }
+
+        @Bean
+        public RestClientCustomizer downstreamErrorRestClientCustomizer(
+                ObjectProvider<DownstreamErrorHandler> downstreamErrorHandler) {
+            return restClientBuilder -> restClientBuilder.defaultStatusHandler(downstreamErrorHandler.getObject());
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    static class CommonMetricsConfig {
+
+        @Bean
+        @ConditionalOnMissingBean(CommonMetrics.class)
+        public CommonMetrics commonMetrics(ObjectProvider<MeterRegistry> meterRegistry,
+                                           ErrorCatalogHolder errorCatalogHolder,
+                                           HttpLogWriter httpLogWriter) {
+            MeterRegistry registry = meterRegistry.getIfAvailable();
+            if (Objects.isNull(registry)) return CommonMetrics.NOOP;
+            var micrometerCommonMetrics = new MicrometerCommonMetrics(registry, errorCatalogHolder.current(),
+                    httpLogWriter);
+            errorCatalogHolder.addListener(micrometerCommonMetrics::registerErrors);
+            return micrometerCommonMetrics;
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+    static class ErrorCatalogEndpointConfig {
+
+        @Bean
+        @ConditionalOnMissingBean(ErrorCatalogEndpoint.class)
+        public ErrorCatalogEndpoint errorCatalogEndpoint(ErrorCatalogHolder errorCatalogHolder,
+                                                         ErrorCatalogReloader errorCatalogReloader) {
+            return new ErrorCatalogEndpoint(errorCatalogHolder, errorCatalogReloader);
+        }
+    }
 }
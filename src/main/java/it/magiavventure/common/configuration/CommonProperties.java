@@ -1,15 +1,33 @@
 package it.magiavventure.common.configuration;
 
+import it.magiavventure.common.client.DownstreamErrorHandler;
+import it.magiavventure.common.error.ErrorCatalog;
+import it.magiavventure.common.filter.ResponseBufferingFilter;
+import it.magiavventure.common.logging.BodyMode;
+import it.magiavventure.common.logging.LoggingPolicy;
+import it.magiavventure.common.logging.OverflowPolicy;
+import it.magiavventure.common.logging.Redaction;
+import it.magiavventure.common.transaction.TransactionId;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.slf4j.event.Level;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.function.BinaryOperator;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @Data
@@ -17,6 +35,91 @@ import java.util.stream.Stream;
 public class CommonProperties {
 
     private ErrorsProperties errors;
+    private LoggingProperties logging = new LoggingProperties();
+    private ResponseProperties response = new ResponseProperties();
+    private TransactionIdProperties transactionId = new TransactionIdProperties();
+    private ClientProperties client = new ClientProperties();
+
+    @Data
+    @NoArgsConstructor
+    public static class TransactionIdProperties {
+        private int maxLength = TransactionId.DEFAULT_MAX_LENGTH;
+        private boolean traceContext = true;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class ClientProperties {
+        private boolean propagateHeaders;
+        private boolean decodeErrors;
+        private int maxErrorBodyBytes = DownstreamErrorHandler.DEFAULT_MAX_BODY_BYTES;
+        private int maxCachedErrors = DownstreamErrorHandler.DEFAULT_MAX_CACHED_ERRORS;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class LoggingProperties {
+        private int maxBodyBytes = LoggingPolicy.DEFAULT_MAX_BODY_BYTES;
+        private double sampleRate = 1.0;
+        private BodyMode body = BodyMode.ALWAYS;
+        private List<String> excludedBodyContentTypes = List.of("image/*", "audio/*", "video/*", "font/*",
+                "application/octet-stream", "application/pdf", "application/zip", "multipart/form-data");
+        private List<RouteProperties> routes = Collections.emptyList();
+        private AsyncProperties async = new AsyncProperties();
+        private RedactionProperties redaction = new RedactionProperties();
+        private Duration slowThreshold;
+        private boolean serverTiming;
+
+        @Data
+        @NoArgsConstructor
+        public static class RouteProperties {
+            private String pattern;
+            private Double sampleRate;
+            private BodyMode body;
+            private Duration slowThreshold;
+        }
+
+        @Data
+        @NoArgsConstructor
+        public static class AsyncProperties {
+            private boolean enabled;
+            private int queueCapacity = 8192;
+            private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+            private Duration shutdownTimeout = Duration.ofSeconds(5);
+        }
+
+        @Data
+        @NoArgsConstructor
+        public static class RedactionProperties {
+            private List<String> headers = Redaction.DEFAULT_HEADERS;
+            private List<String> bodyFields = Redaction.DEFAULT_BODY_FIELDS;
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class ResponseProperties {
+        private boolean etag;
+        private int maxBufferedBodyBytes = ResponseBufferingFilter.DEFAULT_MAX_BODY_BYTES;
+        private CompressionProperties compression = new CompressionProperties();
+        private List<RouteProperties> routes = Collections.emptyList();
+
+        @Data
+        @NoArgsConstructor
+        public static class RouteProperties {
+            private String pattern;
+            private Boolean etag;
+            private Boolean compression;
+        }
+
+        @Data
+        @NoArgsConstructor
+        public static class CompressionProperties {
+            private boolean enabled;
+            private int minSize = ResponseBufferingFilter.DEFAULT_COMPRESSION_MIN_SIZE;
+            private List<String> mimeTypes = ResponseBufferingFilter.DEFAULT_COMPRESSION_MIME_TYPES;
+        }
+    }
 
     @Data
     @NoArgsConstructor
@@ -24,7 +127,23 @@ public class CommonProperties {
         private Map<String, ErrorMessage> errorsMessages = Collections.emptyMap();
         private Map<String, ErrorMessage> jwtErrorsMessages = Collections.emptyMap();
         private Map<String, ErrorMessage> serviceErrorsMessages = Collections.emptyMap();
+        private ReloadProperties reload = new ReloadProperties();
+        private LogProperties log = new LogProperties();
 
+        @Data
+        @NoArgsConstructor
+        public static class ReloadProperties {
+            private Path file;
+            private boolean watch = true;
+        }
+
+        @Data
+        @NoArgsConstructor
+        public static class LogProperties {
+            private Duration suppressionWindow = Duration.ofMinutes(1);
+            private int stackFrames = 5;
+            private int maxFingerprints = 1024;
+        }
 
         @Data
         @Builder
@@ -35,17 +154,59 @@ public class CommonProperties {
             private String description;
             private String code;
             private int status;
+            private boolean expected;
+            private Level logLevel;
         }
 
         private BinaryOperator<ErrorMessage> mergeErrorMessage =
                 (defaultErrorMessage, otherErrorMessage) -> otherErrorMessage;
 
+        @Getter(AccessLevel.NONE)
+        @Setter(AccessLevel.NONE)
+        @ToString.Exclude
+        @EqualsAndHashCode.Exclude
+        private volatile ErrorCatalog errorCatalog;
+
+        public void setErrorsMessages(Map<String, ErrorMessage> errorsMessages) {
+            this.errorsMessages = errorsMessages;
+            this.errorCatalog = null;
+        }
+
+        public void setJwtErrorsMessages(Map<String, ErrorMessage> jwtErrorsMessages) {
+            this.jwtErrorsMessages = jwtErrorsMessages;
+            this.errorCatalog = null;
+        }
+
+        public void setServiceErrorsMessages(Map<String, ErrorMessage> serviceErrorsMessages) {
+            this.serviceErrorsMessages = serviceErrorsMessages;
+            this.errorCatalog = null;
+        }
+
+        public void setMergeErrorMessage(BinaryOperator<ErrorMessage> mergeErrorMessage) {
+            this.mergeErrorMessage = mergeErrorMessage;
+            this.errorCatalog = null;
+        }
 
         public Map<String, ErrorMessage> retrieveErrorsMessages() {
-            return Stream.concat(
-                    Stream.concat(errorsMessages.entrySet().stream(), jwtErrorsMessages.entrySet().stream()),
-                    serviceErrorsMessages.entrySet().stream())
-                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, mergeErrorMessage));
+            return retrieveErrorCatalog().asMap();
+        }
+
+        public ErrorCatalog retrieveErrorCatalog() {
+            ErrorCatalog catalog = errorCatalog;
+            if (Objects.isNull(catalog)) {
+                catalog = buildErrorCatalog();
+                errorCatalog = catalog;
+            }
+            return catalog;
+        }
+
+        private ErrorCatalog buildErrorCatalog() {
+            Map<String, ErrorMessage> merged = new HashMap<>();
+            Stream.of(errorsMessages, jwtErrorsMessages, serviceErrorsMessages)
+                    .filter(Objects::nonNull)
+                    .forEach(branch -> branch.forEach((key, errorMessage) ->
+                            merged.merge(key, errorMessage, mergeErrorMessage)));
+            return ErrorCatalog.of(merged);
         }
     }
 }
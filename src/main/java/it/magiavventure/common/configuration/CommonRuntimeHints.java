@@ -0,0 +1,23 @@
+package it.magiavventure.common.configuration;
+
+import it.magiavventure.common.model.HttpError;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.boot.context.properties.bind.BindableRuntimeHintsRegistrar;
+
+/**
+ * Hints for native images: the default properties file, the binding of the properties, done again at
+ * runtime when the error catalog is reloaded from a file, and the JSON serialization of the errors.
+ */
+class CommonRuntimeHints implements RuntimeHintsRegistrar {
+
+    static final String DEFAULT_PROPERTIES = "default-application.properties";
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        hints.resources().registerPattern(DEFAULT_PROPERTIES);
+        BindableRuntimeHintsRegistrar.forTypes(CommonProperties.class).registerHints(hints, classLoader);
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), HttpError.class);
+    }
+}
@@ -0,0 +1,33 @@
+package it.magiavventure.common.error;
+
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
+import it.magiavventure.common.model.Error;
+import lombok.Getter;
+
+import java.io.Serial;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Error answered by a called service. It carries the error message the remote code maps to, the remote HTTP
+ * status and the remote invalid fields, which the exception handlers send back in place of the catalog
+ * ones. Like {@link MagiavventureException#of(String, String...)}, the exception is stackless when the error
+ * message is expected.
+ */
+@Getter
+public class DownstreamException extends MagiavventureException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final transient ErrorMessage errorMessage;
+    private final int status;
+    private final transient List<String> fields;
+
+    public DownstreamException(String key, ErrorMessage errorMessage, int status, List<String> fields) {
+        super(Error.builder().key(key).args(new String[0]).build(), errorMessage.isExpected());
+        this.errorMessage = errorMessage;
+        this.status = status;
+        this.fields = Objects.requireNonNullElse(fields, List.of());
+    }
+}
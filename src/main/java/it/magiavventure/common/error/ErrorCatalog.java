@@ -0,0 +1,110 @@
+package it.magiavventure.common.error;
+
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable index of the error messages configured in {@code magiavventure.lib.common.errors}.
+ * <p>
+ * The catalog is built once from the merged {@code errors-messages}, {@code jwt-errors-messages} and
+ * {@code service-errors-messages} branches and the {@link MagiavventureException#UNKNOWN_ERROR} fallback is
+ * resolved ahead of time, so a lookup is a single hash probe and never allocates.
+ */
+public final class ErrorCatalog {
+
+    private static final ErrorMessage DEFAULT_UNKNOWN_ERROR = ErrorMessage
+            .builder()
+            .code(MagiavventureException.UNKNOWN_ERROR)
+            .message(MagiavventureException.UNKNOWN_ERROR)
+            .status(500)
+            .build();
+
+    private final Map<String, ErrorMessage> errorsMessages;
+    private final ErrorMessage unknownError;
+    private final Set<String> expectedKeys;
+    private final Map<String, String> keysByCode;
+    private final long version;
+
+    private ErrorCatalog(Map<String, ErrorMessage> errorsMessages, long version) {
+        this.errorsMessages = errorsMessages;
+        this.version = version;
+        this.unknownError = Objects.requireNonNullElse(errorsMessages.get(MagiavventureException.UNKNOWN_ERROR),
+                DEFAULT_UNKNOWN_ERROR);
+        this.expectedKeys = errorsMessages
+                .entrySet()
+                .stream()
+                .filter(entry -> entry.getValue().isExpected())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toUnmodifiableSet());
+        Map<String, String> codes = new HashMap<>();
+        errorsMessages.forEach((key, errorMessage) -> {
+            if (Objects.isNull(errorMessage.getCode())) return;
+            codes.merge(errorMessage.getCode(), key, (first, second) -> first.compareTo(second) <= 0 ? first : second);
+        });
+        this.keysByCode = Map.copyOf(codes);
+    }
+
+    public static ErrorCatalog of(Map<String, ErrorMessage> errorsMessages) {
+        return of(errorsMessages, 0);
+    }
+
+    public static ErrorCatalog of(Map<String, ErrorMessage> errorsMessages, long version) {
+        Map<String, ErrorMessage> entries = new HashMap<>();
+        errorsMessages.forEach((key, errorMessage) -> {
+            if (Objects.nonNull(key) && Objects.nonNull(errorMessage)) entries.put(key, errorMessage);
+        });
+        return new ErrorCatalog(Map.copyOf(entries), version);
+    }
+
+    /**
+     * Returns the error message configured for the key, or the {@code unknown-error} one when the key is
+     * not in the catalog.
+     */
+    public ErrorMessage retrieve(String key) {
+        if (Objects.isNull(key)) return unknownError;
+        ErrorMessage errorMessage = errorsMessages.get(key);
+        return Objects.nonNull(errorMessage) ? errorMessage : unknownError;
+    }
+
+    /**
+     * Returns the key of the error with the code, the first in alphabetical order when more keys share it,
+     * or {@code null} when no error has the code.
+     */
+    public String keyOf(String code) {
+        return Objects.isNull(code) ? null : keysByCode.get(code);
+    }
+
+    public boolean contains(String key) {
+        return Objects.nonNull(key) && errorsMessages.containsKey(key);
+    }
+
+    /**
+     * Returns the keys marked as {@code expected}: their exceptions are created without stack trace and
+     * the handler does not log them as errors.
+     */
+    public Set<String> expectedKeys() {
+        return expectedKeys;
+    }
+
+    public boolean isExpected(String key) {
+        return Objects.nonNull(key) && expectedKeys.contains(key);
+    }
+
+    public ErrorMessage unknownError() {
+        return unknownError;
+    }
+
+    public Map<String, ErrorMessage> asMap() {
+        return errorsMessages;
+    }
+
+    /** Version of the catalog, increased by every reload published through {@link ErrorCatalogHolder}. */
+    public long version() {
+        return version;
+    }
+}
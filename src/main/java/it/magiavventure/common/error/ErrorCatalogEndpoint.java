@@ -0,0 +1,32 @@
+package it.magiavventure.common.error;
+
+import lombok.AllArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Actuator endpoint showing the version of the error catalog and reloading it on demand.
+ */
+@AllArgsConstructor
+@Endpoint(id = "errorcatalog")
+public class ErrorCatalogEndpoint {
+    private final ErrorCatalogHolder errorCatalogHolder;
+    private final ErrorCatalogReloader errorCatalogReloader;
+
+    @ReadOperation
+    public Map<String, Object> errorCatalog() {
+        ErrorCatalog errorCatalog = errorCatalogHolder.current();
+        return Map.of("version", errorCatalog.version(), "errors", new TreeSet<>(errorCatalog.asMap().keySet()));
+    }
+
+    @WriteOperation
+    public Map<String, Object> reload() throws IOException {
+        ErrorCatalog errorCatalog = errorCatalogReloader.reload();
+        return Map.of("version", errorCatalog.version(), "errors", errorCatalog.asMap().size());
+    }
+}
@@ -0,0 +1,82 @@
+package it.magiavventure.common.error;
+
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Holds the current {@link ErrorCatalog}. Request threads read it with a single volatile load; a reload
+ * validates and builds the new catalog aside and publishes it with one reference swap, so a reader sees
+ * either the previous catalog or the new one, never a partial one.
+ */
+@Slf4j
+public class ErrorCatalogHolder {
+
+    private final AtomicReference<ErrorCatalog> errorCatalog;
+    private final List<Consumer<ErrorCatalog>> listeners = new CopyOnWriteArrayList<>();
+
+    public ErrorCatalogHolder(ErrorCatalog errorCatalog) {
+        this.errorCatalog = new AtomicReference<>(Objects.requireNonNull(errorCatalog));
+    }
+
+    public ErrorCatalog current() {
+        return errorCatalog.get();
+    }
+
+    /**
+     * Creates the exception of the key: without stack trace when the current catalog marks the key as
+     * {@code expected}, with it otherwise. Every call returns a new exception.
+     */
+    public MagiavventureException exception(String key, String... args) {
+        return current().isExpected(key) ? MagiavventureException.expected(key, args)
+                : MagiavventureException.of(key, args);
+    }
+
+    /**
+     * Validates the error messages and publishes them as the next version of the catalog, then notifies
+     * the listeners. Invalid messages are rejected and the current catalog is kept.
+     *
+     * @throws IllegalArgumentException when an error message has no code or a status that is not an HTTP one
+     */
+    public synchronized ErrorCatalog publish(Map<String, ErrorMessage> errorsMessages) {
+        List<String> violations = validate(errorsMessages);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException("Invalid error catalog: " + String.join(", ", violations));
+        }
+        ErrorCatalog published = ErrorCatalog.of(errorsMessages, current().version() + 1);
+        errorCatalog.set(published);
+        log.info("Error catalog version {} published with {} errors", published.version(), published.asMap().size());
+        listeners.forEach(listener -> listener.accept(published));
+        return published;
+    }
+
+    /** Registers a listener called with every published catalog, and now with the current one. */
+    public void addListener(Consumer<ErrorCatalog> listener) {
+        listeners.add(listener);
+        listener.accept(current());
+    }
+
+    private static List<String> validate(Map<String, ErrorMessage> errorsMessages) {
+        List<String> violations = new ArrayList<>();
+        errorsMessages.forEach((key, errorMessage) -> {
+            if (Objects.isNull(errorMessage)) {
+                violations.add(key + " has no error message");
+                return;
+            }
+            if (Objects.isNull(errorMessage.getCode()) || errorMessage.getCode().isBlank()) {
+                violations.add(key + " has no code");
+            }
+            if (errorMessage.getStatus() < 100 || errorMessage.getStatus() > 599) {
+                violations.add(key + " has status " + errorMessage.getStatus());
+            }
+        });
+        return violations;
+    }
+}
@@ -0,0 +1,158 @@
+package it.magiavventure.common.error;
+
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties;
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.PropertiesPropertySourceLoader;
+import org.springframework.boot.env.PropertySourceLoader;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Reloads the error catalog from an external properties or YAML file, written with the same
+ * {@code magiavventure.lib.common.errors} keys of the application properties. The errors of the file
+ * override the ones of the application with the same key.
+ * <p>
+ * When the watch is enabled a background thread reloads the file on every change. A file that cannot be
+ * read or does not pass the validation of {@link ErrorCatalogHolder#publish(Map)} is logged and ignored.
+ * The watch follows the lifecycle of the context: it is closed on {@link #stop()}, for instance before a CRaC
+ * checkpoint, which does not allow open watch services, and opened again on {@link #start()} after reading
+ * the file, that may have changed in the meantime.
+ */
+@Slf4j
+public class ErrorCatalogReloader implements InitializingBean, SmartLifecycle {
+
+    private static final String ERRORS_PREFIX = "magiavventure.lib.common.errors";
+
+    private final ErrorCatalogHolder errorCatalogHolder;
+    private final ErrorCatalog applicationErrorCatalog;
+    private final Path file;
+    private final boolean watch;
+    private WatchService watchService;
+    private boolean running;
+    private boolean stale;
+
+    public ErrorCatalogReloader(ErrorCatalogHolder errorCatalogHolder, ErrorsProperties errorsProperties) {
+        this.errorCatalogHolder = errorCatalogHolder;
+        this.applicationErrorCatalog = errorsProperties.retrieveErrorCatalog();
+        this.file = errorsProperties.getReload().getFile();
+        this.watch = errorsProperties.getReload().isWatch();
+    }
+
+    /**
+     * Reads the file again and publishes the resulting catalog. Without a file, or when the file has been
+     * removed, the catalog of the application properties is published.
+     */
+    public ErrorCatalog reload() throws IOException {
+        Map<String, ErrorMessage> errorsMessages = new HashMap<>(applicationErrorCatalog.asMap());
+        if (Objects.nonNull(file) && Files.isRegularFile(file)) {
+            errorsMessages.putAll(load(file));
+        }
+        return errorCatalogHolder.publish(errorsMessages);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (Objects.nonNull(file)) reloadQuietly();
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        if (Objects.isNull(file)) return;
+        if (stale) reloadQuietly();
+        if (watch) startWatch();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        stale = true;
+        if (Objects.isNull(watchService)) return;
+        try {
+            watchService.close();
+        } catch (IOException exception) {
+            log.warn("Unable to close the error catalog watcher", exception);
+        }
+        watchService = null;
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    private void startWatch() {
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            WatchService newWatchService = FileSystems.getDefault().newWatchService();
+            directory.register(newWatchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watchService = newWatchService;
+            Thread watcher = new Thread(() -> watch(newWatchService), "magiavventure-error-catalog-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        } catch (IOException exception) {
+            log.warn("Unable to watch {}, the error catalog is reloaded only on request", file, exception);
+        }
+    }
+
+    private void watch(WatchService watchService) {
+        Path fileName = file.getFileName();
+        try {
+            while (true) {
+                WatchKey watchKey = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : watchKey.pollEvents()) {
+                    changed |= fileName.equals(event.context());
+                }
+                if (changed) reloadQuietly();
+                if (!watchKey.reset()) return;
+            }
+        } catch (ClosedWatchServiceException exception) {
+            log.debug("Error catalog watcher stopped");
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reloadQuietly() {
+        try {
+            reload();
+        } catch (IOException | RuntimeException exception) {
+            log.warn("Unable to reload the error catalog from {}, the current one is kept", file, exception);
+        }
+    }
+
+    private static Map<String, ErrorMessage> load(Path file) throws IOException {
+        String fileName = file.getFileName().toString();
+        PropertySourceLoader loader = fileName.endsWith(".yml") || fileName.endsWith(".yaml") ?
+                new YamlPropertySourceLoader() : new PropertiesPropertySourceLoader();
+        List<PropertySource<?>> propertySources = loader.load(fileName, new FileSystemResource(file));
+        return new Binder(ConfigurationPropertySources.from(propertySources))
+                .bind(ERRORS_PREFIX, ErrorsProperties.class)
+                .map(ErrorsProperties::retrieveErrorsMessages)
+                .orElse(Map.of());
+    }
+}
@@ -3,6 +3,8 @@ package it.magiavventure.common.error;
 import it.magiavventure.common.model.Error;
 import lombok.Getter;
 
+import java.io.Serial;
+
 @Getter
 public class MagiavventureException extends RuntimeException {
 
@@ -12,6 +14,9 @@ public class MagiavventureException extends RuntimeException {
     public static final String NOT_FOUND = "not-found";
     public static final String SERVICE_UNAVAILABLE = "service-unavailable";
 
+    @Serial
+    private static final long serialVersionUID = 1L;
+
     private final transient Error error;
 
     public MagiavventureException(Error error) {
@@ -19,13 +24,33 @@ public class MagiavventureException extends RuntimeException {
         this.error = error;
     }
 
+    /**
+     * Creates an exception for an expected error: no stack trace is captured and no suppressed
+     * exceptions are recorded, so the instance is cheap to create.
+     */
+    protected MagiavventureException(Error error, boolean stackless) {
+        super(error.getKey(), error.getThrowable(), !stackless, !stackless);
+        this.error = error;
+    }
+
     public static MagiavventureException of(String key, String... args) {
-        final var error = Error
+        return new MagiavventureException(buildError(key, args));
+    }
+
+    /**
+     * Creates the exception of a key marked as {@code expected} in the catalog, see
+     * {@link ErrorCatalogHolder#exception(String, String...)}.
+     */
+    static MagiavventureException expected(String key, String... args) {
+        return new MagiavventureException(buildError(key, args), true);
+    }
+
+    private static Error buildError(String key, String... args) {
+        return Error
                 .builder()
                 .key(key)
                 .args(args)
                 .build();
-        return new MagiavventureException(error);
     }
 
 }
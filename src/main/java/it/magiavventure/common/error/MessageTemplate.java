@@ -0,0 +1,88 @@
+package it.magiavventure.common.error;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Error message format parsed once, so that formatting it does not scan the pattern again as
+ * {@link String#format(String, Object...)} does on every call.
+ * <p>
+ * The {@code %s}, {@code %n$s}, {@code %%} and {@code %n} specifiers are supported. Patterns with other
+ * specifiers, and calls with fewer arguments than the pattern needs, are delegated to {@link String#format}
+ * so the result is always the same.
+ */
+public final class MessageTemplate {
+
+    private final String pattern;
+    private final String[] literals;
+    private final int[] argIndexes;
+    private final int requiredArgs;
+    private final boolean delegated;
+
+    private MessageTemplate(String pattern, String[] literals, int[] argIndexes, boolean delegated) {
+        this.pattern = pattern;
+        this.literals = literals;
+        this.argIndexes = argIndexes;
+        this.delegated = delegated;
+        int max = 0;
+        for (int argIndex : argIndexes) max = Math.max(max, argIndex + 1);
+        this.requiredArgs = max;
+    }
+
+    public static MessageTemplate parse(String pattern) {
+        if (Objects.isNull(pattern)) return new MessageTemplate(null, new String[0], new int[0], false);
+        List<String> literals = new ArrayList<>();
+        List<Integer> argIndexes = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int nextIndex = 0;
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i++);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+            if (i >= pattern.length()) return delegated(pattern);
+            char specifier = pattern.charAt(i++);
+            if (specifier == '%') {
+                literal.append('%');
+            } else if (specifier == 'n') {
+                literal.append(System.lineSeparator());
+            } else if (specifier == 's') {
+                literals.add(literal.toString());
+                literal.setLength(0);
+                argIndexes.add(nextIndex++);
+            } else {
+                int end = i - 1;
+                while (end < pattern.length() && Character.isDigit(pattern.charAt(end))) end++;
+                if (end == i - 1 || end + 1 >= pattern.length() || pattern.charAt(end) != '$'
+                        || pattern.charAt(end + 1) != 's' || pattern.charAt(i - 1) == '0') {
+                    return delegated(pattern);
+                }
+                literals.add(literal.toString());
+                literal.setLength(0);
+                argIndexes.add(Integer.parseInt(pattern, i - 1, end, 10) - 1);
+                i = end + 2;
+            }
+        }
+        literals.add(literal.toString());
+        return new MessageTemplate(pattern, literals.toArray(String[]::new),
+                argIndexes.stream().mapToInt(Integer::intValue).toArray(), false);
+    }
+
+    public String format(Object... args) {
+        if (Objects.isNull(pattern)) return null;
+        if (delegated || args.length < requiredArgs) return String.format(pattern, args);
+        if (argIndexes.length == 0) return literals[0];
+        StringBuilder builder = new StringBuilder(pattern.length() + 16 * argIndexes.length);
+        for (int i = 0; i < argIndexes.length; i++) {
+            builder.append(literals[i]).append(args[argIndexes[i]]);
+        }
+        return builder.append(literals[argIndexes.length]).toString();
+    }
+
+    private static MessageTemplate delegated(String pattern) {
+        return new MessageTemplate(pattern, new String[0], new int[0], true);
+    }
+}
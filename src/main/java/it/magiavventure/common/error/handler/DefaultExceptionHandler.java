@@ -1,11 +1,14 @@
 package it.magiavventure.common.error.handler;
 
-import it.magiavventure.common.configuration.CommonProperties;
 import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
+import it.magiavventure.common.error.DownstreamException;
+import it.magiavventure.common.error.ErrorCatalogHolder;
 import it.magiavventure.common.error.MagiavventureException;
 import it.magiavventure.common.mapper.HttpErrorMapper;
+import it.magiavventure.common.metrics.CommonMetrics;
 import it.magiavventure.common.model.Error;
 import it.magiavventure.common.model.HttpError;
+import it.magiavventure.common.timing.RequestTiming;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -29,28 +32,40 @@ import org.springframework.web.servlet.resource.NoResourceFoundException;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 
 @Order
 @Slf4j
 @ControllerAdvice
 @AllArgsConstructor
 public class DefaultExceptionHandler {
-    private final CommonProperties commonProperties;
+    private final ErrorCatalogHolder errorCatalogHolder;
     private final HttpErrorMapper httpErrorMapper;
+    private final CommonMetrics commonMetrics;
+    private final ErrorResponseRenderer errorResponseRenderer;
+    private final ExceptionLogSuppressor exceptionLogSuppressor;
 
     @ExceptionHandler({MagiavventureException.class})
     public ResponseEntity<HttpError> handleException(MagiavventureException magiavventureException) {
-
+        long start = System.nanoTime();
         Error error = magiavventureException.getError();
         ErrorMessage errorMessage = retrieveError(error.getKey());
+        if (!errorMessage.isExpected()) exceptionLogSuppressor.log(log, errorMessage, magiavventureException);
 
-        HttpError httpError = httpErrorMapper.map(errorMessage);
-        httpError.setMessage(formatMessage(errorMessage.getMessage(), error.getArgs()));
+        HttpError httpError = errorResponseRenderer.render(errorMessage, error.getArgs());
 
-        return ResponseEntity
-                .status(httpError.getStatus())
-                .body(httpError);
+        return respond(httpError, start);
+    }
+
+    @ExceptionHandler({DownstreamException.class})
+    public ResponseEntity<HttpError> handleDownstreamException(DownstreamException downstreamException) {
+        long start = System.nanoTime();
+        ErrorMessage errorMessage = downstreamException.getErrorMessage();
+        commonMetrics.recordError(errorMessage, downstreamException.getStatus());
+        if (!errorMessage.isExpected()) exceptionLogSuppressor.log(log, errorMessage, downstreamException);
+
+        HttpError httpError = errorResponseRenderer.render(downstreamException);
+
+        return respond(httpError, start);
     }
 
     @ExceptionHandler({
@@ -66,70 +81,62 @@ public class DefaultExceptionHandler {
             MissingServletRequestPartException.class
     })
     public ResponseEntity<HttpError> handleClientException(Exception exception) {
-        log.error(exception.getMessage(), exception);
+        long start = System.nanoTime();
         ErrorMessage errorMessage = retrieveError(MagiavventureException.BAD_REQUEST);
+        exceptionLogSuppressor.log(log, errorMessage, exception);
 
-        HttpError httpError = httpErrorMapper.map(errorMessage);
+        HttpError httpError = errorResponseRenderer.render(errorMessage);
 
-        return ResponseEntity
-                .status(httpError.getStatus())
-                .body(httpError);
+        return respond(httpError, start);
     }
 
     @ExceptionHandler({NoHandlerFoundException.class, NoResourceFoundException.class})
     public ResponseEntity<HttpError> handleNoHandlerException(Exception exception) {
-        log.error(exception.getMessage(), exception);
+        long start = System.nanoTime();
         ErrorMessage errorMessage = retrieveError(MagiavventureException.NOT_FOUND);
-        HttpError httpError = httpErrorMapper.map(errorMessage);
+        exceptionLogSuppressor.log(log, errorMessage, exception);
+        HttpError httpError = errorResponseRenderer.render(errorMessage);
 
-        return ResponseEntity
-                .status(httpError.getStatus())
-                .body(httpError);
+        return respond(httpError, start);
     }
 
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<HttpError> handleMethodArgumentNotValid(MethodArgumentNotValidException exception) {
-        log.error(exception.getMessage(), exception);
+        long start = System.nanoTime();
         ErrorMessage errorMessage = retrieveError(MagiavventureException.VALIDATION_ERROR);
+        exceptionLogSuppressor.log(log, errorMessage, exception);
 
         List<String> fields = new ArrayList<>();
         exception.getBindingResult().getFieldErrors().forEach(fieldError -> fields.add(fieldError.getField()));
         HttpError httpError = httpErrorMapper.map(errorMessage);
         httpError.setFields(fields);
 
-        return ResponseEntity
-                .status(httpError.getStatus())
-                .body(httpError);
+        return respond(httpError, start);
     }
 
     @ExceptionHandler(Exception.class)
     public ResponseEntity<HttpError> handleDefaultException(Exception exception) {
-        log.error(exception.getMessage(), exception);
+        long start = System.nanoTime();
         ErrorMessage errorMessage = retrieveError(MagiavventureException.SERVICE_UNAVAILABLE);
-        HttpError httpError = httpErrorMapper.map(errorMessage);
+        exceptionLogSuppressor.log(log, errorMessage, exception);
+        HttpError httpError = errorResponseRenderer.render(errorMessage);
 
+        return respond(httpError, start);
+    }
+
+    private ResponseEntity<HttpError> respond(HttpError httpError, long start) {
+        RequestTiming.recordError(System.nanoTime() - start);
         return ResponseEntity
                 .status(httpError.getStatus())
                 .body(httpError);
     }
 
     private ErrorMessage retrieveError(@NotNull String key) {
-        var errorMessage = commonProperties
-                .getErrors()
-                .retrieveErrorsMessages()
-                .get(key);
-
-        if(Objects.isNull(errorMessage)) return retrieveError(MagiavventureException.UNKNOWN_ERROR);
-
-
+        ErrorMessage errorMessage = errorCatalogHolder
+                .current()
+                .retrieve(key);
+        commonMetrics.recordError(errorMessage);
         return errorMessage;
     }
 
-    private String formatMessage(String message, Object... args) {
-        if(args.length > 0) {
-            return String.format(message, args);
-        }
-        return message;
-    }
-
 }
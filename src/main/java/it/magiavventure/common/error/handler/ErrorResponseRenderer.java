@@ -0,0 +1,106 @@
+package it.magiavventure.common.error.handler;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
+import it.magiavventure.common.error.ErrorCatalog;
+import it.magiavventure.common.error.DownstreamException;
+import it.magiavventure.common.error.ErrorCatalogHolder;
+import it.magiavventure.common.error.MessageTemplate;
+import it.magiavventure.common.mapper.HttpErrorMapper;
+import it.magiavventure.common.model.HttpError;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Builds the {@link HttpError} bodies of the catalog errors.
+ * <p>
+ * Every catalog entry is mapped and serialized once per catalog. The handlers always get a new, mutable
+ * {@link HttpError}; {@link #serialize(HttpError)} answers with the pre-serialized bytes while the body is still
+ * equal to its catalog entry and falls back to Jackson once it has been changed. Errors with arguments format the
+ * {@link MessageTemplate} parsed with the catalog.
+ */
+public class ErrorResponseRenderer {
+    private final ErrorCatalogHolder errorCatalogHolder;
+    private final HttpErrorMapper httpErrorMapper;
+    private final ObjectMapper objectMapper;
+    private volatile Rendering rendering;
+
+    public ErrorResponseRenderer(ErrorCatalogHolder errorCatalogHolder, HttpErrorMapper httpErrorMapper,
+                                 ObjectMapper objectMapper) {
+        this.errorCatalogHolder = errorCatalogHolder;
+        this.httpErrorMapper = httpErrorMapper;
+        this.objectMapper = objectMapper;
+    }
+
+    public HttpError render(ErrorMessage errorMessage, Object... args) {
+        RenderedEntry entry = rendering().entries.get(errorMessage);
+        if (Objects.isNull(entry)) entry = renderEntry(errorMessage);
+        HttpError httpError = httpErrorMapper.map(errorMessage);
+        if (Objects.isNull(args) || args.length == 0) return httpError;
+
+        httpError.setMessage(entry.messageTemplate().format(args));
+        return httpError;
+    }
+
+    /**
+     * Renders the error of a called service with the remote status and fields.
+     */
+    public HttpError render(DownstreamException downstreamException) {
+        ErrorMessage errorMessage = downstreamException.getErrorMessage();
+        List<String> fields = downstreamException.getFields();
+        HttpError httpError = httpErrorMapper.map(errorMessage);
+        httpError.setStatus(downstreamException.getStatus());
+        if (!fields.isEmpty()) httpError.setFields(fields);
+        return httpError;
+    }
+
+    /**
+     * Returns the JSON body of the error: the bytes rendered with the catalog when the error is equal to a catalog
+     * entry, otherwise a new serialization. The returned array may be shared and must not be modified.
+     */
+    public byte[] serialize(HttpError httpError) throws JsonProcessingException {
+        byte[] body = rendering().bodies.get(httpError);
+        return Objects.nonNull(body) ? body : objectMapper.writeValueAsBytes(httpError);
+    }
+
+    private Rendering rendering() {
+        ErrorCatalog errorCatalog = errorCatalogHolder.current();
+        Rendering current = rendering;
+        if (Objects.isNull(current) || current.errorCatalog != errorCatalog) {
+            current = new Rendering(errorCatalog);
+            rendering = current;
+        }
+        return current;
+    }
+
+    private RenderedEntry renderEntry(ErrorMessage errorMessage) {
+        HttpError httpError = httpErrorMapper.map(errorMessage);
+        try {
+            return new RenderedEntry(httpError, objectMapper.writeValueAsBytes(httpError),
+                    MessageTemplate.parse(errorMessage.getMessage()));
+        } catch (JsonProcessingException exception) {
+            throw new IllegalStateException("Unable to serialize the error " + errorMessage.getCode(), exception);
+        }
+    }
+
+    private final class Rendering {
+        private final ErrorCatalog errorCatalog;
+        private final Map<ErrorMessage, RenderedEntry> entries = new IdentityHashMap<>();
+        private final Map<HttpError, byte[]> bodies = new HashMap<>();
+
+        private Rendering(ErrorCatalog errorCatalog) {
+            this.errorCatalog = errorCatalog;
+            errorCatalog.asMap().values().forEach(errorMessage -> entries.put(errorMessage, renderEntry(errorMessage)));
+            entries.computeIfAbsent(errorCatalog.unknownError(), ErrorResponseRenderer.this::renderEntry);
+            entries.values().forEach(entry -> bodies.putIfAbsent(entry.httpError(), entry.body()));
+        }
+    }
+
+    private record RenderedEntry(HttpError httpError, byte[] body, MessageTemplate messageTemplate) {
+    }
+}
@@ -0,0 +1,160 @@
+package it.magiavventure.common.error.handler;
+
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
+import org.slf4j.Logger;
+import org.slf4j.event.Level;
+import org.springframework.context.Lifecycle;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Logs the exceptions handled by the exception handlers without flooding the logs during an incident.
+ * <p>
+ * Each exception is fingerprinted by its type and its top stack frames: the first occurrence of a
+ * fingerprint is logged with its stack trace, the repeats within the window are only counted and, when the
+ * window ends, a single line reports how many occurrences were not logged. The level is the
+ * {@code log-level} of the catalog error, ERROR when it is not set. A zero window logs every exception.
+ * <p>
+ * The ended windows are reported by a scheduler running between {@link #start()} and {@link #stop()}; the
+ * stop also reports the open windows.
+ */
+public class ExceptionLogSuppressor implements Lifecycle {
+
+    private static final Level DEFAULT_LEVEL = Level.ERROR;
+
+    private final long windowNanos;
+    private final Duration window;
+    private final int stackFrames;
+    private final int maxFingerprints;
+    private final LongSupplier nanoClock;
+    private final Map<Fingerprint, Occurrences> occurrences = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+    private boolean running;
+
+    public ExceptionLogSuppressor(Duration window, int stackFrames, int maxFingerprints) {
+        this(window, stackFrames, maxFingerprints, System::nanoTime);
+    }
+
+    ExceptionLogSuppressor(Duration window, int stackFrames, int maxFingerprints, LongSupplier nanoClock) {
+        this.window = window;
+        this.windowNanos = window.toNanos();
+        this.stackFrames = stackFrames;
+        this.maxFingerprints = maxFingerprints;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Logs the exception at the level of the error message, unless an exception with the same fingerprint
+     * has already been logged within the window.
+     */
+    public void log(Logger logger, ErrorMessage errorMessage, Throwable exception) {
+        Level level = Objects.isNull(errorMessage.getLogLevel()) ? DEFAULT_LEVEL : errorMessage.getLogLevel();
+        if (!logger.isEnabledForLevel(level)) return;
+        if (windowNanos <= 0) {
+            emit(logger, level, exception);
+            return;
+        }
+        Fingerprint fingerprint = fingerprint(exception);
+        long now = nanoClock.getAsLong();
+        Occurrences current = occurrences.get(fingerprint);
+        if (Objects.nonNull(current) && now - current.windowStart() < windowNanos) {
+            current.suppressed().incrementAndGet();
+            return;
+        }
+        if (Objects.isNull(current) && occurrences.size() >= maxFingerprints) {
+            emit(logger, level, exception);
+            return;
+        }
+        Occurrences next = new Occurrences(now, logger, level, describe(exception), new AtomicLong());
+        boolean opened = Objects.isNull(current) ? Objects.isNull(occurrences.putIfAbsent(fingerprint, next))
+                : occurrences.replace(fingerprint, current, next);
+        if (!opened) {
+            Occurrences winner = occurrences.get(fingerprint);
+            if (Objects.nonNull(winner)) {
+                winner.suppressed().incrementAndGet();
+                return;
+            }
+        }
+        if (Objects.nonNull(current)) summarize(current);
+        emit(logger, level, exception);
+    }
+
+    /** Reports and forgets the fingerprints whose window has ended. */
+    void flush() {
+        long now = nanoClock.getAsLong();
+        occurrences.forEach((fingerprint, entry) -> {
+            if (now - entry.windowStart() >= windowNanos && occurrences.remove(fingerprint, entry)) {
+                summarize(entry);
+            }
+        });
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        if (windowNanos <= 0) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "magiavventure-exception-log-summary");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, windowNanos, windowNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        if (Objects.nonNull(scheduler)) scheduler.shutdownNow();
+        scheduler = null;
+        occurrences.forEach((fingerprint, entry) -> {
+            if (occurrences.remove(fingerprint, entry)) summarize(entry);
+        });
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    private Fingerprint fingerprint(Throwable exception) {
+        StackTraceElement[] stackTrace = exception.getStackTrace();
+        return new Fingerprint(exception.getClass(),
+                List.of(Arrays.copyOf(stackTrace, Math.min(stackFrames, stackTrace.length))));
+    }
+
+    private void summarize(Occurrences entry) {
+        long suppressed = entry.suppressed().get();
+        if (suppressed == 0) return;
+        entry.logger().atLevel(entry.level()).log("{} more occurrences of {} in the last {}", suppressed,
+                entry.description(), window);
+    }
+
+    private static void emit(Logger logger, Level level, Throwable exception) {
+        logger.atLevel(level).setCause(exception).log(exception.getMessage());
+    }
+
+    private static String describe(Throwable exception) {
+        StackTraceElement[] stackTrace = exception.getStackTrace();
+        String type = exception.getClass().getName();
+        return stackTrace.length == 0 ? type : type + " at " + stackTrace[0];
+    }
+
+    private record Fingerprint(Class<?> type, List<StackTraceElement> frames) {
+    }
+
+    private record Occurrences(long windowStart, Logger logger, Level level, String description,
+                               AtomicLong suppressed) {
+    }
+}
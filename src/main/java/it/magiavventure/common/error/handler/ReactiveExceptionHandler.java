@@ -0,0 +1,136 @@
+package it.magiavventure.common.error.handler;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
+import it.magiavventure.common.error.DownstreamException;
+import it.magiavventure.common.error.ErrorCatalogHolder;
+import it.magiavventure.common.error.MagiavventureException;
+import it.magiavventure.common.mapper.HttpErrorMapper;
+import it.magiavventure.common.metrics.CommonMetrics;
+import it.magiavventure.common.model.Error;
+import it.magiavventure.common.model.HttpError;
+import it.magiavventure.common.timing.RequestTiming;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.web.reactive.error.ErrorWebExceptionHandler;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.MethodNotAllowedException;
+import org.springframework.web.server.NotAcceptableStatusException;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebInputException;
+import org.springframework.web.server.UnsupportedMediaTypeStatusException;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reactive counterpart of {@link DefaultExceptionHandler}: maps the exceptions to the same error catalog
+ * entries and writes the same {@link HttpError} body. It runs before the Spring Boot default handler.
+ */
+@Slf4j
+@AllArgsConstructor
+public class ReactiveExceptionHandler implements ErrorWebExceptionHandler, Ordered {
+    private final ErrorCatalogHolder errorCatalogHolder;
+    private final HttpErrorMapper httpErrorMapper;
+    private final CommonMetrics commonMetrics;
+    private final ErrorResponseRenderer errorResponseRenderer;
+    private final ExceptionLogSuppressor exceptionLogSuppressor;
+
+    @Override
+    public Mono<Void> handle(ServerWebExchange exchange, Throwable throwable) {
+        ServerHttpResponse response = exchange.getResponse();
+        if (response.isCommitted()) return Mono.error(throwable);
+
+        long start = System.nanoTime();
+        HttpError httpError = map(throwable);
+        byte[] body;
+        try {
+            body = errorResponseRenderer.serialize(httpError);
+        } catch (JsonProcessingException exception) {
+            return Mono.error(exception);
+        }
+        if (exchange.getAttribute(RequestTiming.ATTRIBUTE) instanceof RequestTiming requestTiming) {
+            requestTiming.addError(System.nanoTime() - start);
+        }
+        response.setStatusCode(HttpStatusCode.valueOf(httpError.getStatus()));
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(body)));
+    }
+
+    @Override
+    public int getOrder() {
+        return -2;
+    }
+
+    public HttpError map(Throwable throwable) {
+        if (throwable instanceof DownstreamException downstreamException) {
+            return handleDownstreamException(downstreamException);
+        }
+        if (throwable instanceof MagiavventureException magiavventureException) {
+            return handleException(magiavventureException);
+        }
+        if (throwable instanceof WebExchangeBindException webExchangeBindException) {
+            return handleBindException(webExchangeBindException);
+        }
+        ErrorMessage errorMessage = retrieveError(errorKey(throwable));
+        exceptionLogSuppressor.log(log, errorMessage, throwable);
+        return errorResponseRenderer.render(errorMessage);
+    }
+
+    private String errorKey(Throwable throwable) {
+        if (throwable instanceof ServerWebInputException
+                || throwable instanceof UnsupportedMediaTypeStatusException
+                || throwable instanceof NotAcceptableStatusException
+                || throwable instanceof MethodNotAllowedException) {
+            return MagiavventureException.BAD_REQUEST;
+        }
+        if (throwable instanceof ResponseStatusException responseStatusException
+                && responseStatusException.getStatusCode().isSameCodeAs(HttpStatus.NOT_FOUND)) {
+            return MagiavventureException.NOT_FOUND;
+        }
+        return MagiavventureException.SERVICE_UNAVAILABLE;
+    }
+
+    private HttpError handleException(MagiavventureException magiavventureException) {
+        Error error = magiavventureException.getError();
+        ErrorMessage errorMessage = retrieveError(error.getKey());
+        if (!errorMessage.isExpected()) exceptionLogSuppressor.log(log, errorMessage, magiavventureException);
+
+        return errorResponseRenderer.render(errorMessage, error.getArgs());
+    }
+
+    private HttpError handleDownstreamException(DownstreamException downstreamException) {
+        ErrorMessage errorMessage = downstreamException.getErrorMessage();
+        commonMetrics.recordError(errorMessage, downstreamException.getStatus());
+        if (!errorMessage.isExpected()) exceptionLogSuppressor.log(log, errorMessage, downstreamException);
+
+        return errorResponseRenderer.render(downstreamException);
+    }
+
+    private HttpError handleBindException(WebExchangeBindException exception) {
+        ErrorMessage errorMessage = retrieveError(MagiavventureException.VALIDATION_ERROR);
+        exceptionLogSuppressor.log(log, errorMessage, exception);
+
+        List<String> fields = new ArrayList<>();
+        exception.getBindingResult().getFieldErrors().forEach(fieldError -> fields.add(fieldError.getField()));
+        HttpError httpError = httpErrorMapper.map(errorMessage);
+        httpError.setFields(fields);
+        return httpError;
+    }
+
+    private ErrorMessage retrieveError(@NotNull String key) {
+        ErrorMessage errorMessage = errorCatalogHolder
+                .current()
+                .retrieve(key);
+        commonMetrics.recordError(errorMessage);
+        return errorMessage;
+    }
+}
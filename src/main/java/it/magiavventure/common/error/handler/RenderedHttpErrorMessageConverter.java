@@ -0,0 +1,51 @@
+package it.magiavventure.common.error.handler;
+
+import it.magiavventure.common.model.HttpError;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.NonNull;
+import org.springframework.util.function.SingletonSupplier;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * Writes {@link HttpError} JSON responses through {@link ErrorResponseRenderer#serialize(HttpError)}, so the bodies
+ * still equal to a catalog entry skip Jackson. It is registered ahead of the other converters and never reads.
+ */
+public class RenderedHttpErrorMessageConverter extends AbstractHttpMessageConverter<HttpError> {
+    private final Supplier<ErrorResponseRenderer> errorResponseRenderer;
+
+    public RenderedHttpErrorMessageConverter(Supplier<ErrorResponseRenderer> errorResponseRenderer) {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+        this.errorResponseRenderer = SingletonSupplier.of(errorResponseRenderer);
+    }
+
+    @Override
+    protected boolean supports(@NonNull Class<?> clazz) {
+        return HttpError.class == clazz;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    @NonNull
+    protected HttpError readInternal(@NonNull Class<? extends HttpError> clazz,
+                                     @NonNull HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Rendered errors are write only", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(@NonNull HttpError httpError,
+                                 @NonNull HttpOutputMessage outputMessage) throws IOException {
+        byte[] body = errorResponseRenderer.get().serialize(httpError);
+        outputMessage.getHeaders().setContentLength(body.length);
+        outputMessage.getBody().write(body);
+    }
+}
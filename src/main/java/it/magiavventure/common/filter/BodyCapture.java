@@ -0,0 +1,98 @@
+package it.magiavventure.common.filter;
+
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Keeps a copy of the first bytes that flow through a request or response body, up to the buffer size
+ * of the pool, while counting all of them. The buffer is taken from the pool on the first write and
+ * must be given back with {@link #release()} once the captured bytes have been copied.
+ */
+final class BodyCapture {
+    private static final byte[] EMPTY = new byte[0];
+    private static final List<String> STREAMING_CONTENT_TYPES = List.of(
+            "text/event-stream",
+            "application/x-ndjson",
+            "application/stream+json",
+            "multipart/x-mixed-replace");
+
+    private final BodyCapturePool pool;
+    private final int limit;
+    private byte[] buffer;
+    private int size;
+    private long total;
+
+    BodyCapture(BodyCapturePool pool) {
+        this.pool = pool;
+        this.limit = pool.getBufferSize();
+    }
+
+    void write(int b) {
+        total++;
+        if (size < limit) {
+            buffer()[size++] = (byte) b;
+        }
+    }
+
+    void write(byte[] b, int off, int len) {
+        total += len;
+        int captured = Math.min(len, limit - size);
+        if (captured > 0) {
+            System.arraycopy(b, off, buffer(), size, captured);
+            size += captured;
+        }
+    }
+
+    /** Copies the readable bytes of the buffer, leaving its read position untouched. */
+    void write(DataBuffer dataBuffer) {
+        int len = dataBuffer.readableByteCount();
+        total += len;
+        int captured = Math.min(len, limit - size);
+        if (captured > 0) {
+            dataBuffer.toByteBuffer(dataBuffer.readPosition(), ByteBuffer.wrap(buffer()), size, captured);
+            size += captured;
+        }
+    }
+
+    byte[] toByteArray() {
+        return size == 0 ? EMPTY : Arrays.copyOf(buffer, size);
+    }
+
+    long getTotal() {
+        return total;
+    }
+
+    /** Forgets the bytes written so far, keeping the buffer, after the response buffer has been reset. */
+    void reset() {
+        size = 0;
+        total = 0;
+    }
+
+    void release() {
+        if (Objects.nonNull(buffer)) {
+            pool.release(buffer);
+            buffer = null;
+        }
+        size = 0;
+    }
+
+    /** Whether the content type is an open-ended stream, whose body is never captured. */
+    static boolean isStreaming(String contentType) {
+        if (Objects.isNull(contentType)) return false;
+        for (String streamingContentType : STREAMING_CONTENT_TYPES) {
+            if (contentType.regionMatches(true, 0, streamingContentType, 0, streamingContentType.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private byte[] buffer() {
+        if (Objects.isNull(buffer)) buffer = pool.acquire();
+        return buffer;
+    }
+}
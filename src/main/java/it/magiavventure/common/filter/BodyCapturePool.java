@@ -0,0 +1,41 @@
+package it.magiavventure.common.filter;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of the buffers used by {@link BodyCapture}, so that capturing the logged prefix of the
+ * bodies does not allocate a new buffer for every request.
+ */
+final class BodyCapturePool {
+    private final int bufferSize;
+    private final int maxPooledBuffers;
+    private final Queue<byte[]> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledBuffers = new AtomicInteger();
+
+    BodyCapturePool(int bufferSize, int maxPooledBuffers) {
+        this.bufferSize = Math.max(0, bufferSize);
+        this.maxPooledBuffers = maxPooledBuffers;
+    }
+
+    int getBufferSize() {
+        return bufferSize;
+    }
+
+    byte[] acquire() {
+        byte[] buffer = buffers.poll();
+        if (buffer == null) return new byte[bufferSize];
+        pooledBuffers.decrementAndGet();
+        return buffer;
+    }
+
+    void release(byte[] buffer) {
+        if (buffer.length != bufferSize) return;
+        if (pooledBuffers.incrementAndGet() > maxPooledBuffers) {
+            pooledBuffers.decrementAndGet();
+            return;
+        }
+        buffers.offer(buffer);
+    }
+}
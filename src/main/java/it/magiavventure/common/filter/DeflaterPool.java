@@ -0,0 +1,39 @@
+package it.magiavventure.common.filter;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * Bounded pool of the raw {@link Deflater}s used to compress the responses, so that compressing a body does
+ * not allocate the native deflate state for every request. The deflaters beyond the pool size are ended.
+ */
+final class DeflaterPool {
+    private final int level;
+    private final int maxPooledDeflaters;
+    private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledDeflaters = new AtomicInteger();
+
+    DeflaterPool(int level, int maxPooledDeflaters) {
+        this.level = level;
+        this.maxPooledDeflaters = maxPooledDeflaters;
+    }
+
+    Deflater acquire() {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) return new Deflater(level, true);
+        pooledDeflaters.decrementAndGet();
+        return deflater;
+    }
+
+    void release(Deflater deflater) {
+        deflater.reset();
+        if (pooledDeflaters.incrementAndGet() > maxPooledDeflaters) {
+            pooledDeflaters.decrementAndGet();
+            deflater.end();
+            return;
+        }
+        deflaters.offer(deflater);
+    }
+}
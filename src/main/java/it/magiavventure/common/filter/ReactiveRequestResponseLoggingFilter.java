@@ -0,0 +1,246 @@
+package it.magiavventure.common.filter;
+
+import it.magiavventure.common.logging.BodyMode;
+import it.magiavventure.common.logging.HttpLogRecord;
+import it.magiavventure.common.logging.HttpLogWriter;
+import it.magiavventure.common.logging.LoggingPolicy;
+import it.magiavventure.common.logging.SyncHttpLogWriter;
+import it.magiavventure.common.metrics.CommonMetrics;
+import it.magiavventure.common.timing.RequestTiming;
+import it.magiavventure.common.transaction.TransactionId;
+import org.reactivestreams.Publisher;
+import org.slf4j.MDC;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Reactive counterpart of {@link RequestResponseLoggingFilter}. The body buffers are copied, up to the
+ * max body bytes, as they flow to the handler and to the client, without joining or retaining them.
+ * <p>
+ * The records are written once the exchange completes, with the transaction id of the
+ * {@link ReactiveTransactionIdFilter} in the MDC. When the chain fails the response is logged just before
+ * the error response is committed, without its body, since it is rendered outside of the filter chain.
+ */
+public class ReactiveRequestResponseLoggingFilter implements WebFilter, Ordered {
+
+    private static final int MAX_POOLED_BUFFERS = 64;
+    private static final BodyCapturePool NO_CAPTURE = new BodyCapturePool(0, 0);
+    private static final byte[] NO_BODY = new byte[0];
+
+    private final HttpLogWriter httpLogWriter;
+    private final LoggingPolicy loggingPolicy;
+    private final CommonMetrics commonMetrics;
+    private final BodyCapturePool bodyCapturePool;
+
+    public ReactiveRequestResponseLoggingFilter() {
+        this(new SyncHttpLogWriter(), LoggingPolicy.DEFAULT, CommonMetrics.NOOP);
+    }
+
+    public ReactiveRequestResponseLoggingFilter(HttpLogWriter httpLogWriter, LoggingPolicy loggingPolicy,
+                                                CommonMetrics commonMetrics) {
+        this.httpLogWriter = httpLogWriter;
+        this.loggingPolicy = loggingPolicy;
+        this.commonMetrics = commonMetrics;
+        this.bodyCapturePool = new BodyCapturePool(loggingPolicy.getMaxBodyBytes(), MAX_POOLED_BUFFERS);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        long start = System.nanoTime();
+        ServerHttpRequest request = exchange.getRequest();
+        LoggingPolicy.Decision decision = loggingPolicy.resolve(request.getPath().pathWithinApplication().value());
+        if (!decision.sample()) return chain.filter(exchange);
+
+        boolean captureBody = decision.getBody() != BodyMode.NEVER;
+        boolean requestBodyExcluded = loggingPolicy
+                .isBodyExcluded(request.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+        CapturingRequest capturingRequest = new CapturingRequest(request,
+                new BodyCapture(captureBody && !requestBodyExcluded ? bodyCapturePool : NO_CAPTURE));
+        CapturingResponse capturingResponse = new CapturingResponse(exchange.getResponse(),
+                new BodyCapture(captureBody ? bodyCapturePool : NO_CAPTURE), loggingPolicy);
+        ServerWebExchange capturingExchange = exchange
+                .mutate()
+                .request(capturingRequest)
+                .response(capturingResponse)
+                .build();
+        long chainStart = System.nanoTime();
+        long overhead = chainStart - start;
+        if (exchange.getAttribute(RequestTiming.ATTRIBUTE) instanceof RequestTiming requestTiming) {
+            requestTiming.chainStarted(chainStart);
+        }
+
+        return chain
+                .filter(capturingExchange)
+                .doFinally(signalType -> {
+                    long logStart = System.nanoTime();
+                    log(exchange, capturingRequest, capturingResponse, decision, signalType);
+                    commonMetrics.recordLoggingFilterOverhead(overhead + (System.nanoTime() - logStart));
+                });
+    }
+
+    @Override
+    public int getOrder() {
+        return ReactiveRequestTimingFilter.ORDER + 2;
+    }
+
+    private void log(ServerWebExchange exchange, CapturingRequest request, CapturingResponse response,
+                     LoggingPolicy.Decision decision, SignalType signalType) {
+        String transactionId = exchange.getAttribute(ReactiveTransactionIdFilter.TRANSACTION_ID_ATTRIBUTE);
+        String method = request.getMethod().name();
+        String requestUri = request.getPath().value();
+        boolean failed = signalType == SignalType.ON_ERROR;
+        withTransactionId(transactionId, () -> logRequest(request, method, requestUri,
+                includeBody(decision, failed ? 500 : status(response))));
+        if (failed && !response.isCommitted()) {
+            response.beforeCommit(() -> Mono.fromRunnable(() -> withTransactionId(transactionId,
+                    () -> logResponse(response, method, requestUri, false))));
+        } else {
+            withTransactionId(transactionId, () -> logResponse(response, method, requestUri,
+                    includeBody(decision, status(response))));
+        }
+    }
+
+    private boolean includeBody(LoggingPolicy.Decision decision, int status) {
+        return decision.getBody() == BodyMode.ALWAYS || (decision.getBody() == BodyMode.ON_ERROR && status >= 400);
+    }
+
+    private void logRequest(CapturingRequest request, String method, String requestUri, boolean includeBody) {
+        BodyCapture bodyCapture = request.getBodyCapture();
+        HttpLogRecord logRecord = HttpLogRecord
+                .builder()
+                .type(HttpLogRecord.Type.REQUEST)
+                .method(method)
+                .uri(requestUri)
+                .headers(headers(request.getHeaders()))
+                .body(includeBody ? bodyCapture.toByteArray() : NO_BODY)
+                .bodySize(bodyCapture.getTotal())
+                .build();
+        bodyCapture.release();
+        commonMetrics.recordLoggedBodyBytes(logRecord.getType(), logRecord.getBody().length);
+        httpLogWriter.write(logRecord);
+    }
+
+    private void logResponse(CapturingResponse response, String method, String requestUri, boolean includeBody) {
+        BodyCapture bodyCapture = response.getBodyCapture();
+        HttpLogRecord logRecord = HttpLogRecord
+                .builder()
+                .type(HttpLogRecord.Type.RESPONSE)
+                .method(method)
+                .uri(requestUri)
+                .headers(headers(response.getHeaders()))
+                .status(status(response))
+                .body(includeBody ? bodyCapture.toByteArray() : NO_BODY)
+                .bodySize(bodyCapture.getTotal())
+                .build();
+        bodyCapture.release();
+        commonMetrics.recordLoggedBodyBytes(logRecord.getType(), logRecord.getBody().length);
+        httpLogWriter.write(logRecord);
+    }
+
+    private int status(ServerHttpResponse response) {
+        HttpStatusCode statusCode = response.getStatusCode();
+        return Objects.isNull(statusCode) ? 200 : statusCode.value();
+    }
+
+    private String[] headers(HttpHeaders httpHeaders) {
+        String[] headers = new String[httpHeaders.size() * 2];
+        int i = 0;
+        for (Map.Entry<String, List<String>> header : httpHeaders.entrySet()) {
+            headers[i++] = header.getKey();
+            headers[i++] = header.getValue().isEmpty() ? null : header.getValue().get(0);
+        }
+        return headers;
+    }
+
+    /** Runs with the transaction id in the MDC, restoring the previous one afterwards. */
+    static void withTransactionId(String transactionId, Runnable runnable) {
+        if (Objects.isNull(transactionId)) {
+            runnable.run();
+            return;
+        }
+        String previous = MDC.get(TransactionId.TRANSACTION_ID);
+        MDC.put(TransactionId.TRANSACTION_ID, transactionId);
+        try {
+            runnable.run();
+        } finally {
+            if (Objects.isNull(previous)) {
+                MDC.remove(TransactionId.TRANSACTION_ID);
+            } else {
+                MDC.put(TransactionId.TRANSACTION_ID, previous);
+            }
+        }
+    }
+
+    static class CapturingRequest extends ServerHttpRequestDecorator {
+        private final BodyCapture bodyCapture;
+
+        CapturingRequest(ServerHttpRequest delegate, BodyCapture bodyCapture) {
+            super(delegate);
+            this.bodyCapture = bodyCapture;
+        }
+
+        @Override
+        public Flux<DataBuffer> getBody() {
+            return super.getBody().doOnNext(bodyCapture::write);
+        }
+
+        BodyCapture getBodyCapture() {
+            return bodyCapture;
+        }
+    }
+
+    static class CapturingResponse extends ServerHttpResponseDecorator {
+        private final BodyCapture bodyCapture;
+        private final LoggingPolicy loggingPolicy;
+        private boolean started;
+        private boolean captureSkipped;
+
+        CapturingResponse(ServerHttpResponse delegate, BodyCapture bodyCapture, LoggingPolicy loggingPolicy) {
+            super(delegate);
+            this.bodyCapture = bodyCapture;
+            this.loggingPolicy = loggingPolicy;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            if (body instanceof Mono<? extends DataBuffer> mono) {
+                return super.writeWith(mono.doOnNext(this::capture));
+            }
+            return super.writeWith(Flux.from(body).doOnNext(this::capture));
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            return super.writeAndFlushWith(Flux.from(body).map(part -> Flux.from(part).doOnNext(this::capture)));
+        }
+
+        BodyCapture getBodyCapture() {
+            return bodyCapture;
+        }
+
+        private void capture(DataBuffer dataBuffer) {
+            if (!started) {
+                started = true;
+                String contentType = getHeaders().getFirst(HttpHeaders.CONTENT_TYPE);
+                captureSkipped = loggingPolicy.isBodyExcluded(contentType) || BodyCapture.isStreaming(contentType);
+            }
+            if (!captureSkipped) bodyCapture.write(dataBuffer);
+        }
+    }
+}
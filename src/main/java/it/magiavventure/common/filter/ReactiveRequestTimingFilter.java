@@ -0,0 +1,74 @@
+package it.magiavventure.common.filter;
+
+import it.magiavventure.common.logging.LoggingPolicy;
+import it.magiavventure.common.timing.RequestTiming;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.Objects;
+
+/**
+ * Reactive counterpart of {@link RequestTimingFilter}: the {@link RequestTiming} is kept in the exchange
+ * attributes and the {@code Server-Timing} header is written just before the response is committed. The
+ * response logging runs after this filter has completed, so only its work before the chain is measured, as
+ * part of {@code pre}.
+ */
+@Slf4j(topic = "it.magiavventure.common.filter.RequestTimingFilter")
+public class ReactiveRequestTimingFilter implements WebFilter, Ordered {
+
+    public static final int ORDER = Ordered.HIGHEST_PRECEDENCE;
+
+    private final LoggingPolicy loggingPolicy;
+    private final boolean serverTiming;
+
+    public ReactiveRequestTimingFilter(LoggingPolicy loggingPolicy, boolean serverTiming) {
+        this.loggingPolicy = loggingPolicy;
+        this.serverTiming = serverTiming;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!serverTiming && !loggingPolicy.isSlowThresholdConfigured()) return chain.filter(exchange);
+
+        RequestTiming requestTiming = new RequestTiming(System.nanoTime());
+        exchange.getAttributes().put(RequestTiming.ATTRIBUTE, requestTiming);
+        ServerHttpResponse response = exchange.getResponse();
+        if (serverTiming) {
+            response.beforeCommit(() -> Mono.fromRunnable(() -> response.getHeaders()
+                    .set(RequestTiming.SERVER_TIMING_HEADER, requestTiming.serverTiming(System.nanoTime()))));
+        }
+        requestTiming.chainStarted(System.nanoTime());
+        return chain
+                .filter(exchange)
+                .doFinally(signalType -> complete(exchange, requestTiming));
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    private void complete(ServerWebExchange exchange, RequestTiming requestTiming) {
+        long now = System.nanoTime();
+        requestTiming.chainEnded(now);
+        long total = requestTiming.getTotalNanos(now);
+        ServerHttpRequest request = exchange.getRequest();
+        if (!log.isWarnEnabled() || !loggingPolicy.resolve(request.getPath().pathWithinApplication().value())
+                .isSlow(total)) {
+            return;
+        }
+        HttpStatusCode statusCode = exchange.getResponse().getStatusCode();
+        String transactionId = exchange.getAttribute(ReactiveTransactionIdFilter.TRANSACTION_ID_ATTRIBUTE);
+        ReactiveRequestResponseLoggingFilter.withTransactionId(transactionId, () -> log.warn(
+                "Slow request {} {} {} took {} ms: {}", request.getMethod().name(), request.getPath().value(),
+                Objects.isNull(statusCode) ? 200 : statusCode.value(), RequestTiming.millis(total),
+                requestTiming.summary(now)));
+    }
+}
@@ -0,0 +1,88 @@
+package it.magiavventure.common.filter;
+
+import it.magiavventure.common.timing.RequestTiming;
+import it.magiavventure.common.transaction.TimeOrderedTransactionIdGenerator;
+import it.magiavventure.common.transaction.TransactionContext;
+import it.magiavventure.common.transaction.TransactionId;
+import it.magiavventure.common.transaction.TransactionIdGenerator;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.Objects;
+
+/**
+ * Reactive counterpart of {@link TransactionIdFilter}. The id is written in the Reactor context under the
+ * {@link TransactionId#TRANSACTION_ID} key and in the {@link #TRANSACTION_ID_ATTRIBUTE} exchange attribute,
+ * instead of the MDC that does not follow the request across the event loop threads. The resolved
+ * {@link TransactionContext}, with the W3C trace context, is written in the Reactor context under
+ * {@link TransactionContext#CONTEXT_KEY}, where the {@code WebClient} filter reads it.
+ */
+public class ReactiveTransactionIdFilter implements WebFilter, Ordered {
+
+    public static final String TRANSACTION_ID_ATTRIBUTE = ReactiveTransactionIdFilter.class.getName() + "."
+            + TransactionId.TRANSACTION_ID;
+
+    private final TransactionIdGenerator transactionIdGenerator;
+    private final int maxLength;
+    private final boolean traceContext;
+
+    public ReactiveTransactionIdFilter() {
+        this(new TimeOrderedTransactionIdGenerator(), TransactionId.DEFAULT_MAX_LENGTH);
+    }
+
+    public ReactiveTransactionIdFilter(TransactionIdGenerator transactionIdGenerator, int maxLength) {
+        this(transactionIdGenerator, maxLength, true);
+    }
+
+    public ReactiveTransactionIdFilter(TransactionIdGenerator transactionIdGenerator, int maxLength,
+                                       boolean traceContext) {
+        this.transactionIdGenerator = transactionIdGenerator;
+        this.maxLength = maxLength;
+        this.traceContext = traceContext;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        TransactionContext transactionContext = resolve(exchange.getRequest().getHeaders());
+        String transactionId = transactionContext.getTransactionId();
+        exchange.getAttributes().put(TRANSACTION_ID_ATTRIBUTE, transactionId);
+        HttpHeaders responseHeaders = exchange.getResponse().getHeaders();
+        responseHeaders.set(TransactionId.TRANSACTION_ID, transactionId);
+        if (Objects.nonNull(transactionContext.getTraceparent())) {
+            responseHeaders.set(TransactionContext.TRACEPARENT, transactionContext.getTraceparent());
+        }
+        if (exchange.getAttribute(RequestTiming.ATTRIBUTE) instanceof RequestTiming requestTiming) {
+            requestTiming.chainStarted(System.nanoTime());
+        }
+        return chain
+                .filter(exchange)
+                .contextWrite(Context.of(TransactionId.TRANSACTION_ID, transactionId,
+                        TransactionContext.CONTEXT_KEY, transactionContext));
+    }
+
+    private TransactionContext resolve(HttpHeaders headers) {
+        String transactionId = headers.getFirst(TransactionId.TRANSACTION_ID);
+        if (!TransactionId.isValid(transactionId, maxLength)) transactionId = null;
+        if (!traceContext) {
+            return TransactionContext.of(Objects.nonNull(transactionId) ? transactionId
+                    : transactionIdGenerator.generate());
+        }
+        return TransactionContext.resolve(transactionId, headers.getFirst(TransactionContext.TRACEPARENT),
+                headers.getFirst(TransactionContext.TRACESTATE), transactionIdGenerator);
+    }
+
+    @Override
+    public int getOrder() {
+        return ReactiveRequestTimingFilter.ORDER + 1;
+    }
+
+    /** The transaction id of the current request, read from the Reactor context. */
+    public static Mono<String> transactionId() {
+        return Mono.deferContextual(context -> Mono.justOrEmpty(context.getOrEmpty(TransactionId.TRANSACTION_ID)));
+    }
+}
@@ -1,149 +1,454 @@
 package it.magiavventure.common.filter;
 
+import it.magiavventure.common.logging.BodyMode;
+import it.magiavventure.common.logging.HttpLogRecord;
+import it.magiavventure.common.logging.HttpLogWriter;
+import it.magiavventure.common.logging.LoggingPolicy;
+import it.magiavventure.common.logging.SyncHttpLogWriter;
+import it.magiavventure.common.metrics.CommonMetrics;
+import it.magiavventure.common.timing.RequestTiming;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletRequestWrapper;
 import jakarta.servlet.http.HttpServletResponse;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.Ordered;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.slf4j.MDC;
 import org.springframework.core.annotation.Order;
 import org.springframework.web.filter.GenericFilterBean;
-import org.springframework.web.util.ContentCachingResponseWrapper;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.UnaryOperator;
 
-@Slf4j
-@Order(Ordered.HIGHEST_PRECEDENCE)
+@Order(RequestResponseLoggingFilter.ORDER)
 public class RequestResponseLoggingFilter extends GenericFilterBean {
 
+    public static final int ORDER = TransactionIdFilter.ORDER + 1;
+
+    private static final int MAX_POOLED_BUFFERS = 64;
+    private static final BodyCapturePool NO_CAPTURE = new BodyCapturePool(0, 0);
+    private static final byte[] NO_BODY = new byte[0];
+
+    private final HttpLogWriter httpLogWriter;
+    private final LoggingPolicy loggingPolicy;
+    private final CommonMetrics commonMetrics;
+    private final BodyCapturePool bodyCapturePool;
+
+    public RequestResponseLoggingFilter() {
+        this(new SyncHttpLogWriter(), LoggingPolicy.DEFAULT);
+    }
+
+    public RequestResponseLoggingFilter(HttpLogWriter httpLogWriter, LoggingPolicy loggingPolicy) {
+        this(httpLogWriter, loggingPolicy, CommonMetrics.NOOP);
+    }
+
+    public RequestResponseLoggingFilter(HttpLogWriter httpLogWriter, LoggingPolicy loggingPolicy,
+                                        CommonMetrics commonMetrics) {
+        this.httpLogWriter = httpLogWriter;
+        this.loggingPolicy = loggingPolicy;
+        this.commonMetrics = commonMetrics;
+        this.bodyCapturePool = new BodyCapturePool(loggingPolicy.getMaxBodyBytes(), MAX_POOLED_BUFFERS);
+    }
+
     @Override
     public void doFilter(ServletRequest request, ServletResponse response,
                          FilterChain chain) throws IOException, ServletException {
+        long start = System.nanoTime();
         HttpServletRequest httpServletRequest = (HttpServletRequest) request;
-        ContentCachingResponseWrapper responseWrapper = responseWrapper(response);
-
-        String requestBody = getRequestBody(httpServletRequest);
         String method = httpServletRequest.getMethod();
         String requestUri = httpServletRequest.getRequestURI();
-        logRequest(httpServletRequest, requestBody, method, requestUri);
-        BodyCachingRequestWrapper requestWrapper = new BodyCachingRequestWrapper(httpServletRequest, requestBody);
+        LoggingPolicy.Decision decision = loggingPolicy
+                .resolve(requestUri.substring(httpServletRequest.getContextPath().length()));
+        if (!decision.sample()) {
+            chain.doFilter(request, response);
+            return;
+        }
 
-        chain.doFilter(requestWrapper, responseWrapper);
+        boolean captureBody = decision.getBody() != BodyMode.NEVER;
+        CapturingRequestWrapper requestWrapper = new CapturingRequestWrapper(httpServletRequest,
+                new BodyCapture(captureBody && !loggingPolicy.isBodyExcluded(request.getContentType()) ?
+                        bodyCapturePool : NO_CAPTURE));
+        CapturingResponseWrapper responseWrapper = responseWrapper(response, captureBody);
 
-        logResponse(responseWrapper, method, requestUri);
+        boolean completed = false;
+        long chainStart = System.nanoTime();
+        long chainEnd;
+        if (request.getAttribute(RequestTiming.ATTRIBUTE) instanceof RequestTiming requestTiming) {
+            requestTiming.chainStarted(chainStart);
+        }
+        try {
+            chain.doFilter(requestWrapper, responseWrapper);
+            completed = true;
+        } finally {
+            chainEnd = System.nanoTime();
+            if (!completed || !requestWrapper.isAsyncStarted()) {
+                logRequest(requestWrapper, method, requestUri,
+                        includeBody(decision, completed ? responseWrapper.getStatus() : 500));
+            }
+            if (!completed) responseWrapper.getBodyCapture().release();
+        }
+
+        if (requestWrapper.isAsyncStarted()) {
+            requestWrapper.getAsyncContext().addListener(new AsyncLoggingListener(requestWrapper, responseWrapper,
+                    method, requestUri, decision, chainStart - start, System.nanoTime() - chainEnd));
+            return;
+        }
+        logResponse(responseWrapper, method, requestUri, includeBody(decision, responseWrapper.getStatus()));
+        recordOverhead(request, chainStart - start, System.nanoTime() - chainEnd);
+    }
+
+    /** The work before the chain is already part of the {@code pre} timing, which ends at the chain start. */
+    private void recordOverhead(ServletRequest request, long beforeChain, long afterChain) {
+        commonMetrics.recordLoggingFilterOverhead(beforeChain + afterChain);
+        if (request.getAttribute(RequestTiming.ATTRIBUTE) instanceof RequestTiming requestTiming) {
+            requestTiming.addLogging(afterChain);
+        }
+    }
+
+    private boolean includeBody(LoggingPolicy.Decision decision, int status) {
+        return decision.getBody() == BodyMode.ALWAYS || (decision.getBody() == BodyMode.ON_ERROR && status >= 400);
     }
-    private void logRequest(HttpServletRequest request, String body, String method, String requestUri) {
-        StringBuilder builder = new StringBuilder();
-        builder.append("{")
-                .append("\"method\":\"")
-                .append(method)
-                .append("\", ")
-                .append("\"url\": \"")
-                .append(requestUri)
-                .append("\", ")
-                .append(headersToString(Collections.list(request.getHeaderNames()), request::getHeader))
-                .append("\"body\": ")
-                .append(!body.isEmpty() ? body : "{}")
-                .append("}");
-        log.info("REQUEST -> {}", builder);
+
+    private void logRequest(CapturingRequestWrapper request, String method, String requestUri, boolean includeBody) {
+        BodyCapture bodyCapture = request.getBodyCapture();
+        HttpLogRecord logRecord = HttpLogRecord
+                .builder()
+                .type(HttpLogRecord.Type.REQUEST)
+                .method(method)
+                .uri(requestUri)
+                .headers(headers(Collections.list(request.getHeaderNames()), request::getHeader))
+                .body(includeBody ? bodyCapture.toByteArray() : NO_BODY)
+                .bodySize(bodyCapture.getTotal())
+                .build();
+        bodyCapture.release();
+        commonMetrics.recordLoggedBodyBytes(logRecord.getType(), logRecord.getBody().length);
+        httpLogWriter.write(logRecord);
     }
 
-    private void logResponse(ContentCachingResponseWrapper response, String method, String requestUri) throws IOException {
-        StringBuilder builder = new StringBuilder();
-        builder.append("{")
-                .append("\"method\":\"")
-                .append(method)
-                .append("\", ")
-                .append("\"url\": \"")
-                .append(requestUri)
-                .append("\", ")
-                .append(headersToString(response.getHeaderNames(), response::getHeader))
-                .append("\"status\": ")
-                .append(response.getStatus())
-                .append(", ")
-                .append("\"body\": ")
-                .append(new String(response.getContentAsByteArray()))
-                .append("}");
-        log.info("RESPONSE -> {}", builder);
-        response.copyBodyToResponse();
+    private void logResponse(CapturingResponseWrapper response, String method, String requestUri,
+                             boolean includeBody) {
+        response.flushWriter();
+        BodyCapture bodyCapture = response.getBodyCapture();
+        HttpLogRecord logRecord = HttpLogRecord
+                .builder()
+                .type(HttpLogRecord.Type.RESPONSE)
+                .method(method)
+                .uri(requestUri)
+                .headers(headers(response.getHeaderNames(), response::getHeader))
+                .status(response.getStatus())
+                .body(includeBody ? bodyCapture.toByteArray() : NO_BODY)
+                .bodySize(bodyCapture.getTotal())
+                .build();
+        bodyCapture.release();
+        commonMetrics.recordLoggedBodyBytes(logRecord.getType(), logRecord.getBody().length);
+        httpLogWriter.write(logRecord);
     }
 
-    private String headersToString(Collection<String> headerNames, UnaryOperator<String> headerValueResolver) {
-        StringBuilder builder = new StringBuilder();
-        builder.append("\"headers\": {");
-        AtomicInteger i = new AtomicInteger();
-        headerNames.forEach(headerName -> {
-            String header = headerValueResolver.apply(headerName);
-            builder.append("\"%s\":\"%s\"".formatted(headerName, header)).append(i.get() == (headerNames.size()-1) ? "" : ", ");
-            i.getAndIncrement();
-        });
-        builder.append("}, ");
-        return builder.toString();
+    private String[] headers(Collection<String> headerNames, UnaryOperator<String> headerValueResolver) {
+        String[] headers = new String[headerNames.size() * 2];
+        int i = 0;
+        for (String headerName : headerNames) {
+            headers[i++] = headerName;
+            headers[i++] = headerValueResolver.apply(headerName);
+        }
+        return headers;
     }
 
-    private String getRequestBody(HttpServletRequest request) throws IOException {
-        try (BufferedReader bufferedReader = request.getReader()) {
-            return bufferedReader.lines().reduce("", (accumulator, actual) -> accumulator + actual);
+    /**
+     * Logs the request and the response of an async request when it completes, on the container thread
+     * and with the MDC of the thread that started it.
+     */
+    private class AsyncLoggingListener implements AsyncListener {
+        private final CapturingRequestWrapper request;
+        private final CapturingResponseWrapper response;
+        private final String method;
+        private final String requestUri;
+        private final LoggingPolicy.Decision decision;
+        private final long beforeChain;
+        private final long afterChain;
+        private final Map<String, String> context = MDC.getCopyOfContextMap();
+        private boolean logged;
+
+        AsyncLoggingListener(CapturingRequestWrapper request, CapturingResponseWrapper response, String method,
+                             String requestUri, LoggingPolicy.Decision decision, long beforeChain,
+                             long afterChain) {
+            this.request = request;
+            this.response = response;
+            this.method = method;
+            this.requestUri = requestUri;
+            this.decision = decision;
+            this.beforeChain = beforeChain;
+            this.afterChain = afterChain;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            if (logged) return;
+            logged = true;
+            long start = System.nanoTime();
+            Map<String, String> previous = MDC.getCopyOfContextMap();
+            setContext(context);
+            try {
+                boolean includeBody = includeBody(decision, response.getStatus());
+                logRequest(request, method, requestUri, includeBody);
+                logResponse(response, method, requestUri, includeBody);
+            } finally {
+                setContext(previous);
+            }
+            recordOverhead(request, beforeChain, afterChain + (System.nanoTime() - start));
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            // logged on completion, after the timeout has been handled
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            // logged on completion, after the error has been handled
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+
+        private void setContext(Map<String, String> context) {
+            if (Objects.isNull(context)) {
+                MDC.clear();
+            } else {
+                MDC.setContextMap(context);
+            }
         }
     }
 
-    static class BodyCachingRequestWrapper extends HttpServletRequestWrapper {
-        private final String body;
+    static class CapturingRequestWrapper extends HttpServletRequestWrapper {
+        private final BodyCapture bodyCapture;
+        private CapturingServletInputStream inputStream;
+        private BufferedReader reader;
 
-        BodyCachingRequestWrapper(HttpServletRequest request, String body) {
+        CapturingRequestWrapper(HttpServletRequest request, BodyCapture bodyCapture) {
             super(request);
-            this.body = body;
+            this.bodyCapture = bodyCapture;
         }
 
         @Override
-        public ServletInputStream getInputStream() {
-            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
-            return new CachedBodyServletInputStream(bytes);
+        public ServletInputStream getInputStream() throws IOException {
+            if (Objects.isNull(inputStream)) {
+                inputStream = new CapturingServletInputStream(super.getInputStream(), bodyCapture);
+            }
+            return inputStream;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            if (Objects.isNull(reader)) {
+                String characterEncoding = getCharacterEncoding();
+                Charset charset = Objects.nonNull(characterEncoding) ?
+                        Charset.forName(characterEncoding) : StandardCharsets.UTF_8;
+                reader = new BufferedReader(new InputStreamReader(getInputStream(), charset));
+            }
+            return reader;
+        }
+
+        BodyCapture getBodyCapture() {
+            return bodyCapture;
         }
     }
-    static class CachedBodyServletInputStream extends ServletInputStream {
-        private final ByteArrayInputStream inputStream;
 
-        CachedBodyServletInputStream(byte[] body) {
-            this.inputStream = new ByteArrayInputStream(body);
+    static class CapturingServletInputStream extends ServletInputStream {
+        private final ServletInputStream delegate;
+        private final BodyCapture bodyCapture;
+
+        CapturingServletInputStream(ServletInputStream delegate, BodyCapture bodyCapture) {
+            this.delegate = delegate;
+            this.bodyCapture = bodyCapture;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = delegate.read();
+            if (b != -1) bodyCapture.write(b);
+            return b;
         }
 
         @Override
-        public int read() {
-            return inputStream.read();
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = delegate.read(b, off, len);
+            if (read > 0) bodyCapture.write(b, off, read);
+            return read;
         }
 
         @Override
         public boolean isFinished() {
-            return inputStream.available() == 0;
+            return delegate.isFinished();
         }
 
         @Override
         public boolean isReady() {
-            return true;
+            return delegate.isReady();
         }
 
         @Override
         public void setReadListener(ReadListener readListener) {
-            //empty
+            delegate.setReadListener(readListener);
         }
 
     }
 
+    /**
+     * Writes the body straight through to the client while copying its first bytes for the log line.
+     * Nothing is captured for streaming content types and for the ones excluded by the logging policy.
+     * A reset of the response, or of its buffer, also drops the captured bytes and the characters still
+     * buffered by the writer, which would otherwise be written after the new body.
+     */
+    static class CapturingResponseWrapper extends HttpServletResponseWrapper {
+        private final BodyCapture bodyCapture;
+        private final LoggingPolicy loggingPolicy;
+        private CapturingServletOutputStream outputStream;
+        private PrintWriter writer;
+        private ResettableWriter resettableWriter;
+        private boolean usingWriter;
 
-    private ContentCachingResponseWrapper responseWrapper(ServletResponse response) {
-        response.setCharacterEncoding(StandardCharsets.UTF_8.toString());
-        if (response instanceof ContentCachingResponseWrapper responseWrapper) {
-            return responseWrapper;
+        CapturingResponseWrapper(HttpServletResponse response, BodyCapture bodyCapture, LoggingPolicy loggingPolicy) {
+            super(response);
+            this.bodyCapture = bodyCapture;
+            this.loggingPolicy = loggingPolicy;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (usingWriter) {
+                throw new IllegalStateException("getWriter() has already been called on this response");
+            }
+            return capturingOutputStream();
         }
-        return new ContentCachingResponseWrapper((HttpServletResponse) response);
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (Objects.isNull(writer)) {
+                if (Objects.nonNull(outputStream) && !usingWriter) {
+                    throw new IllegalStateException("getOutputStream() has already been called on this response");
+                }
+                resettableWriter = new ResettableWriter(capturingOutputStream(), getCharacterEncoding());
+                writer = new PrintWriter(resettableWriter);
+                usingWriter = true;
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            flushWriter();
+            super.flushBuffer();
+        }
+
+        /** Keeps the writer, as the container does, dropping the characters it has not encoded yet. */
+        @Override
+        public void resetBuffer() {
+            super.resetBuffer();
+            if (Objects.nonNull(resettableWriter)) resettableWriter.discard();
+            bodyCapture.reset();
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            writer = null;
+            resettableWriter = null;
+            usingWriter = false;
+            outputStream = null;
+            bodyCapture.reset();
+        }
+
+        void flushWriter() {
+            if (Objects.nonNull(writer)) writer.flush();
+        }
+
+        BodyCapture getBodyCapture() {
+            return bodyCapture;
+        }
+
+        private CapturingServletOutputStream capturingOutputStream() throws IOException {
+            if (Objects.isNull(outputStream)) {
+                outputStream = new CapturingServletOutputStream(super.getOutputStream(), this);
+            }
+            return outputStream;
+        }
+
+        private boolean isCaptureSkipped() {
+            String contentType = getContentType();
+            if (Objects.isNull(contentType)) return false;
+            return loggingPolicy.isBodyExcluded(contentType) || BodyCapture.isStreaming(contentType);
+        }
+    }
+
+    static class CapturingServletOutputStream extends ServletOutputStream {
+        private final ServletOutputStream delegate;
+        private final CapturingResponseWrapper response;
+        private BodyCapture bodyCapture;
+        private boolean started;
+
+        CapturingServletOutputStream(ServletOutputStream delegate, CapturingResponseWrapper response) {
+            this.delegate = delegate;
+            this.response = response;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            BodyCapture capture = bodyCapture();
+            if (Objects.nonNull(capture)) capture.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            BodyCapture capture = bodyCapture();
+            if (Objects.nonNull(capture)) capture.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+
+        private BodyCapture bodyCapture() {
+            if (!started) {
+                started = true;
+                bodyCapture = response.isCaptureSkipped() ? null : response.getBodyCapture();
+            }
+            return bodyCapture;
+        }
+    }
+
+
+    private CapturingResponseWrapper responseWrapper(ServletResponse response, boolean captureBody) {
+        response.setCharacterEncoding(StandardCharsets.UTF_8.toString());
+        return new CapturingResponseWrapper((HttpServletResponse) response,
+                new BodyCapture(captureBody ? bodyCapturePool : NO_CAPTURE), loggingPolicy);
     }
 }
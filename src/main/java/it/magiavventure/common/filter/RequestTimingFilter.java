@@ -0,0 +1,172 @@
+package it.magiavventure.common.filter;
+
+import it.magiavventure.common.logging.LoggingPolicy;
+import it.magiavventure.common.timing.RequestTiming;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.web.filter.GenericFilterBean;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Measures the latency breakdown of each request with a {@link RequestTiming}. It optionally sends it in the
+ * {@code Server-Timing} header, written just before the response body starts, and logs at WARN the requests
+ * lasting longer than the slow threshold of their route. Without header and thresholds it does nothing.
+ */
+@Slf4j
+@Order(RequestTimingFilter.ORDER)
+public class RequestTimingFilter extends GenericFilterBean {
+
+    /** First of the library filters, so that the timing covers all of them. */
+    public static final int ORDER = Ordered.HIGHEST_PRECEDENCE;
+
+    private final LoggingPolicy loggingPolicy;
+    private final boolean serverTiming;
+
+    public RequestTimingFilter(LoggingPolicy loggingPolicy, boolean serverTiming) {
+        this.loggingPolicy = loggingPolicy;
+        this.serverTiming = serverTiming;
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response,
+                         FilterChain chain) throws IOException, ServletException {
+        if ((!serverTiming && !loggingPolicy.isSlowThresholdConfigured())
+                || request.getAttribute(RequestTiming.ATTRIBUTE) instanceof RequestTiming) {
+            chain.doFilter(request, response);
+            return;
+        }
+        HttpServletRequest httpServletRequest = (HttpServletRequest) request;
+        RequestTiming requestTiming = new RequestTiming(System.nanoTime());
+        request.setAttribute(RequestTiming.ATTRIBUTE, requestTiming);
+        HttpServletResponse httpServletResponse = serverTiming ?
+                new ServerTimingResponseWrapper((HttpServletResponse) response, requestTiming) :
+                (HttpServletResponse) response;
+
+        requestTiming.chainStarted(System.nanoTime());
+        try {
+            chain.doFilter(request, httpServletResponse);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(
+                        new AsyncTimingListener(httpServletRequest, httpServletResponse, requestTiming));
+            } else {
+                complete(httpServletRequest, httpServletResponse, requestTiming);
+            }
+        }
+    }
+
+    private void complete(HttpServletRequest request, HttpServletResponse response, RequestTiming requestTiming) {
+        long now = System.nanoTime();
+        requestTiming.chainEnded(now);
+        if (response instanceof ServerTimingResponseWrapper serverTimingResponse) serverTimingResponse.writeHeader();
+        long total = requestTiming.getTotalNanos(now);
+        if (!log.isWarnEnabled()) return;
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (loggingPolicy.resolve(path).isSlow(total)) {
+            log.warn("Slow request {} {} {} took {} ms: {}", request.getMethod(), request.getRequestURI(),
+                    response.getStatus(), RequestTiming.millis(total), requestTiming.summary(now));
+        }
+    }
+
+    private class AsyncTimingListener implements AsyncListener {
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private final RequestTiming requestTiming;
+
+        AsyncTimingListener(HttpServletRequest request, HttpServletResponse response, RequestTiming requestTiming) {
+            this.request = request;
+            this.response = response;
+            this.requestTiming = requestTiming;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            complete(request, response, requestTiming);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            // measured on completion
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            // measured on completion
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    /**
+     * Writes the {@code Server-Timing} header when the application first asks for the body, or sends an
+     * error or a redirect, so that the header is still part of the response.
+     */
+    static class ServerTimingResponseWrapper extends HttpServletResponseWrapper {
+        private final RequestTiming requestTiming;
+        private boolean written;
+
+        ServerTimingResponseWrapper(HttpServletResponse response, RequestTiming requestTiming) {
+            super(response);
+            this.requestTiming = requestTiming;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeHeader();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeHeader();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeHeader();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            writeHeader();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            writeHeader();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            writeHeader();
+            super.sendRedirect(location);
+        }
+
+        void writeHeader() {
+            if (written) return;
+            written = true;
+            if (isCommitted()) return;
+            setHeader(RequestTiming.SERVER_TIMING_HEADER, requestTiming.serverTiming(System.nanoTime()));
+        }
+    }
+}
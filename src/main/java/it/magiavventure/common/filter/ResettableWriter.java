@@ -0,0 +1,61 @@
+package it.magiavventure.common.filter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+
+/**
+ * Encodes the characters of a response writer into the response output stream. {@link #discard()} drops the
+ * characters not encoded yet, so a response wrapper can honour {@code resetBuffer()} while the application keeps
+ * the same {@link java.io.PrintWriter}, as the container does.
+ */
+final class ResettableWriter extends Writer {
+    private final OutputStream outputStream;
+    private final Charset charset;
+    private OutputStreamWriter delegate;
+
+    ResettableWriter(OutputStream outputStream, String charsetName) throws UnsupportedEncodingException {
+        this.outputStream = outputStream;
+        try {
+            this.charset = Charset.forName(charsetName);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException exception) {
+            throw new UnsupportedEncodingException(charsetName);
+        }
+        this.delegate = new OutputStreamWriter(outputStream, charset);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        delegate.write(c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        delegate.write(cbuf, off, len);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        delegate.write(str, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    /** Drops the characters written and not flushed yet, without writing them to the output stream. */
+    void discard() {
+        delegate = new OutputStreamWriter(outputStream, charset);
+    }
+}
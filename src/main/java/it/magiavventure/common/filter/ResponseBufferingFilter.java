@@ -0,0 +1,481 @@
+package it.magiavventure.common.filter;
+
+import it.magiavventure.common.timing.RequestTiming;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.FastByteArrayOutputStream;
+import org.springframework.web.filter.GenericFilterBean;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.Enumeration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
+
+/**
+ * Keeps the response body in memory until the response is complete, for the routes of the {@link ResponsePolicy}
+ * with {@code etag} or {@code compression} enabled, and then:
+ * <ul>
+ *     <li>adds a strong ETag, computed from the body, to the successful GET and HEAD responses and answers
+ *     304 without body when the tag matches the {@code If-None-Match} header;</li>
+ *     <li>compresses with gzip, at once from the kept body, the responses of an allowed content type and
+ *     of at least the minimum size, when the {@code Accept-Encoding} of the client includes gzip.</li>
+ * </ul>
+ * Every response of a route with compression, compressed or not, varies on {@code Accept-Encoding}, so caches
+ * never serve the representation chosen for one client to another.
+ * The body is hashed while it is written with the CRC32C and CRC32 intrinsics of the JDK, so completing the
+ * response costs no second pass and the CRC32 is also the gzip trailer. Flushes are deferred until then. The
+ * bodies larger than the maximum size, with a streaming content type, of async requests or written with
+ * non-blocking I/O are written through untagged and uncompressed. Partial responses are never compressed.
+ * Ordered after the logging filter, which logs the 304 actually sent and the compressed body, decoded by
+ * the log encoder.
+ */
+@Order(ResponseBufferingFilter.ORDER)
+public class ResponseBufferingFilter extends GenericFilterBean {
+
+    public static final int ORDER = RequestResponseLoggingFilter.ORDER + 1;
+
+    public static final int DEFAULT_MAX_BODY_BYTES = 1024 * 1024;
+    public static final int DEFAULT_COMPRESSION_MIN_SIZE = 2048;
+    public static final List<String> DEFAULT_COMPRESSION_MIME_TYPES = List.of("text/html", "text/xml",
+            "text/plain", "text/css", "text/javascript", "application/javascript", "application/json",
+            "application/problem+json", "application/xml");
+
+    private static final int MAX_POOLED_DEFLATERS = 64;
+    private static final String GZIP = "gzip";
+
+    private final ResponsePolicy responsePolicy;
+    private final int maxBodyBytes;
+    private final int compressionMinSize;
+    private final List<String> compressionMimeTypes;
+    private final DeflaterPool deflaterPool = new DeflaterPool(Deflater.DEFAULT_COMPRESSION, MAX_POOLED_DEFLATERS);
+
+    public ResponseBufferingFilter(ResponsePolicy responsePolicy) {
+        this(responsePolicy, DEFAULT_MAX_BODY_BYTES, DEFAULT_COMPRESSION_MIN_SIZE, DEFAULT_COMPRESSION_MIME_TYPES);
+    }
+
+    public ResponseBufferingFilter(ResponsePolicy responsePolicy, int maxBodyBytes, int compressionMinSize,
+                                   List<String> compressionMimeTypes) {
+        this.responsePolicy = responsePolicy;
+        this.maxBodyBytes = maxBodyBytes;
+        this.compressionMinSize = compressionMinSize;
+        this.compressionMimeTypes = compressionMimeTypes
+                .stream()
+                .map(mimeType -> mimeType.trim().toLowerCase(Locale.ROOT))
+                .toList();
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response,
+                         FilterChain chain) throws IOException, ServletException {
+        if (!responsePolicy.isEtagConfigured() && !responsePolicy.isCompressionConfigured()) {
+            chain.doFilter(request, response);
+            return;
+        }
+        HttpServletRequest httpServletRequest = (HttpServletRequest) request;
+        String method = httpServletRequest.getMethod();
+        String path = httpServletRequest.getRequestURI().substring(httpServletRequest.getContextPath().length());
+        ResponsePolicy.Decision decision = responsePolicy.resolve(path);
+        boolean etag = decision.isEtag() && ("GET".equals(method) || "HEAD".equals(method));
+        boolean gzip = decision.isCompression()
+                && acceptsGzip(httpServletRequest.getHeaders(HttpHeaders.ACCEPT_ENCODING));
+        if (decision.isCompression()) varyOnAcceptEncoding((HttpServletResponse) response);
+        if (!etag && !gzip) {
+            chain.doFilter(request, response);
+            return;
+        }
+        BufferingResponseWrapper responseWrapper = new BufferingResponseWrapper((HttpServletResponse) response,
+                maxBodyBytes);
+        if (request.getAttribute(RequestTiming.ATTRIBUTE) instanceof RequestTiming requestTiming) {
+            requestTiming.chainStarted(System.nanoTime());
+        }
+        chain.doFilter(request, responseWrapper);
+        if (request.isAsyncStarted()) {
+            responseWrapper.passThrough();
+            return;
+        }
+        if (decision.isCompression()) varyOnAcceptEncoding(responseWrapper);
+        complete(httpServletRequest, responseWrapper, etag, gzip);
+    }
+
+    private void complete(HttpServletRequest request, BufferingResponseWrapper response, boolean etag,
+                          boolean gzip) throws IOException {
+        response.flushWriter();
+        if (response.isPassingThrough()) return;
+        boolean compress = gzip && isCompressible(response);
+        if (etag && isTaggable(response)) {
+            String tag = response.etag(compress ? "-" + GZIP : "");
+            response.setHeader(HttpHeaders.ETAG, tag);
+            if (matches(request.getHeaders(HttpHeaders.IF_NONE_MATCH), tag)) {
+                response.notModified();
+                return;
+            }
+        }
+        if (compress) {
+            response.copyCompressedBodyToResponse(deflaterPool);
+        } else {
+            response.copyBodyToResponse();
+        }
+    }
+
+    /**
+     * Adds {@code Vary: Accept-Encoding} unless the response already varies on it, or on everything; added again
+     * once the chain is done when the body was kept, in case the response has been reset meanwhile.
+     */
+    private static void varyOnAcceptEncoding(HttpServletResponse response) {
+        if (response.isCommitted() || response.getHeaders(HttpHeaders.VARY).stream()
+                .map(vary -> vary.toLowerCase(Locale.ROOT))
+                .anyMatch(vary -> vary.contains("accept-encoding") || vary.contains("*"))) {
+            return;
+        }
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    }
+
+    private static boolean isTaggable(HttpServletResponse response) {
+        String cacheControl = response.getHeader(HttpHeaders.CACHE_CONTROL);
+        return response.getStatus() == HttpServletResponse.SC_OK && !response.containsHeader(HttpHeaders.ETAG)
+                && (Objects.isNull(cacheControl) || !cacheControl.contains("no-store"));
+    }
+
+    private boolean isCompressible(BufferingResponseWrapper response) {
+        int status = response.getStatus();
+        if (response.getBodySize() < compressionMinSize || status == HttpServletResponse.SC_NO_CONTENT
+                || status == HttpServletResponse.SC_PARTIAL_CONTENT
+                || response.containsHeader(HttpHeaders.CONTENT_RANGE)
+                || response.containsHeader(HttpHeaders.CONTENT_ENCODING)) {
+            return false;
+        }
+        String contentType = response.getContentType();
+        if (Objects.isNull(contentType)) return false;
+        int semicolon = contentType.indexOf(';');
+        String mimeType = (semicolon < 0 ? contentType : contentType.substring(0, semicolon))
+                .trim().toLowerCase(Locale.ROOT);
+        for (String allowed : compressionMimeTypes) {
+            if (allowed.equals(mimeType)) return true;
+            if (allowed.endsWith("/*") && mimeType.startsWith(allowed.substring(0, allowed.length() - 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** {@code If-None-Match} uses the weak comparison: a {@code W/} prefix is ignored. */
+    static boolean matches(Enumeration<String> ifNoneMatch, String etag) {
+        if (Objects.isNull(ifNoneMatch)) return false;
+        while (ifNoneMatch.hasMoreElements()) {
+            for (String candidate : ifNoneMatch.nextElement().split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*")) return true;
+                if (tag.startsWith("W/")) tag = tag.substring(2);
+                if (tag.equals(etag)) return true;
+            }
+        }
+        return false;
+    }
+
+    /** Whether {@code Accept-Encoding} includes gzip, or {@code *}, without a zero quality. */
+    static boolean acceptsGzip(Enumeration<String> acceptEncoding) {
+        if (Objects.isNull(acceptEncoding)) return false;
+        while (acceptEncoding.hasMoreElements()) {
+            for (String coding : acceptEncoding.nextElement().split(",")) {
+                int semicolon = coding.indexOf(';');
+                String name = (semicolon < 0 ? coding : coding.substring(0, semicolon)).trim();
+                if (!name.equalsIgnoreCase(GZIP) && !name.equals("*")) continue;
+                return semicolon < 0 || !isZeroQuality(coding.substring(semicolon + 1));
+            }
+        }
+        return false;
+    }
+
+    private static boolean isZeroQuality(String parameters) {
+        String quality = parameters.trim();
+        if (!quality.regionMatches(true, 0, "q=", 0, 2)) return false;
+        try {
+            return Double.parseDouble(quality.substring(2).trim()) == 0;
+        } catch (NumberFormatException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * Keeps the body, and hashes it while it is written, until the response is complete or the body goes
+     * beyond the maximum size; from then on the body is written through. A reset drops the buffered body
+     * together with the characters the writer still holds, so they are not written after the new body; the
+     * writer itself is kept, as the container does.
+     */
+    static class BufferingResponseWrapper extends HttpServletResponseWrapper {
+        private static final HexFormat HEX = HexFormat.of();
+        /** Magic, deflate method, no flags, no modification time, no extra flags, unknown OS. */
+        private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+        private static final int DEFLATE_CHUNK_SIZE = 8192;
+
+        private final int maxBodyBytes;
+        private final FastByteArrayOutputStream content = new FastByteArrayOutputStream();
+        private final CRC32C crc32c = new CRC32C();
+        private final CRC32 crc32 = new CRC32();
+        private BufferingServletOutputStream outputStream;
+        private PrintWriter writer;
+        private ResettableWriter resettableWriter;
+        private boolean usingWriter;
+        private boolean started;
+        private boolean passingThrough;
+
+        BufferingResponseWrapper(HttpServletResponse response, int maxBodyBytes) {
+            super(response);
+            this.maxBodyBytes = maxBodyBytes;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (usingWriter) {
+                throw new IllegalStateException("getWriter() has already been called on this response");
+            }
+            return bufferingOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (Objects.isNull(writer)) {
+                if (Objects.nonNull(outputStream) && !usingWriter) {
+                    throw new IllegalStateException("getOutputStream() has already been called on this response");
+                }
+                resettableWriter = new ResettableWriter(bufferingOutputStream(), getCharacterEncoding());
+                writer = new PrintWriter(resettableWriter);
+                usingWriter = true;
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            flushWriter();
+            if (passingThrough) super.flushBuffer();
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            if (passingThrough) super.setContentLength(len);
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            if (passingThrough) super.setContentLengthLong(len);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            discard();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            discard();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            discard();
+            super.sendRedirect(location);
+        }
+
+        @Override
+        public void resetBuffer() {
+            resetContent();
+            super.resetBuffer();
+        }
+
+        @Override
+        public void reset() {
+            resetContent();
+            writer = null;
+            resettableWriter = null;
+            usingWriter = false;
+            outputStream = null;
+            super.reset();
+        }
+
+        void flushWriter() {
+            if (Objects.nonNull(writer)) writer.flush();
+        }
+
+        boolean isPassingThrough() {
+            return passingThrough;
+        }
+
+        int getBodySize() {
+            return content.size();
+        }
+
+        /**
+         * Strong tag of the body: its length and the two checksums, 96 bits in all, with the suffix of the
+         * content coding since every representation needs its own tag.
+         */
+        String etag(String suffix) {
+            return "\"" + Long.toHexString(content.size()) + '-' + HEX.toHexDigits((int) crc32c.getValue())
+                    + HEX.toHexDigits((int) crc32.getValue()) + suffix + '"';
+        }
+
+        /** Writes the complete body, with its length when the response is still open. */
+        void copyBodyToResponse() throws IOException {
+            if (!passingThrough && !isCommitted()) super.setContentLengthLong(content.size());
+            passThrough();
+        }
+
+        /** Compresses the complete body in a single deflate call and writes it with its length. */
+        void copyCompressedBodyToResponse(DeflaterPool deflaterPool) throws IOException {
+            int length = content.size();
+            byte[] body = content.toByteArrayUnsafe();
+            FastByteArrayOutputStream compressed = new FastByteArrayOutputStream(Math.max(256, length / 4));
+            compressed.write(GZIP_HEADER);
+            Deflater deflater = deflaterPool.acquire();
+            try {
+                deflater.setInput(body, 0, length);
+                deflater.finish();
+                byte[] chunk = new byte[DEFLATE_CHUNK_SIZE];
+                while (!deflater.finished()) {
+                    compressed.write(chunk, 0, deflater.deflate(chunk));
+                }
+            } finally {
+                deflaterPool.release(deflater);
+            }
+            writeIntLE(compressed, (int) crc32.getValue());
+            writeIntLE(compressed, length);
+
+            passingThrough = true;
+            content.reset();
+            setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+            super.setContentLengthLong(compressed.size());
+            compressed.writeTo(super.getOutputStream());
+        }
+
+        void notModified() {
+            setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            discard();
+        }
+
+        /** Writes what has been kept so far and the rest of the body straight to the response. */
+        void passThrough() throws IOException {
+            if (passingThrough) return;
+            passingThrough = true;
+            if (content.size() > 0) {
+                content.writeTo(super.getOutputStream());
+                content.reset();
+            }
+        }
+
+        private void write(int b) throws IOException {
+            if (keep(1)) {
+                content.write(b);
+                crc32c.update(b);
+                crc32.update(b);
+            } else {
+                super.getOutputStream().write(b);
+            }
+        }
+
+        private void write(byte[] b, int off, int len) throws IOException {
+            if (keep(len)) {
+                content.write(b, off, len);
+                crc32c.update(b, off, len);
+                crc32.update(b, off, len);
+            } else {
+                super.getOutputStream().write(b, off, len);
+            }
+        }
+
+        private boolean keep(int len) throws IOException {
+            if (passingThrough) return false;
+            if (!started) {
+                started = true;
+                if (BodyCapture.isStreaming(getContentType())) passThrough();
+            }
+            if (!passingThrough && content.size() + len > maxBodyBytes) passThrough();
+            return !passingThrough;
+        }
+
+        private static void writeIntLE(FastByteArrayOutputStream outputStream, int value) throws IOException {
+            outputStream.write(value);
+            outputStream.write(value >>> 8);
+            outputStream.write(value >>> 16);
+            outputStream.write(value >>> 24);
+        }
+
+        private void discard() {
+            resetContent();
+            passingThrough = true;
+        }
+
+        private void resetContent() {
+            if (Objects.nonNull(resettableWriter)) resettableWriter.discard();
+            content.reset();
+            crc32c.reset();
+            crc32.reset();
+        }
+
+        private BufferingServletOutputStream bufferingOutputStream() {
+            if (Objects.isNull(outputStream)) outputStream = new BufferingServletOutputStream(this);
+            return outputStream;
+        }
+    }
+
+    static class BufferingServletOutputStream extends ServletOutputStream {
+        private final BufferingResponseWrapper response;
+
+        BufferingServletOutputStream(BufferingResponseWrapper response) {
+            this.response = response;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            response.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            response.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (response.isPassingThrough()) response.getResponse().getOutputStream().flush();
+        }
+
+        @Override
+        public boolean isReady() {
+            if (!response.isPassingThrough()) return true;
+            try {
+                return response.getResponse().getOutputStream().isReady();
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+
+        /** Non-blocking writes cannot be held back: the body is written through as it is. */
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            try {
+                response.passThrough();
+                response.getResponse().getOutputStream().setWriteListener(writeListener);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package it.magiavventure.common.filter;
+
+import it.magiavventure.common.route.RouteMatcher;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+import lombok.Value;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Decides, per request path, whether the response is kept by the {@link ResponseBufferingFilter} to get an ETag
+ * and whether it is compressed.
+ * <p>
+ * Routes are evaluated in declaration order by a {@link RouteMatcher} and the first match wins; requests
+ * matching no route use the defaults.
+ */
+public final class ResponsePolicy {
+
+    public static final ResponsePolicy DEFAULT = ResponsePolicy.builder().build();
+
+    private final RouteMatcher<Decision> routes;
+    @Getter
+    private final boolean etagConfigured;
+    @Getter
+    private final boolean compressionConfigured;
+
+    @Builder
+    private ResponsePolicy(boolean etag, boolean compression, @Singular List<Route> routes) {
+        Decision defaultDecision = new Decision(etag, compression);
+        List<RouteMatcher.Route<Decision>> compiledRoutes = routes
+                .stream()
+                .map(route -> new RouteMatcher.Route<>(route.getPattern(), new Decision(
+                        Objects.requireNonNullElse(route.getEtag(), defaultDecision.isEtag()),
+                        Objects.requireNonNullElse(route.getCompression(), defaultDecision.isCompression()))))
+                .toList();
+        this.routes = new RouteMatcher<>(compiledRoutes, defaultDecision);
+        this.etagConfigured = etag || compiledRoutes.stream().anyMatch(route -> route.value().isEtag());
+        this.compressionConfigured = compression
+                || compiledRoutes.stream().anyMatch(route -> route.value().isCompression());
+    }
+
+    public Decision resolve(String path) {
+        return routes.resolve(path);
+    }
+
+    @Value
+    @Builder
+    public static class Route {
+        String pattern;
+        /** Inherits the default when null. */
+        Boolean etag;
+        /** Inherits the default when null. */
+        Boolean compression;
+    }
+
+    @Value
+    public static class Decision {
+        /** The successful GET and HEAD responses get an ETag and are answered 304 when not modified. */
+        boolean etag;
+        /**
+         * The responses are compressed with gzip when the client accepts it, and all of them vary on
+         * {@code Accept-Encoding}.
+         */
+        boolean compression;
+    }
+}
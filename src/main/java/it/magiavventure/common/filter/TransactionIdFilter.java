@@ -1,40 +1,105 @@
 package it.magiavventure.common.filter;
 
+import it.magiavventure.common.timing.RequestTiming;
+import it.magiavventure.common.transaction.TimeOrderedTransactionIdGenerator;
+import it.magiavventure.common.transaction.TransactionContext;
+import it.magiavventure.common.transaction.TransactionId;
+import it.magiavventure.common.transaction.TransactionIdGenerator;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
-import jakarta.servlet.ServletRequest;
-import jakarta.servlet.ServletResponse;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.MDC;
-import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
-import org.springframework.web.filter.GenericFilterBean;
+import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.Objects;
-import java.util.UUID;
 
-@Order(Ordered.HIGHEST_PRECEDENCE)
-public class TransactionIdFilter extends GenericFilterBean {
+/**
+ * Puts the transaction id of the request in the MDC and in the response header.
+ * <p>
+ * With the trace context enabled the W3C {@code traceparent} and {@code tracestate} headers are read too
+ * and the {@code traceparent} of the request span is sent back. The resolved {@link TransactionContext} is
+ * current on the request thread, where the client interceptors forward it to the called services.
+ * <p>
+ * The filter also runs on the async and error dispatches of the same request, restoring the context kept
+ * in the {@link #TRANSACTION_CONTEXT_ATTRIBUTE} request attribute on the thread that continues the request.
+ */
+@Order(TransactionIdFilter.ORDER)
+public class TransactionIdFilter extends OncePerRequestFilter {
+
+    /** After the timing filter and before the logging filter, which writes the records with the MDC. */
+    public static final int ORDER = RequestTimingFilter.ORDER + 1;
+
+    public static final String TRANSACTION_ID = TransactionId.TRANSACTION_ID;
+    public static final String TRANSACTION_ID_ATTRIBUTE = TransactionIdFilter.class.getName() + "." + TRANSACTION_ID;
+    public static final String TRANSACTION_CONTEXT_ATTRIBUTE = TransactionContext.class.getName();
+    public static final int DEFAULT_MAX_LENGTH = TransactionId.DEFAULT_MAX_LENGTH;
+
+    private final TransactionIdGenerator transactionIdGenerator;
+    private final int maxLength;
+    private final boolean traceContext;
 
-    private static final String TRANSACTION_ID = "transactionId";
     public TransactionIdFilter() {
-        MDC.put(TRANSACTION_ID, UUID.randomUUID().toString());
+        this(new TimeOrderedTransactionIdGenerator(), DEFAULT_MAX_LENGTH);
     }
+
+    public TransactionIdFilter(TransactionIdGenerator transactionIdGenerator, int maxLength) {
+        this(transactionIdGenerator, maxLength, true);
+    }
+
+    public TransactionIdFilter(TransactionIdGenerator transactionIdGenerator, int maxLength, boolean traceContext) {
+        this.transactionIdGenerator = transactionIdGenerator;
+        this.maxLength = maxLength;
+        this.traceContext = traceContext;
+    }
+
     @Override
-    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse,
-                         FilterChain filterChain) throws IOException, ServletException {
-        HttpServletRequest request = (HttpServletRequest) servletRequest;
-        HttpServletResponse response = (HttpServletResponse) servletResponse;
-
-        String transactionId = UUID.randomUUID().toString();
-        String transactionIdHeader = request.getHeader(TRANSACTION_ID);
-        if (Objects.nonNull(transactionIdHeader) && !transactionIdHeader.isEmpty()) {
-            transactionId = transactionIdHeader;
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws IOException, ServletException {
+        var transactionContext = (TransactionContext) request.getAttribute(TRANSACTION_CONTEXT_ATTRIBUTE);
+        if (Objects.isNull(transactionContext)) {
+            transactionContext = resolve(request);
+            request.setAttribute(TRANSACTION_CONTEXT_ATTRIBUTE, transactionContext);
+            request.setAttribute(TRANSACTION_ID_ATTRIBUTE, transactionContext.getTransactionId());
         }
-        MDC.put(TRANSACTION_ID, transactionId);
+        String transactionId = transactionContext.getTransactionId();
         response.setHeader(TRANSACTION_ID, transactionId);
-        filterChain.doFilter(servletRequest, servletResponse);
+        if (Objects.nonNull(transactionContext.getTraceparent())) {
+            response.setHeader(TransactionContext.TRACEPARENT, transactionContext.getTraceparent());
+        }
+        MDC.put(TRANSACTION_ID, transactionId);
+        TransactionContext previous = TransactionContext.attach(transactionContext);
+        if (request.getAttribute(RequestTiming.ATTRIBUTE) instanceof RequestTiming requestTiming) {
+            requestTiming.chainStarted(System.nanoTime());
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            TransactionContext.restore(previous);
+            MDC.remove(TRANSACTION_ID);
+        }
+    }
+
+    private TransactionContext resolve(HttpServletRequest request) {
+        String transactionId = request.getHeader(TRANSACTION_ID);
+        if (!TransactionId.isValid(transactionId, maxLength)) transactionId = null;
+        if (!traceContext) {
+            return TransactionContext.of(Objects.nonNull(transactionId) ? transactionId
+                    : transactionIdGenerator.generate());
+        }
+        return TransactionContext.resolve(transactionId, request.getHeader(TransactionContext.TRACEPARENT),
+                request.getHeader(TransactionContext.TRACESTATE), transactionIdGenerator);
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected boolean shouldNotFilterErrorDispatch() {
+        return false;
     }
 }
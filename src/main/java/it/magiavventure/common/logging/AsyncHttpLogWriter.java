@@ -0,0 +1,211 @@
+package it.magiavventure.common.logging;
+
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands the records to a bounded lock-free queue drained by a single background thread, which builds
+ * and emits the log lines through the delegate writer. The request thread only pays the enqueue, and
+ * unparks the idle worker only when the queue was empty.
+ * <p>
+ * When the queue is full the record is dropped and counted, or the request thread waits for a free slot,
+ * according to the {@link OverflowPolicy}. The waiting writers sleep on a condition signalled by the
+ * worker, which takes the lock only while someone is waiting.
+ * <p>
+ * The worker is started by {@link #start()} and, on {@link #stop()}, flushes the queue within the configured
+ * shutdown timeout; the records still queued after it are counted as dropped. While the writer is stopped,
+ * before the start, during a CRaC checkpoint or after the shutdown, the records are written on the caller thread.
+ */
+@Slf4j
+public class AsyncHttpLogWriter implements HttpLogWriter, SmartLifecycle {
+
+    /** Only a safety net: the writers unpark the worker as soon as the queue is no longer empty. */
+    private static final long IDLE_PARK_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final HttpLogWriter delegate;
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final Duration shutdownTimeout;
+    private final ConcurrentLinkedQueue<QueuedRecord> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final LongAdder enqueuedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final ReentrantLock slotLock = new ReentrantLock();
+    private final Condition slotFreed = slotLock.newCondition();
+    private final AtomicInteger waitingWriters = new AtomicInteger();
+    private volatile Thread worker;
+    private volatile boolean running;
+
+    public AsyncHttpLogWriter(HttpLogWriter delegate, int queueCapacity, OverflowPolicy overflowPolicy,
+                              Duration shutdownTimeout) {
+        if (queueCapacity <= 0) throw new IllegalArgumentException("queueCapacity must be positive");
+        this.delegate = delegate;
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+        this.shutdownTimeout = Objects.requireNonNull(shutdownTimeout);
+    }
+
+    @Override
+    public void write(HttpLogRecord logRecord) {
+        if (!running) {
+            delegate.write(logRecord);
+            return;
+        }
+        int previousSize = reserveSlot();
+        if (previousSize < 0 && overflowPolicy == OverflowPolicy.DROP) {
+            droppedCount.increment();
+            return;
+        }
+        if (previousSize < 0) previousSize = awaitSlot();
+        if (previousSize < 0) {
+            delegate.write(logRecord);
+            return;
+        }
+        queue.offer(new QueuedRecord(logRecord, MDC.getCopyOfContextMap()));
+        enqueuedCount.increment();
+        if (previousSize == 0) LockSupport.unpark(worker);
+    }
+
+    /** Number of records waiting to be written. */
+    public int getQueuedCount() {
+        return queueSize.get();
+    }
+
+    /** Number of records accepted since startup. */
+    public long getEnqueuedCount() {
+        return enqueuedCount.sum();
+    }
+
+    /** Number of records discarded because the queue was full or still queued when the shutdown timed out. */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) return;
+        Thread thread = new Thread(this::drain, "magiavventure-http-log-writer");
+        thread.setDaemon(true);
+        worker = thread;
+        running = true;
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        Thread thread = worker;
+        LockSupport.unpark(thread);
+        slotLock.lock();
+        try {
+            slotFreed.signalAll();
+        } finally {
+            slotLock.unlock();
+        }
+        try {
+            thread.join(Math.max(1, shutdownTimeout.toMillis()));
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            thread.interrupt();
+            int notWritten = getQueuedCount();
+            droppedCount.add(notWritten);
+            log.warn("Http log writer stopped with {} records not written", notWritten);
+        }
+        if (getDroppedCount() > 0) {
+            log.warn("Http log writer dropped {} records since startup", getDroppedCount());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private int reserveSlot() {
+        int current;
+        do {
+            current = queueSize.get();
+            if (current >= queueCapacity) return -1;
+        } while (!queueSize.compareAndSet(current, current + 1));
+        return current;
+    }
+
+    /**
+     * Waits until the worker frees a slot and reserves it, or returns -1 once the writer is stopped. A
+     * writer registers as waiting before checking the queue size, and the worker checks the waiting
+     * writers after freeing a slot, so one of the two always sees the other.
+     */
+    private int awaitSlot() {
+        waitingWriters.incrementAndGet();
+        slotLock.lock();
+        try {
+            int previousSize;
+            while ((previousSize = reserveSlot()) < 0) {
+                if (!running) return -1;
+                slotFreed.awaitUninterruptibly();
+            }
+            return previousSize;
+        } finally {
+            slotLock.unlock();
+            waitingWriters.decrementAndGet();
+        }
+    }
+
+    private void drain() {
+        while (!Thread.currentThread().isInterrupted()) {
+            QueuedRecord queuedRecord = queue.poll();
+            if (Objects.isNull(queuedRecord)) {
+                // a reserved slot whose record is not offered yet will not unpark the worker again
+                if (queueSize.get() > 0) {
+                    Thread.onSpinWait();
+                } else if (running) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                } else {
+                    return;
+                }
+                continue;
+            }
+            queueSize.decrementAndGet();
+            if (waitingWriters.get() > 0) signalSlotFreed();
+            emit(queuedRecord);
+        }
+    }
+
+    private void signalSlotFreed() {
+        slotLock.lock();
+        try {
+            slotFreed.signal();
+        } finally {
+            slotLock.unlock();
+        }
+    }
+
+    private void emit(QueuedRecord queuedRecord) {
+        if (Objects.nonNull(queuedRecord.context())) MDC.setContextMap(queuedRecord.context());
+        try {
+            delegate.write(queuedRecord.logRecord());
+        } catch (RuntimeException exception) {
+            log.warn("Unable to write http log record", exception);
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    private record QueuedRecord(HttpLogRecord logRecord, Map<String, String> context) {
+    }
+}
@@ -0,0 +1,131 @@
+package it.magiavventure.common.logging;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the {@code Content-Type} and {@code Content-Encoding} of a captured body to tell how it can be
+ * logged: its charset, whether it is text, and its gzip or deflate compressed bytes decoded up to a cap.
+ * It is only used while the log line is encoded, never on the request thread.
+ */
+final class BodyDecoding {
+
+    private static final String CHARSET_PARAMETER = "charset=";
+
+    private BodyDecoding() {
+    }
+
+    /** The value of the first header with the name, ignoring case, or null. */
+    static String header(String[] headers, String name) {
+        for (int i = 0; i < headers.length; i += 2) {
+            if (name.equalsIgnoreCase(headers[i])) return headers[i + 1];
+        }
+        return null;
+    }
+
+    /** The charset parameter of the content type, UTF-8 when it is missing or unknown. */
+    static Charset charset(String contentType) {
+        if (Objects.isNull(contentType)) return StandardCharsets.UTF_8;
+        int index = contentType.toLowerCase(Locale.ROOT).indexOf(CHARSET_PARAMETER);
+        if (index < 0) return StandardCharsets.UTF_8;
+        int start = index + CHARSET_PARAMETER.length();
+        int end = contentType.indexOf(';', start);
+        String name = contentType.substring(start, end < 0 ? contentType.length() : end).trim();
+        if (name.length() > 1 && name.startsWith("\"") && name.endsWith("\"")) {
+            name = name.substring(1, name.length() - 1);
+        }
+        try {
+            return Charset.forName(name);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException exception) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    /** Whether the body is text; a body without content type is assumed to be. */
+    static boolean isText(String contentType) {
+        if (Objects.isNull(contentType)) return true;
+        int end = contentType.indexOf(';');
+        String mimeType = (end < 0 ? contentType : contentType.substring(0, end)).trim().toLowerCase(Locale.ROOT);
+        if (mimeType.isEmpty() || mimeType.startsWith("text/")) return true;
+        if (!mimeType.startsWith("application/")) return false;
+        return mimeType.endsWith("json") || mimeType.endsWith("xml") || mimeType.endsWith("yaml")
+                || mimeType.endsWith("javascript") || mimeType.endsWith("graphql")
+                || mimeType.equals("application/x-www-form-urlencoded");
+    }
+
+    /** Whether the body is encoded, i.e. it has a content encoding other than identity. */
+    static boolean isEncoded(String contentEncoding) {
+        return Objects.nonNull(contentEncoding) && !contentEncoding.isBlank()
+                && !contentEncoding.trim().equalsIgnoreCase("identity");
+    }
+
+    /**
+     * Decodes a gzip or deflate body, or the captured prefix of it, up to {@code maxBytes}. Returns null
+     * when the encoding is not supported, e.g. br, or the bytes cannot be decoded at all.
+     */
+    static Decoded decode(byte[] body, String contentEncoding, int maxBytes) {
+        String encoding = contentEncoding.trim().toLowerCase(Locale.ROOT);
+        try {
+            return switch (encoding) {
+                case "gzip", "x-gzip" -> read(new GZIPInputStream(new ByteArrayInputStream(body)), maxBytes);
+                case "deflate" -> inflate(body, maxBytes);
+                default -> null;
+            };
+        } catch (IOException exception) {
+            return null;
+        }
+    }
+
+    private static Decoded inflate(byte[] body, int maxBytes) throws IOException {
+        try {
+            return inflate(body, maxBytes, false);
+        } catch (ZipException exception) {
+            // deflate without the zlib wrapper, as sent by some servers
+            return inflate(body, maxBytes, true);
+        }
+    }
+
+    private static Decoded inflate(byte[] body, int maxBytes, boolean nowrap) throws IOException {
+        Inflater inflater = new Inflater(nowrap);
+        try {
+            return read(new InflaterInputStream(new ByteArrayInputStream(body), inflater), maxBytes);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static Decoded read(InputStream inputStream, int maxBytes) throws IOException {
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream(Math.min(maxBytes, 8192));
+        byte[] chunk = new byte[Math.min(maxBytes + 1, 8192)];
+        try (inputStream) {
+            int read;
+            while (decoded.size() <= maxBytes && (read = inputStream.read(chunk)) >= 0) {
+                decoded.write(chunk, 0, read);
+            }
+        } catch (EOFException exception) {
+            // the captured prefix ends inside the stream: keep what was decoded up to there
+            if (decoded.size() == 0) throw exception;
+            return new Decoded(decoded.toByteArray(), false);
+        }
+        byte[] bytes = decoded.toByteArray();
+        if (bytes.length <= maxBytes) return new Decoded(bytes, true);
+        return new Decoded(Arrays.copyOf(bytes, maxBytes), false);
+    }
+
+    record Decoded(byte[] bytes, boolean complete) {
+    }
+}
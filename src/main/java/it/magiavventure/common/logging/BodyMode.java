@@ -0,0 +1,11 @@
+package it.magiavventure.common.logging;
+
+/**
+ * When the request and response bodies are written in the log lines of a route.
+ */
+public enum BodyMode {
+    ALWAYS,
+    /** Only when the response status is 4xx or 5xx, or the chain failed. */
+    ON_ERROR,
+    NEVER
+}
@@ -0,0 +1,27 @@
+package it.magiavventure.common.logging;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Compact snapshot of a request or response taken on the request thread, so that the log line can be
+ * built later by an {@link HttpLogWriter}, possibly on another thread.
+ */
+@Value
+@Builder
+public class HttpLogRecord {
+    Type type;
+    String method;
+    String uri;
+    /** Header names and values, alternated. */
+    String[] headers;
+    int status;
+    /** The captured body, at most the configured max body bytes. */
+    byte[] body;
+    /** The size of the whole body, which is larger than the captured one when it was truncated. */
+    long bodySize;
+
+    public enum Type {
+        REQUEST, RESPONSE
+    }
+}
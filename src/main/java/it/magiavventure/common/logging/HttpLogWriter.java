@@ -0,0 +1,5 @@
+package it.magiavventure.common.logging;
+
+public interface HttpLogWriter {
+    void write(HttpLogRecord logRecord);
+}
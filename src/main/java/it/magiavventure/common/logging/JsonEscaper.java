@@ -0,0 +1,52 @@
+package it.magiavventure.common.logging;
+
+import java.util.Objects;
+
+/**
+ * Appends JSON string literals to a {@link StringBuilder} without intermediate allocations.
+ */
+public final class JsonEscaper {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private JsonEscaper() {
+    }
+
+    /**
+     * Appends the value as a quoted and escaped JSON string, or {@code null} when the value is null.
+     */
+    public static void appendString(StringBuilder builder, CharSequence value) {
+        if (Objects.isNull(value)) {
+            builder.append("null");
+            return;
+        }
+        builder.append('"');
+        appendEscaped(builder, value, 0, value.length());
+        builder.append('"');
+    }
+
+    /**
+     * Appends the characters between {@code start} and {@code end} escaped for a JSON string, without quotes.
+     */
+    public static void appendEscaped(StringBuilder builder, CharSequence value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> builder.append("\\\"");
+                case '\\' -> builder.append("\\\\");
+                case '\n' -> builder.append("\\n");
+                case '\r' -> builder.append("\\r");
+                case '\t' -> builder.append("\\t");
+                case '\b' -> builder.append("\\b");
+                case '\f' -> builder.append("\\f");
+                default -> {
+                    if (c < 0x20) {
+                        builder.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        builder.append(c);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package it.magiavventure.common.logging;
+
+import org.springframework.http.HttpHeaders;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Encodes an {@link HttpLogRecord} as a single JSON object with correctly escaped method, url, headers,
+ * status and body. The text is built in a buffer reused by each thread, so the only allocation per line
+ * is the resulting string.
+ * <p>
+ * A complete body is written as is only when the streaming pass of the {@link Redaction} has read it whole
+ * as a single JSON document, any other body is written as an escaped string; truncated bodies are followed
+ * by their full size. The body is decoded with the charset of
+ * its content type, gzip and deflate bodies are decompressed up to a cap, and binary bodies, or bodies in an
+ * unsupported encoding, are logged as a summary with their size and the CRC32 of the captured bytes.
+ * Headers and JSON body fields selected by the {@link Redaction} are written as {@link Redaction#MASK}.
+ */
+public class JsonLogEncoder {
+
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    private static final ThreadLocal<EncoderBuffers> BUFFERS = ThreadLocal.withInitial(EncoderBuffers::new);
+
+    private final Redaction redaction;
+    private final int maxDecodedBytes;
+
+    public JsonLogEncoder() {
+        this(Redaction.DEFAULT);
+    }
+
+    public JsonLogEncoder(Redaction redaction) {
+        this(redaction, LoggingPolicy.DEFAULT_MAX_BODY_BYTES);
+    }
+
+    /**
+     * @param maxDecodedBytes the max bytes of a gzip or deflate body decoded for the log
+     */
+    public JsonLogEncoder(Redaction redaction, int maxDecodedBytes) {
+        this.redaction = redaction;
+        this.maxDecodedBytes = maxDecodedBytes;
+    }
+
+    public String encode(HttpLogRecord logRecord) {
+        EncoderBuffers buffers = BUFFERS.get();
+        StringBuilder builder = buffers.builder();
+        builder.append("{\"method\":");
+        JsonEscaper.appendString(builder, logRecord.getMethod());
+        builder.append(",\"url\":");
+        JsonEscaper.appendString(builder, logRecord.getUri());
+        appendHeaders(builder, logRecord.getHeaders());
+        if (logRecord.getType() == HttpLogRecord.Type.RESPONSE) {
+            builder.append(",\"status\":").append(logRecord.getStatus());
+        }
+        appendBody(builder, buffers, logRecord);
+        builder.append('}');
+        return buffers.release(builder);
+    }
+
+    private void appendHeaders(StringBuilder builder, String[] headers) {
+        builder.append(",\"headers\":{");
+        for (int i = 0; i < headers.length; i += 2) {
+            if (i > 0) builder.append(',');
+            JsonEscaper.appendString(builder, headers[i]);
+            builder.append(':');
+            if (redaction.isHeaderRedacted(headers[i])) {
+                JsonEscaper.appendString(builder, Redaction.MASK);
+            } else {
+                JsonEscaper.appendString(builder, headers[i + 1]);
+            }
+        }
+        builder.append('}');
+    }
+
+    private void appendBody(StringBuilder builder, EncoderBuffers buffers, HttpLogRecord logRecord) {
+        byte[] body = logRecord.getBody();
+        builder.append(",\"body\":");
+        if (body.length == 0) {
+            builder.append("{}");
+            return;
+        }
+        String contentType = BodyDecoding.header(logRecord.getHeaders(), HttpHeaders.CONTENT_TYPE);
+        String contentEncoding = BodyDecoding.header(logRecord.getHeaders(), HttpHeaders.CONTENT_ENCODING);
+        boolean truncated = logRecord.getBodySize() > body.length;
+        if (!BodyDecoding.isText(contentType)) {
+            appendSummary(builder, body, contentType, contentEncoding, logRecord.getBodySize());
+            return;
+        }
+        if (BodyDecoding.isEncoded(contentEncoding)) {
+            BodyDecoding.Decoded decoded = BodyDecoding.decode(body, contentEncoding, maxDecodedBytes);
+            if (Objects.isNull(decoded)) {
+                appendSummary(builder, body, contentType, contentEncoding, logRecord.getBodySize());
+                return;
+            }
+            appendText(builder, buffers, buffers.decode(decoded.bytes(), BodyDecoding.charset(contentType)),
+                    truncated || !decoded.complete());
+            builder.append(",\"bodyEncoding\":");
+            JsonEscaper.appendString(builder, contentEncoding);
+        } else {
+            appendText(builder, buffers, buffers.decode(body, BodyDecoding.charset(contentType)), truncated);
+        }
+        if (truncated) {
+            builder.append(",\"bodySize\":").append(logRecord.getBodySize());
+        }
+    }
+
+    private void appendText(StringBuilder builder, EncoderBuffers buffers, CharBuffer chars, boolean truncated) {
+        if (startsLikeJson(chars)) {
+            StringBuilder masked = buffers.masked();
+            Redaction.Outcome outcome = redaction.appendMaskedJson(chars.array(),
+                    chars.arrayOffset() + chars.position(), chars.remaining(), masked);
+            if (!truncated && outcome == Redaction.Outcome.UNCHANGED) {
+                builder.append(chars);
+                return;
+            }
+            if (!truncated && outcome == Redaction.Outcome.MASKED) {
+                builder.append(masked);
+                return;
+            }
+            if (outcome != Redaction.Outcome.UNCHANGED && redaction.hasBodyFields()) {
+                appendEscaped(builder, masked);
+                return;
+            }
+        }
+        appendEscaped(builder, chars);
+    }
+
+    private static void appendEscaped(StringBuilder builder, CharSequence chars) {
+        builder.append('"');
+        JsonEscaper.appendEscaped(builder, chars, 0, chars.length());
+        builder.append('"');
+    }
+
+    private void appendSummary(StringBuilder builder, byte[] body, String contentType, String contentEncoding,
+                               long bodySize) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(body);
+        builder.append("{\"contentType\":");
+        JsonEscaper.appendString(builder, contentType);
+        builder.append(",\"contentEncoding\":");
+        JsonEscaper.appendString(builder, contentEncoding);
+        builder.append(",\"size\":").append(bodySize)
+                .append(",\"capturedBytes\":").append(body.length)
+                .append(",\"crc32\":\"").append(HexFormat.of().toHexDigits((int) crc32.getValue())).append("\"}");
+    }
+
+    private boolean startsLikeJson(CharBuffer chars) {
+        int start = 0;
+        while (start < chars.length() && Character.isWhitespace(chars.charAt(start))) start++;
+        return start < chars.length() && (chars.charAt(start) == '{' || chars.charAt(start) == '[');
+    }
+
+    private static final class EncoderBuffers {
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8
+                .newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private StringBuilder builder = new StringBuilder(1024);
+        private StringBuilder masked = new StringBuilder(1024);
+        private CharBuffer chars = CharBuffer.allocate(1024);
+
+        StringBuilder builder() {
+            builder.setLength(0);
+            return builder;
+        }
+
+        StringBuilder masked() {
+            masked.setLength(0);
+            return masked;
+        }
+
+        CharBuffer decode(byte[] body, Charset charset) {
+            CharsetDecoder charsetDecoder = StandardCharsets.UTF_8.equals(charset) ? decoder : charset
+                    .newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            int capacity = (int) Math.ceil(body.length * (double) charsetDecoder.maxCharsPerByte());
+            if (chars.capacity() < capacity) {
+                chars = CharBuffer.allocate(capacity);
+            }
+            chars.clear();
+            charsetDecoder.reset();
+            charsetDecoder.decode(ByteBuffer.wrap(body), chars, true);
+            charsetDecoder.flush(chars);
+            chars.flip();
+            return chars;
+        }
+
+        String release(StringBuilder used) {
+            String encoded = used.toString();
+            if (used.capacity() > MAX_RETAINED_CAPACITY) builder = new StringBuilder(1024);
+            if (masked.capacity() > MAX_RETAINED_CAPACITY) masked = new StringBuilder(1024);
+            if (chars.capacity() > MAX_RETAINED_CAPACITY) chars = CharBuffer.allocate(1024);
+            return encoded;
+        }
+    }
+}
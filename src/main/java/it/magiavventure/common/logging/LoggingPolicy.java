@@ -0,0 +1,109 @@
+package it.magiavventure.common.logging;
+
+import it.magiavventure.common.route.RouteMatcher;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+import lombok.Value;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides, per request path, whether the request is logged, whether its bodies are included and above
+ * which duration it is logged as a slow request.
+ * <p>
+ * Routes are evaluated in declaration order by a {@link RouteMatcher} and the first match wins; requests
+ * matching no route use the defaults.
+ */
+public final class LoggingPolicy {
+
+    public static final int DEFAULT_MAX_BODY_BYTES = 8192;
+    public static final LoggingPolicy DEFAULT = LoggingPolicy.builder().build();
+
+    @Getter
+    private final int maxBodyBytes;
+    private final RouteMatcher<Decision> routes;
+    private final List<String> excludedBodyContentTypes;
+    @Getter
+    private final boolean slowThresholdConfigured;
+
+    @Builder
+    private LoggingPolicy(Integer maxBodyBytes, Double sampleRate, BodyMode body, Duration slowThreshold,
+                          @Singular List<Route> routes, @Singular List<String> excludedBodyContentTypes) {
+        this.maxBodyBytes = Objects.requireNonNullElse(maxBodyBytes, DEFAULT_MAX_BODY_BYTES);
+        Decision defaultDecision = new Decision(Objects.requireNonNullElse(sampleRate, 1.0),
+                Objects.requireNonNullElse(body, BodyMode.ALWAYS), slowThreshold);
+        List<RouteMatcher.Route<Decision>> compiledRoutes = routes
+                .stream()
+                .map(route -> new RouteMatcher.Route<>(route.getPattern(), new Decision(
+                        Objects.requireNonNullElse(route.getSampleRate(), defaultDecision.getSampleRate()),
+                        Objects.requireNonNullElse(route.getBody(), defaultDecision.getBody()),
+                        Objects.nonNull(route.getSlowThreshold()) ?
+                                route.getSlowThreshold() : defaultDecision.getSlowThreshold())))
+                .toList();
+        this.routes = new RouteMatcher<>(compiledRoutes, defaultDecision);
+        this.slowThresholdConfigured = Objects.nonNull(slowThreshold)
+                || routes.stream().anyMatch(route -> Objects.nonNull(route.getSlowThreshold()));
+        this.excludedBodyContentTypes = excludedBodyContentTypes
+                .stream()
+                .map(contentType -> contentType.trim().toLowerCase(Locale.ROOT))
+                .map(contentType -> contentType.endsWith("/*") ?
+                        contentType.substring(0, contentType.length() - 1) : contentType)
+                .toList();
+    }
+
+    public Decision resolve(String path) {
+        return routes.resolve(path);
+    }
+
+    /**
+     * Returns true when the body of the given content type must not be written in the log line,
+     * e.g. binary payloads. Entries ending with {@code /*} match the whole type.
+     */
+    public boolean isBodyExcluded(String contentType) {
+        if (Objects.isNull(contentType)) return false;
+        for (String excluded : excludedBodyContentTypes) {
+            if (!contentType.regionMatches(true, 0, excluded, 0, excluded.length())) continue;
+            if (excluded.endsWith("/") || contentType.length() == excluded.length()) return true;
+            char next = contentType.charAt(excluded.length());
+            if (next == ';' || next == ' ') return true;
+        }
+        return false;
+    }
+
+    @Value
+    @Builder
+    public static class Route {
+        String pattern;
+        /** Share of the matching requests that are logged, from 0 to 1; inherits the default when null. */
+        Double sampleRate;
+        /** Inherits the default when null. */
+        BodyMode body;
+        /** Inherits the default when null. */
+        Duration slowThreshold;
+    }
+
+    @Value
+    public static class Decision {
+        double sampleRate;
+        BodyMode body;
+        /** Requests lasting longer are logged as slow; null when slow requests are not logged. */
+        Duration slowThreshold;
+
+        /** Returns true when a request that took the given nanoseconds has to be logged as slow. */
+        public boolean isSlow(long nanos) {
+            return Objects.nonNull(slowThreshold) && nanos > slowThreshold.toNanos();
+        }
+
+        /** Returns true when the current request has to be logged. */
+        public boolean sample() {
+            if (sampleRate >= 1.0) return true;
+            if (sampleRate <= 0.0) return false;
+            return ThreadLocalRandom.current().nextDouble() < sampleRate;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package it.magiavventure.common.logging;
+
+/**
+ * What {@link AsyncHttpLogWriter} does with a record when its queue is full.
+ */
+public enum OverflowPolicy {
+    /** The record is discarded and counted as dropped. */
+    DROP,
+    /** The request thread waits until the background writer frees a slot. */
+    BLOCK
+}
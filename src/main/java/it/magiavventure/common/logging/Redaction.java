@@ -0,0 +1,214 @@
+package it.magiavventure.common.logging;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import lombok.Builder;
+import lombok.Singular;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Masks the headers and the JSON body fields that must not reach the logs.
+ * <p>
+ * Header names, and body field names, are matched case-insensitively against a hash table built once,
+ * without allocating. Body fields are given by name, matched at any depth, or by dotted path from the
+ * root, e.g. {@code user.password}, where arrays do not add a segment. The body is masked with a single
+ * streaming pass of the Jackson tokens of the logged prefix, never building a tree, so the cost depends on
+ * the logged bytes only.
+ */
+public final class Redaction {
+
+    public static final String MASK = "***";
+    public static final List<String> DEFAULT_HEADERS = List.of("authorization", "proxy-authorization", "cookie",
+            "set-cookie");
+    public static final List<String> DEFAULT_BODY_FIELDS = List.of("password");
+    public static final Redaction NONE = Redaction.builder().build();
+    public static final Redaction DEFAULT = Redaction.builder()
+            .headers(DEFAULT_HEADERS)
+            .bodyFields(DEFAULT_BODY_FIELDS)
+            .build();
+
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_CONTENT)
+            .build();
+
+    private final NameSet headers;
+    private final NameSet bodyFieldNames;
+    private final List<String[]> bodyFieldPaths;
+
+    @Builder
+    private Redaction(@Singular List<String> headers, @Singular List<String> bodyFields) {
+        this.headers = new NameSet(headers);
+        List<String> names = new ArrayList<>();
+        List<String[]> paths = new ArrayList<>();
+        for (String bodyField : bodyFields) {
+            String field = bodyField.startsWith("$.") ? bodyField.substring(2) : bodyField;
+            if (field.indexOf('.') < 0) {
+                names.add(field);
+            } else {
+                paths.add(field.split("\\."));
+            }
+        }
+        this.bodyFieldNames = new NameSet(names);
+        this.bodyFieldPaths = List.copyOf(paths);
+    }
+
+    public boolean isHeaderRedacted(String name) {
+        return headers.contains(name);
+    }
+
+    public boolean hasBodyFields() {
+        return !bodyFieldNames.isEmpty() || !bodyFieldPaths.isEmpty();
+    }
+
+    /**
+     * Appends the JSON body with the redacted field values replaced by {@link #MASK}. When the body ends
+     * before the document is complete, e.g. a truncated prefix, or is not valid JSON, what was read up to
+     * that point is appended and the outcome is {@link Outcome#INCOMPLETE}, even when nothing was masked:
+     * a redacted field after the point of failure has not been seen, so the original body must not be
+     * logged. A token that could not be read whole is never written. Content after the root value makes
+     * the body invalid too, so {@link Outcome#UNCHANGED} and {@link Outcome#MASKED} guarantee a single
+     * valid JSON document.
+     */
+    public Outcome appendMaskedJson(char[] body, int offset, int length, StringBuilder builder) {
+        int masked = 0;
+        try (JsonParser parser = JSON_FACTORY.createParser(body, offset, length);
+             JsonGenerator generator = JSON_FACTORY.createGenerator(new StringBuilderWriter(builder))) {
+            JsonToken token;
+            try {
+                while (Objects.nonNull(token = parser.nextToken())) {
+                    if (token == JsonToken.FIELD_NAME && isBodyFieldRedacted(parser.getParsingContext())) {
+                        masked++;
+                        generator.writeFieldName(parser.currentName());
+                        parser.nextToken();
+                        parser.skipChildren();
+                        generator.writeString(MASK);
+                    } else {
+                        generator.copyCurrentEvent(parser);
+                    }
+                    if (parser.getParsingContext().inRoot()) break;
+                }
+                if (Objects.nonNull(parser.nextToken())) return Outcome.INCOMPLETE;
+            } finally {
+                generator.flush();
+            }
+        } catch (IOException exception) {
+            return Outcome.INCOMPLETE;
+        }
+        return masked == 0 ? Outcome.UNCHANGED : Outcome.MASKED;
+    }
+
+    private boolean isBodyFieldRedacted(JsonStreamContext context) {
+        if (bodyFieldNames.contains(context.getCurrentName())) return true;
+        for (String[] path : bodyFieldPaths) {
+            if (matches(context, path)) return true;
+        }
+        return false;
+    }
+
+    private static boolean matches(JsonStreamContext context, String[] path) {
+        JsonStreamContext current = context;
+        for (int i = path.length - 1; i >= 0; i--) {
+            while (Objects.nonNull(current) && current.inArray()) current = current.getParent();
+            if (Objects.isNull(current) || !current.inObject() || !path[i].equalsIgnoreCase(current.getCurrentName())) {
+                return false;
+            }
+            current = current.getParent();
+        }
+        while (Objects.nonNull(current) && current.inArray()) current = current.getParent();
+        return Objects.isNull(current) || current.inRoot();
+    }
+
+    public enum Outcome {
+        /** The whole document was read and no field was redacted, the original body can be logged. */
+        UNCHANGED,
+        /** The whole document was read and the masked copy is valid JSON. */
+        MASKED,
+        /** The document ended early or is not valid JSON, only the masked copy, a prefix, can be logged. */
+        INCOMPLETE
+    }
+
+    /**
+     * Open addressing hash set of names compared ignoring case, probed without lowercasing the name.
+     */
+    private static final class NameSet {
+        private final String[] table;
+        private final int mask;
+        private final int size;
+
+        NameSet(List<String> names) {
+            int capacity = Integer.highestOneBit(Math.max(1, names.size()) * 4);
+            this.table = new String[capacity];
+            this.mask = capacity - 1;
+            int count = 0;
+            for (String name : names) {
+                if (Objects.isNull(name) || name.isBlank() || contains(name.trim())) continue;
+                String trimmed = name.trim();
+                int index = hash(trimmed) & mask;
+                while (Objects.nonNull(table[index])) index = (index + 1) & mask;
+                table[index] = trimmed;
+                count++;
+            }
+            this.size = count;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        boolean contains(String name) {
+            if (Objects.isNull(name)) return false;
+            int index = hash(name) & mask;
+            String candidate;
+            while (Objects.nonNull(candidate = table[index])) {
+                if (candidate.equalsIgnoreCase(name)) return true;
+                index = (index + 1) & mask;
+            }
+            return false;
+        }
+
+        private static int hash(String name) {
+            int hash = 0;
+            for (int i = 0; i < name.length(); i++) {
+                hash = 31 * hash + Character.toLowerCase(name.charAt(i));
+            }
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    private static final class StringBuilderWriter extends Writer {
+        private final StringBuilder builder;
+
+        StringBuilderWriter(StringBuilder builder) {
+            this.builder = builder;
+        }
+
+        @Override
+        public void write(char[] chars, int off, int len) {
+            builder.append(chars, off, len);
+        }
+
+        @Override
+        public void write(String string, int off, int len) {
+            builder.append(string, off, off + len);
+        }
+
+        @Override
+        public void flush() {
+            // appended directly
+        }
+
+        @Override
+        public void close() {
+            // nothing to release
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package it.magiavventure.common.logging;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Builds and emits the log line on the calling thread.
+ */
+@Slf4j(topic = "it.magiavventure.common.filter.RequestResponseLoggingFilter")
+public class SyncHttpLogWriter implements HttpLogWriter {
+
+    private final JsonLogEncoder jsonLogEncoder;
+
+    public SyncHttpLogWriter() {
+        this(new JsonLogEncoder());
+    }
+
+    public SyncHttpLogWriter(JsonLogEncoder jsonLogEncoder) {
+        this.jsonLogEncoder = jsonLogEncoder;
+    }
+
+    @Override
+    public void write(HttpLogRecord logRecord) {
+        if (!log.isInfoEnabled()) return;
+        log.info("{} -> {}", logRecord.getType(), jsonLogEncoder.encode(logRecord));
+    }
+}
@@ -0,0 +1,30 @@
+package it.magiavventure.common.metrics;
+
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
+import it.magiavventure.common.logging.HttpLogRecord;
+
+/**
+ * Meters of the library. The default methods do nothing, so {@link #NOOP} is used when Micrometer is not
+ * on the classpath and the instrumented paths neither allocate nor look anything up.
+ */
+public interface CommonMetrics {
+
+    CommonMetrics NOOP = new CommonMetrics() {
+    };
+
+    /** Counts an error response returned by the exception handler. */
+    default void recordError(ErrorMessage errorMessage) {
+    }
+
+    /** Counts an error response returned with its own status, e.g. the one of a called service. */
+    default void recordError(ErrorMessage errorMessage, int status) {
+    }
+
+    /** Records the time spent inside the logging filter, excluding the downstream chain. */
+    default void recordLoggingFilterOverhead(long nanos) {
+    }
+
+    /** Records the size of a body written in a request or response log line. */
+    default void recordLoggedBodyBytes(HttpLogRecord.Type type, int bytes) {
+    }
+}
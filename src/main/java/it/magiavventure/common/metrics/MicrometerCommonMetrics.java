@@ -0,0 +1,137 @@
+package it.magiavventure.common.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
+import it.magiavventure.common.error.ErrorCatalog;
+import it.magiavventure.common.logging.AsyncHttpLogWriter;
+import it.magiavventure.common.logging.HttpLogRecord;
+import it.magiavventure.common.logging.HttpLogWriter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters of the library. Every meter is registered up front, with one error counter per
+ * catalog code, so recording never registers a meter nor builds tags on the request thread. The errors
+ * with a code outside the catalog, e.g. of the called services, are counted as {@code other} by status,
+ * with a counter registered the first time the status is seen and then kept. The same goes for the errors
+ * answered with a status other than the catalog one, e.g. a remote 410 of a {@code not-found} error.
+ */
+public class MicrometerCommonMetrics implements CommonMetrics {
+
+    public static final String ERRORS = "magiavventure.errors";
+    public static final String LOGGING_FILTER_OVERHEAD = "magiavventure.logging.filter.overhead";
+    public static final String LOGGED_BODY_BYTES = "magiavventure.logging.body.bytes";
+    public static final String LOGGING_QUEUE_SIZE = "magiavventure.logging.queue.size";
+    public static final String LOGGING_DROPPED = "magiavventure.logging.dropped";
+    private static final String OTHER_CODE = "other";
+
+    private final MeterRegistry meterRegistry;
+    private volatile Map<String, Counter> errorCounters;
+    private final Map<Integer, Counter> otherErrorCounters = new ConcurrentHashMap<>();
+    private final Map<ErrorCounterKey, Counter> statusErrorCounters = new ConcurrentHashMap<>();
+    private final Timer loggingFilterOverhead;
+    private final DistributionSummary loggedRequestBodyBytes;
+    private final DistributionSummary loggedResponseBodyBytes;
+
+    public MicrometerCommonMetrics(MeterRegistry meterRegistry, ErrorCatalog errorCatalog,
+                                   HttpLogWriter httpLogWriter) {
+        this.meterRegistry = meterRegistry;
+        this.errorCounters = errorCounters(errorCatalog);
+        this.loggingFilterOverhead = Timer
+                .builder(LOGGING_FILTER_OVERHEAD)
+                .description("Time spent in the request/response logging filter, excluding the downstream chain")
+                .register(meterRegistry);
+        this.loggedRequestBodyBytes = loggedBodyBytes("request");
+        this.loggedResponseBodyBytes = loggedBodyBytes("response");
+        if (httpLogWriter instanceof AsyncHttpLogWriter asyncHttpLogWriter) {
+            Gauge.builder(LOGGING_QUEUE_SIZE, asyncHttpLogWriter, AsyncHttpLogWriter::getQueuedCount)
+                    .description("Log records waiting to be written")
+                    .register(meterRegistry);
+            FunctionCounter.builder(LOGGING_DROPPED, asyncHttpLogWriter, AsyncHttpLogWriter::getDroppedCount)
+                    .description("Log records dropped because the queue was full")
+                    .register(meterRegistry);
+        }
+    }
+
+    /** Registers the error counters of a reloaded catalog; the counters of removed codes stay registered. */
+    public void registerErrors(ErrorCatalog errorCatalog) {
+        errorCounters = errorCounters(errorCatalog);
+    }
+
+    @Override
+    public void recordError(ErrorMessage errorMessage) {
+        Counter counter = errorCounters.get(errorMessage.getCode());
+        if (Objects.isNull(counter)) {
+            counter = otherErrorCounters.computeIfAbsent(errorMessage.getStatus(),
+                    status -> errorCounter(OTHER_CODE, status));
+        }
+        counter.increment();
+    }
+
+    @Override
+    public void recordError(ErrorMessage errorMessage, int status) {
+        if (status == errorMessage.getStatus()) {
+            recordError(errorMessage);
+            return;
+        }
+        String code = errorCounters.containsKey(errorMessage.getCode()) ? errorMessage.getCode() : OTHER_CODE;
+        statusErrorCounters.computeIfAbsent(new ErrorCounterKey(code, status),
+                key -> errorCounter(key.code(), key.status())).increment();
+    }
+
+    @Override
+    public void recordLoggingFilterOverhead(long nanos) {
+        loggingFilterOverhead.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordLoggedBodyBytes(HttpLogRecord.Type type, int bytes) {
+        if (type == HttpLogRecord.Type.REQUEST) {
+            loggedRequestBodyBytes.record(bytes);
+        } else {
+            loggedResponseBodyBytes.record(bytes);
+        }
+    }
+
+    private Map<String, Counter> errorCounters(ErrorCatalog errorCatalog) {
+        Map<String, Counter> counters = new HashMap<>();
+        errorCatalog.asMap().values().forEach(errorMessage -> registerErrorCounter(counters, errorMessage));
+        registerErrorCounter(counters, errorCatalog.unknownError());
+        return Map.copyOf(counters);
+    }
+
+    private void registerErrorCounter(Map<String, Counter> counters, ErrorMessage errorMessage) {
+        if (Objects.isNull(errorMessage.getCode())) return;
+        counters.putIfAbsent(errorMessage.getCode(), errorCounter(errorMessage.getCode(), errorMessage.getStatus()));
+    }
+
+    private Counter errorCounter(String code, int status) {
+        return Counter
+                .builder(ERRORS)
+                .description("Error responses returned by the exception handler")
+                .tag("code", code)
+                .tag("status", String.valueOf(status))
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary loggedBodyBytes(String direction) {
+        return DistributionSummary
+                .builder(LOGGED_BODY_BYTES)
+                .description("Size of the bodies written in the request/response log lines")
+                .baseUnit("bytes")
+                .tag("direction", direction)
+                .register(meterRegistry);
+    }
+
+    private record ErrorCounterKey(String code, int status) {
+    }
+}
@@ -0,0 +1,88 @@
+package it.magiavventure.common.route;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Resolves the value of the first route matching a request path, or the default value when no route matches.
+ * <p>
+ * Routes are evaluated in declaration order. Patterns are compiled once: exact paths are compared with
+ * {@code equals}, patterns ending with {@code /**} and no other wildcard with {@code startsWith}, and only the
+ * remaining ones are matched as a {@link PathPattern}, parsing the request path at most once.
+ */
+public final class RouteMatcher<T> {
+
+    private final List<CompiledRoute<T>> routes;
+    private final T defaultValue;
+
+    public RouteMatcher(List<Route<T>> routes, T defaultValue) {
+        this.routes = routes.stream().map(CompiledRoute::new).toList();
+        this.defaultValue = defaultValue;
+    }
+
+    public T resolve(String path) {
+        PathContainer pathContainer = null;
+        for (CompiledRoute<T> route : routes) {
+            switch (route.matchType) {
+                case EXACT -> {
+                    if (route.value.equals(path)) return route.route.value();
+                }
+                case PREFIX -> {
+                    if (path.startsWith(route.value) &&
+                            (path.length() == route.value.length() || path.charAt(route.value.length()) == '/')) {
+                        return route.route.value();
+                    }
+                }
+                case PATTERN -> {
+                    if (Objects.isNull(pathContainer)) pathContainer = PathContainer.parsePath(path);
+                    if (route.pathPattern.matches(pathContainer)) return route.route.value();
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    public record Route<T>(String pattern, T value) {
+
+        public Route {
+            Objects.requireNonNull(pattern, "route pattern is required");
+        }
+    }
+
+    private enum MatchType {
+        EXACT, PREFIX, PATTERN
+    }
+
+    private static final class CompiledRoute<T> {
+        private final Route<T> route;
+        private final MatchType matchType;
+        private final String value;
+        private final PathPattern pathPattern;
+
+        CompiledRoute(Route<T> route) {
+            String pattern = route.pattern();
+            this.route = route;
+            if (!hasWildcard(pattern)) {
+                this.matchType = MatchType.EXACT;
+                this.value = pattern;
+                this.pathPattern = null;
+            } else if (pattern.endsWith("/**") && !hasWildcard(pattern.substring(0, pattern.length() - 3))) {
+                this.matchType = MatchType.PREFIX;
+                this.value = pattern.substring(0, pattern.length() - 3);
+                this.pathPattern = null;
+            } else {
+                this.matchType = MatchType.PATTERN;
+                this.value = pattern;
+                this.pathPattern = PathPatternParser.defaultInstance.parse(pattern);
+            }
+        }
+
+        private static boolean hasWildcard(String pattern) {
+            return pattern.indexOf('*') >= 0 || pattern.indexOf('?') >= 0 || pattern.indexOf('{') >= 0;
+        }
+    }
+}
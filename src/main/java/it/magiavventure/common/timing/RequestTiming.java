@@ -0,0 +1,118 @@
+package it.magiavventure.common.timing;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Objects;
+
+/**
+ * Latency breakdown of a single request, stored as the {@link #ATTRIBUTE} request attribute by the timing
+ * filter and filled by the library components the request goes through. All the instants come from
+ * {@link System#nanoTime()}, which is monotonic and does not allocate.
+ * <ul>
+ *     <li>{@code pre}: the library filters before the downstream chain; each of them marks the chain start
+ *     just before calling the chain, so the mark of the innermost one is kept</li>
+ *     <li>{@code app}: the downstream chain, without the error handling and the response logging</li>
+ *     <li>{@code error}: the exception handlers</li>
+ *     <li>{@code log}: the request and response logging and body copying after the chain</li>
+ * </ul>
+ * A request is handled by one thread at a time, so the instance is not synchronized.
+ */
+public final class RequestTiming {
+
+    public static final String ATTRIBUTE = RequestTiming.class.getName();
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    private final long start;
+    private long chainStart;
+    private long chainEnd;
+    private long errorNanos;
+    private long loggingNanos;
+
+    public RequestTiming(long start) {
+        this.start = start;
+        this.chainStart = start;
+    }
+
+    /** Adds the time spent by an exception handler to the timing of the current servlet request, if any. */
+    public static void recordError(long nanos) {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (Objects.isNull(requestAttributes)) return;
+        Object timing = requestAttributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (timing instanceof RequestTiming requestTiming) requestTiming.addError(nanos);
+    }
+
+    public void chainStarted(long now) {
+        this.chainStart = now;
+    }
+
+    public void chainEnded(long now) {
+        this.chainEnd = now;
+    }
+
+    public void addError(long nanos) {
+        this.errorNanos += nanos;
+    }
+
+    public void addLogging(long nanos) {
+        this.loggingNanos += nanos;
+    }
+
+    public long getPreNanos() {
+        return chainStart - start;
+    }
+
+    /** The downstream chain time up to now, or up to its end when it has ended. */
+    public long getAppNanos(long now) {
+        long end = chainEnd == 0 ? now : chainEnd;
+        return Math.max(0, end - chainStart - errorNanos - loggingNanos);
+    }
+
+    public long getErrorNanos() {
+        return errorNanos;
+    }
+
+    public long getLoggingNanos() {
+        return loggingNanos;
+    }
+
+    public long getTotalNanos(long now) {
+        return now - start;
+    }
+
+    /** The {@code Server-Timing} header value with the phases measured up to now, in milliseconds. */
+    public String serverTiming(long now) {
+        StringBuilder builder = new StringBuilder(64);
+        appendMetric(builder, "pre", getPreNanos());
+        builder.append(", ");
+        appendMetric(builder, "app", getAppNanos(now));
+        if (errorNanos > 0) {
+            builder.append(", ");
+            appendMetric(builder, "error", errorNanos);
+        }
+        if (loggingNanos > 0) {
+            builder.append(", ");
+            appendMetric(builder, "log", loggingNanos);
+        }
+        builder.append(", ");
+        appendMetric(builder, "total", getTotalNanos(now));
+        return builder.toString();
+    }
+
+    /** The phases measured up to now, for the slow request log. */
+    public String summary(long now) {
+        return "pre " + millis(getPreNanos()) + " ms, app " + millis(getAppNanos(now)) + " ms, error "
+                + millis(errorNanos) + " ms, log " + millis(loggingNanos) + " ms";
+    }
+
+    /** Milliseconds with two decimals, e.g. {@code 12.34}. */
+    public static String millis(long nanos) {
+        long hundredths = Math.round(nanos / 10_000.0);
+        long fraction = hundredths % 100;
+        return (hundredths / 100) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    private static void appendMetric(StringBuilder builder, String name, long nanos) {
+        builder.append(name).append(";dur=").append(millis(nanos));
+    }
+}
@@ -0,0 +1,43 @@
+package it.magiavventure.common.transaction;
+
+import org.slf4j.MDC;
+import org.springframework.core.task.TaskDecorator;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Carries the MDC of the submitting thread, and so the transaction id, to the thread running the task,
+ * platform or virtual, and restores the previous MDC of that thread when the task ends. The current
+ * {@link TransactionContext} is carried the same way, so the calls made by the task are traced too.
+ * <p>
+ * Spring Boot applies the {@link TaskDecorator} bean to the auto-configured executors used by
+ * {@code @Async} methods and by the {@code Callable}/{@code WebAsyncTask} controllers.
+ */
+public class MdcTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        TransactionContext transactionContext = TransactionContext.current();
+        return () -> {
+            Map<String, String> previous = MDC.getCopyOfContextMap();
+            setContext(context);
+            TransactionContext previousTransactionContext = TransactionContext.attach(transactionContext);
+            try {
+                runnable.run();
+            } finally {
+                TransactionContext.restore(previousTransactionContext);
+                setContext(previous);
+            }
+        };
+    }
+
+    private static void setContext(Map<String, String> context) {
+        if (Objects.isNull(context)) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(context);
+        }
+    }
+}
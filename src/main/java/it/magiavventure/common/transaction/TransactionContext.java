@@ -0,0 +1,165 @@
+package it.magiavventure.common.transaction;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.http.HttpHeaders;
+
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Transaction id and W3C trace context of the request being served, with the headers to forward to the
+ * called services already built, so the client interceptors only copy them.
+ * <p>
+ * The trace id is the one of the incoming {@code traceparent} or, when the request starts the trace, the
+ * transaction id itself when it is a UUID or 32 hex digits, so the two ids match in the logs. Every request
+ * gets a new span id, sent as parent id to the called services. The servlet filter keeps the context in a
+ * thread local, see {@link #current()}, and the reactive filter in the Reactor context under
+ * {@link #CONTEXT_KEY}.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class TransactionContext {
+
+    public static final String TRACEPARENT = "traceparent";
+    public static final String TRACESTATE = "tracestate";
+    /** Key of the context in the Reactor context. */
+    public static final String CONTEXT_KEY = TransactionContext.class.getName();
+
+    private static final ThreadLocal<TransactionContext> CURRENT = new ThreadLocal<>();
+    private static final HexFormat HEX = HexFormat.of();
+    private static final String VERSION = "00";
+    private static final int TRACEPARENT_LENGTH = 55;
+    private static final int TRACE_ID_LENGTH = 32;
+    private static final int MAX_TRACESTATE_LENGTH = 512;
+
+    private final String transactionId;
+    private final String traceId;
+    private final String spanId;
+    private final String traceparent;
+    private final String tracestate;
+
+    /** Context with the transaction id only, when the trace context is disabled. */
+    public static TransactionContext of(String transactionId) {
+        return new TransactionContext(transactionId, null, null, null, null);
+    }
+
+    /**
+     * Resolves the context of a request from its headers. The transaction id, already validated by the
+     * caller, is {@code null} when missing: the trace id of a valid {@code traceparent} is used instead, or a
+     * new one is generated. An invalid {@code traceparent} is ignored and starts a new trace, the
+     * {@code tracestate} is kept only with a valid {@code traceparent}.
+     */
+    public static TransactionContext resolve(String transactionId, String traceparent, String tracestate,
+                                             TransactionIdGenerator transactionIdGenerator) {
+        boolean continued = isValidTraceparent(traceparent);
+        String incomingTraceId = continued ? traceparent.substring(3, 3 + TRACE_ID_LENGTH) : null;
+        String resolvedTransactionId = Objects.nonNull(transactionId) ? transactionId
+                : continued ? incomingTraceId : transactionIdGenerator.generate();
+        String traceId = continued ? incomingTraceId : traceIdOf(resolvedTransactionId);
+        String flags = continued && (HexFormat.fromHexDigits(traceparent, 53, 55) & 0x01) == 0 ? "00" : "01";
+        String spanId = HEX.toHexDigits(nonZeroRandomLong());
+        return new TransactionContext(resolvedTransactionId, traceId, spanId,
+                VERSION + '-' + traceId + '-' + spanId + '-' + flags,
+                continued && isValidTracestate(tracestate) ? tracestate : null);
+    }
+
+    /** The context of the request served by the current thread, {@code null} outside of a request. */
+    public static TransactionContext current() {
+        return CURRENT.get();
+    }
+
+    /** Makes the context current on this thread and returns the previous one, to pass to {@link #restore}. */
+    public static TransactionContext attach(TransactionContext transactionContext) {
+        TransactionContext previous = CURRENT.get();
+        CURRENT.set(transactionContext);
+        return previous;
+    }
+
+    public static void restore(TransactionContext previous) {
+        if (Objects.isNull(previous)) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /** Adds the headers of the context to an outgoing request, keeping the ones already set. */
+    public void writeHeaders(HttpHeaders headers) {
+        if (!headers.containsKey(TransactionId.TRANSACTION_ID)) {
+            headers.set(TransactionId.TRANSACTION_ID, transactionId);
+        }
+        if (Objects.isNull(traceparent) || headers.containsKey(TRACEPARENT)) return;
+        headers.set(TRACEPARENT, traceparent);
+        if (Objects.nonNull(tracestate)) headers.set(TRACESTATE, tracestate);
+    }
+
+    /**
+     * A {@code traceparent} is valid when it has a known layout: any version but {@code ff}, exactly 55
+     * characters for version {@code 00} and at least 55 for the following ones, lowercase hex ids not all
+     * zeros.
+     */
+    static boolean isValidTraceparent(String traceparent) {
+        if (Objects.isNull(traceparent) || traceparent.length() < TRACEPARENT_LENGTH) return false;
+        if (!isHex(traceparent, 0, 2) || traceparent.startsWith("ff")) return false;
+        if (traceparent.startsWith(VERSION) ? traceparent.length() != TRACEPARENT_LENGTH
+                : traceparent.length() > TRACEPARENT_LENGTH && traceparent.charAt(TRACEPARENT_LENGTH) != '-') {
+            return false;
+        }
+        return traceparent.charAt(2) == '-' && traceparent.charAt(35) == '-' && traceparent.charAt(52) == '-'
+                && isHex(traceparent, 3, 35) && !isZeros(traceparent, 3, 35)
+                && isHex(traceparent, 36, 52) && !isZeros(traceparent, 36, 52)
+                && isHex(traceparent, 53, 55);
+    }
+
+    /** The {@code tracestate} is forwarded as it is, so only printable ASCII within the size limit passes. */
+    static boolean isValidTracestate(String tracestate) {
+        if (Objects.isNull(tracestate) || tracestate.isEmpty() || tracestate.length() > MAX_TRACESTATE_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < tracestate.length(); i++) {
+            char c = tracestate.charAt(i);
+            if (c < 0x20 || c > 0x7E) return false;
+        }
+        return true;
+    }
+
+    private static String traceIdOf(String transactionId) {
+        char[] digits = new char[TRACE_ID_LENGTH];
+        int length = 0;
+        for (int i = 0; i < transactionId.length() && length >= 0; i++) {
+            char c = transactionId.charAt(i);
+            if (c == '-') continue;
+            length = length < TRACE_ID_LENGTH && HexFormat.isHexDigit(c) ? length + 1 : -1;
+            if (length > 0) digits[length - 1] = Character.toLowerCase(c);
+        }
+        String traceId = new String(digits);
+        if (length == TRACE_ID_LENGTH && !isZeros(traceId, 0, TRACE_ID_LENGTH)) return traceId;
+        return HEX.toHexDigits(nonZeroRandomLong()) + HEX.toHexDigits(ThreadLocalRandom.current().nextLong());
+    }
+
+    private static long nonZeroRandomLong() {
+        long value;
+        do {
+            value = ThreadLocalRandom.current().nextLong();
+        } while (value == 0);
+        return value;
+    }
+
+    private static boolean isHex(CharSequence value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) return false;
+        }
+        return true;
+    }
+
+    private static boolean isZeros(CharSequence value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (value.charAt(i) != '0') return false;
+        }
+        return true;
+    }
+}
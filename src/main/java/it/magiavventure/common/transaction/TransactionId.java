@@ -0,0 +1,33 @@
+package it.magiavventure.common.transaction;
+
+import java.util.Objects;
+
+/**
+ * Names and validation of the transaction id shared by the servlet and the reactive filters.
+ */
+public final class TransactionId {
+
+    /** Name of the request and response header, of the MDC key and of the Reactor context key. */
+    public static final String TRANSACTION_ID = "transactionId";
+    public static final int DEFAULT_MAX_LENGTH = 64;
+
+    private TransactionId() {
+    }
+
+    /**
+     * An incoming id is reused only when it is short and made of letters, digits and {@code - _ . :},
+     * so it cannot forge log lines or response headers.
+     */
+    public static boolean isValid(String transactionId, int maxLength) {
+        if (Objects.isNull(transactionId) || transactionId.isEmpty() || transactionId.length() > maxLength) {
+            return false;
+        }
+        for (int i = 0; i < transactionId.length(); i++) {
+            char c = transactionId.charAt(i);
+            boolean allowed = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == ':';
+            if (!allowed) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,11 @@
+package it.magiavventure.common.transaction;
+
+/**
+ * Strategy creating the transaction id of the requests that do not carry a valid one.
+ * Declare a bean of this type to replace the default {@link TimeOrderedTransactionIdGenerator}.
+ */
+@FunctionalInterface
+public interface TransactionIdGenerator {
+
+    String generate();
+}
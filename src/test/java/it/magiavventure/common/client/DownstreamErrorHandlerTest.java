@@ -0,0 +1,183 @@
+package it.magiavventure.common.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties;
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
+import it.magiavventure.common.error.DownstreamException;
+import it.magiavventure.common.error.ErrorCatalogHolder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+
+@DisplayName("Downstream error handler tests")
+class DownstreamErrorHandlerTest {
+
+    private ErrorCatalogHolder errorCatalogHolder;
+    private DownstreamErrorHandler downstreamErrorHandler;
+
+    @BeforeEach
+    void setUp() {
+        var errorsProperties = new ErrorsProperties();
+        errorsProperties.setErrorsMessages(Map.of(
+                "not-found", errorMessage("not-found", 404),
+                "bad-request", errorMessage("bad-request", 400),
+                "service-unavailable", errorMessage("service-unavailable", 503),
+                "user-not-found", errorMessage("user-not-found", 404)));
+        errorCatalogHolder = new ErrorCatalogHolder(errorsProperties.retrieveErrorCatalog());
+        downstreamErrorHandler = new DownstreamErrorHandler(errorCatalogHolder, new JsonFactory(), 64, 2);
+    }
+
+    @Test
+    @DisplayName("Map a known code to the catalog entry with the remote status and fields")
+    void decode_knownCode() {
+        var downstreamException = downstreamErrorHandler.decode(410,
+                body("{\"code\":\"user-not-found\",\"status\":410,\"fields\":[\"id\",1,\"name\"]}"));
+
+        Assertions.assertEquals("user-not-found", downstreamException.getError().getKey());
+        Assertions.assertSame(errorCatalogHolder.current().retrieve("user-not-found"),
+                downstreamException.getErrorMessage());
+        Assertions.assertEquals(410, downstreamException.getStatus());
+        Assertions.assertEquals(List.of("id", "name"), downstreamException.getFields());
+        Assertions.assertEquals(0, downstreamErrorHandler.getCachedErrorCount());
+    }
+
+    @Test
+    @DisplayName("Cache the error messages of the unknown codes up to the maximum number")
+    void decode_unknownCode_cached() {
+        var first = downstreamErrorHandler.decode(409, body("{\"code\":\"order-closed\",\"message\":\"chiuso\"}"));
+        var second = downstreamErrorHandler.decode(409, body("{\"code\":\"order-closed\",\"message\":\"chiuso\"}"));
+
+        Assertions.assertSame(first.getErrorMessage(), second.getErrorMessage());
+        Assertions.assertEquals("order-closed", first.getErrorMessage().getCode());
+        Assertions.assertEquals("chiuso", first.getErrorMessage().getMessage());
+        Assertions.assertEquals(409, first.getErrorMessage().getStatus());
+        Assertions.assertTrue(first.getErrorMessage().isExpected());
+
+        downstreamErrorHandler.decode(500, body("{\"code\":\"order-failed\"}"));
+        var notCached = downstreamErrorHandler.decode(500, body("{\"code\":\"order-lost\"}"));
+
+        Assertions.assertEquals(2, downstreamErrorHandler.getCachedErrorCount());
+        Assertions.assertFalse(notCached.getErrorMessage().isExpected());
+        Assertions.assertNotSame(notCached.getErrorMessage(),
+                downstreamErrorHandler.decode(500, body("{\"code\":\"order-lost\"}")).getErrorMessage());
+    }
+
+    @Test
+    @DisplayName("Cache the unknown codes by code and status, building the other messages every time")
+    void decode_unknownCode_withOtherMessage() {
+        var cached = downstreamErrorHandler.decode(409, body("{\"code\":\"order-closed\",\"message\":\"ordine 1\"}"));
+        var other = downstreamErrorHandler.decode(409, body("{\"code\":\"order-closed\",\"message\":\"ordine 2\"}"));
+        var otherStatus = downstreamErrorHandler.decode(410,
+                body("{\"code\":\"order-closed\",\"message\":\"ordine 1\"}"));
+
+        Assertions.assertEquals("ordine 2", other.getErrorMessage().getMessage());
+        Assertions.assertEquals(410, otherStatus.getErrorMessage().getStatus());
+        Assertions.assertNotSame(cached.getErrorMessage(), otherStatus.getErrorMessage());
+        Assertions.assertSame(cached.getErrorMessage(), downstreamErrorHandler.decode(409,
+                body("{\"code\":\"order-closed\",\"message\":\"ordine 1\"}")).getErrorMessage());
+        Assertions.assertEquals(2, downstreamErrorHandler.getCachedErrorCount());
+    }
+
+    @Test
+    @DisplayName("Keep the fields read before the maximum size of the body")
+    void decode_truncatedBody() {
+        var downstreamException = downstreamErrorHandler.decode(404,
+                body("{\"code\":\"user-not-found\",\"description\":\"" + "x".repeat(100) + "\"}"));
+
+        Assertions.assertEquals("user-not-found", downstreamException.getError().getKey());
+        Assertions.assertEquals(List.of(), downstreamException.getFields());
+    }
+
+    @ParameterizedTest
+    @CsvSource({"404, not-found", "422, bad-request", "502, service-unavailable"})
+    @DisplayName("Map a body without code by status")
+    void decode_withoutCode(int status, String key) {
+        var notJson = downstreamErrorHandler.decode(status, body("<html>errore</html>"));
+        var withoutCode = downstreamErrorHandler.decode(status, body("{\"message\":\"errore\"}"));
+
+        Assertions.assertEquals(key, notJson.getError().getKey());
+        Assertions.assertEquals(key, withoutCode.getError().getKey());
+    }
+
+    @Test
+    @DisplayName("Create the expected downstream errors without stack trace")
+    void decode_expectedWithoutStackTrace() {
+        Assertions.assertEquals(0,
+                downstreamErrorHandler.decode(404, body("{}")).getStackTrace().length);
+        Assertions.assertNotEquals(0,
+                downstreamErrorHandler.decode(503, body("{}")).getStackTrace().length);
+    }
+
+    @Test
+    @DisplayName("Throw the downstream exception from a RestTemplate")
+    void throwDownstreamException_fromRestTemplate() {
+        var restTemplate = new RestTemplate();
+        restTemplate.setErrorHandler(downstreamErrorHandler);
+        var server = MockRestServiceServer.bindTo(restTemplate).build();
+        server.expect(method(HttpMethod.GET))
+                .andRespond(withStatus(HttpStatus.NOT_FOUND).contentType(MediaType.APPLICATION_JSON)
+                        .body("{\"code\":\"user-not-found\"}"));
+
+        var downstreamException = Assertions.assertThrows(DownstreamException.class,
+                () -> restTemplate.getForEntity("http://downstream/users/1", String.class));
+
+        server.verify();
+        Assertions.assertEquals("user-not-found", downstreamException.getError().getKey());
+        Assertions.assertEquals(404, downstreamException.getStatus());
+    }
+
+    @Test
+    @DisplayName("Throw the downstream exception from a RestClient")
+    void throwDownstreamException_fromRestClient() {
+        var builder = RestClient.builder()
+                .defaultStatusHandler(downstreamErrorHandler);
+        var server = MockRestServiceServer.bindTo(builder).build();
+        server.expect(method(HttpMethod.GET))
+                .andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+
+        var downstreamException = Assertions.assertThrows(DownstreamException.class,
+                () -> builder.build().get().uri("http://downstream/users/1").retrieve().toBodilessEntity());
+
+        server.verify();
+        Assertions.assertEquals("service-unavailable", downstreamException.getError().getKey());
+        Assertions.assertEquals(503, downstreamException.getStatus());
+    }
+
+    @Test
+    @DisplayName("Leave the successful responses to the client")
+    void leaveSuccessfulResponses() {
+        var restTemplate = new RestTemplate();
+        restTemplate.setErrorHandler(downstreamErrorHandler);
+        var server = MockRestServiceServer.bindTo(restTemplate).build();
+        server.expect(method(HttpMethod.GET)).andRespond(withStatus(HttpStatus.NO_CONTENT));
+
+        Assertions.assertEquals(HttpStatus.NO_CONTENT,
+                restTemplate.getForEntity("http://downstream/users/1", Void.class).getStatusCode());
+    }
+
+    private static InputStream body(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ErrorMessage errorMessage(String code, int status) {
+        return ErrorMessage.builder().code(code).status(status).message(code).expected(status < 500).build();
+    }
+}
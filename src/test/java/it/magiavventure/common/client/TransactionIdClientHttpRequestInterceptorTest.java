@@ -0,0 +1,80 @@
+package it.magiavventure.common.client;
+
+import it.magiavventure.common.transaction.TransactionContext;
+import it.magiavventure.common.transaction.TransactionId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestTemplate;
+
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.headerDoesNotExist;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+
+@DisplayName("Transaction id client http request interceptor tests")
+class TransactionIdClientHttpRequestInterceptorTest {
+
+    private static final String TRACEPARENT = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+
+    @AfterEach
+    void tearDown() {
+        TransactionContext.restore(null);
+    }
+
+    @Test
+    @DisplayName("Forward the current transaction context from a RestTemplate")
+    void forwardTransactionContext_fromRestTemplate() {
+        var restTemplate = new RestTemplate();
+        restTemplate.getInterceptors().add(new TransactionIdClientHttpRequestInterceptor());
+        var server = MockRestServiceServer.bindTo(restTemplate).build();
+        var transactionContext = TransactionContext.resolve(null, TRACEPARENT, "rojo=1", () -> "unused");
+        TransactionContext.attach(transactionContext);
+        server.expect(method(HttpMethod.GET))
+                .andExpect(header(TransactionId.TRANSACTION_ID, "4bf92f3577b34da6a3ce929d0e0e4736"))
+                .andExpect(header(TransactionContext.TRACEPARENT, transactionContext.getTraceparent()))
+                .andExpect(header(TransactionContext.TRACESTATE, "rojo=1"))
+                .andRespond(withStatus(HttpStatus.NO_CONTENT));
+
+        restTemplate.getForEntity("http://downstream/test", Void.class);
+
+        server.verify();
+    }
+
+    @Test
+    @DisplayName("Forward the current transaction context from a RestClient")
+    void forwardTransactionContext_fromRestClient() {
+        var builder = RestClient.builder().requestInterceptor(new TransactionIdClientHttpRequestInterceptor());
+        var server = MockRestServiceServer.bindTo(builder).build();
+        TransactionContext.attach(TransactionContext.of("legacy-id"));
+        server.expect(method(HttpMethod.GET))
+                .andExpect(header(TransactionId.TRANSACTION_ID, "legacy-id"))
+                .andExpect(headerDoesNotExist(TransactionContext.TRACEPARENT))
+                .andRespond(withStatus(HttpStatus.NO_CONTENT));
+
+        builder.build().get().uri("http://downstream/test").retrieve().toBodilessEntity();
+
+        server.verify();
+    }
+
+    @Test
+    @DisplayName("Send no header outside of a request")
+    void sendNoHeader_outsideOfRequest() {
+        var restTemplate = new RestTemplate();
+        restTemplate.getInterceptors().add(new TransactionIdClientHttpRequestInterceptor());
+        var server = MockRestServiceServer.bindTo(restTemplate).build();
+        server.expect(method(HttpMethod.GET))
+                .andExpect(headerDoesNotExist(TransactionId.TRANSACTION_ID))
+                .andRespond(withStatus(HttpStatus.NO_CONTENT));
+
+        restTemplate.getForEntity("http://downstream/test", Void.class);
+
+        server.verify();
+        Assertions.assertNull(TransactionContext.current());
+    }
+}
@@ -0,0 +1,69 @@
+package it.magiavventure.common.client;
+
+import it.magiavventure.common.transaction.TransactionContext;
+import it.magiavventure.common.transaction.TransactionId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicReference;
+
+@DisplayName("Transaction id exchange filter function tests")
+class TransactionIdExchangeFilterFunctionTest {
+
+    private final TransactionIdExchangeFilterFunction filterFunction = new TransactionIdExchangeFilterFunction();
+    private final AtomicReference<ClientRequest> sentRequest = new AtomicReference<>();
+    private final ExchangeFunction exchangeFunction = request -> {
+        sentRequest.set(request);
+        return Mono.just(ClientResponse.create(HttpStatus.NO_CONTENT).build());
+    };
+    private final ClientRequest request = ClientRequest
+            .create(HttpMethod.GET, URI.create("http://downstream/test"))
+            .build();
+
+    @AfterEach
+    void tearDown() {
+        TransactionContext.restore(null);
+    }
+
+    @Test
+    @DisplayName("Forward the transaction context of the Reactor context")
+    void forwardTransactionContext_fromReactorContext() {
+        var transactionContext = TransactionContext.resolve("reactive-id", null, null, () -> "unused");
+
+        filterFunction.filter(request, exchangeFunction)
+                .contextWrite(Context.of(TransactionContext.CONTEXT_KEY, transactionContext))
+                .block();
+
+        Assertions.assertEquals("reactive-id", sentRequest.get().headers().getFirst(TransactionId.TRANSACTION_ID));
+        Assertions.assertEquals(transactionContext.getTraceparent(),
+                sentRequest.get().headers().getFirst(TransactionContext.TRACEPARENT));
+    }
+
+    @Test
+    @DisplayName("Forward the transaction context of the subscribing servlet thread")
+    void forwardTransactionContext_fromThread() {
+        TransactionContext.attach(TransactionContext.of("servlet-id"));
+
+        filterFunction.filter(request, exchangeFunction).block();
+
+        Assertions.assertEquals("servlet-id", sentRequest.get().headers().getFirst(TransactionId.TRANSACTION_ID));
+    }
+
+    @Test
+    @DisplayName("Send the request unchanged outside of a request")
+    void sendRequestUnchanged_outsideOfRequest() {
+        filterFunction.filter(request, exchangeFunction).block();
+
+        Assertions.assertSame(request, sentRequest.get());
+    }
+}
@@ -0,0 +1,172 @@
+package it.magiavventure.common.configuration;
+
+import it.magiavventure.common.client.DownstreamErrorHandler;
+import it.magiavventure.common.client.TransactionIdClientHttpRequestInterceptor;
+import it.magiavventure.common.error.ErrorCatalogReloader;
+import it.magiavventure.common.error.handler.DefaultExceptionHandler;
+import it.magiavventure.common.error.handler.ErrorResponseRenderer;
+import it.magiavventure.common.error.handler.ExceptionLogSuppressor;
+import it.magiavventure.common.error.handler.ReactiveExceptionHandler;
+import it.magiavventure.common.filter.ReactiveRequestResponseLoggingFilter;
+import it.magiavventure.common.filter.ReactiveRequestTimingFilter;
+import it.magiavventure.common.filter.ReactiveTransactionIdFilter;
+import it.magiavventure.common.filter.RequestResponseLoggingFilter;
+import it.magiavventure.common.filter.RequestTimingFilter;
+import it.magiavventure.common.filter.ResponseBufferingFilter;
+import it.magiavventure.common.filter.TransactionIdFilter;
+import it.magiavventure.common.logging.AsyncHttpLogWriter;
+import it.magiavventure.common.logging.HttpLogWriter;
+import it.magiavventure.common.mapper.HttpErrorMapper;
+import it.magiavventure.common.transaction.TimeOrderedTransactionIdGenerator;
+import it.magiavventure.common.transaction.TransactionIdGenerator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ReactiveWebApplicationContextRunner;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.boot.web.client.RestTemplateCustomizer;
+import org.springframework.web.client.RestTemplate;
+
+@DisplayName("Common auto-configuration tests")
+class CommonConfigTest {
+
+    private final WebApplicationContextRunner servletRunner = new WebApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(CommonConfig.class));
+
+    private final ReactiveWebApplicationContextRunner reactiveRunner = new ReactiveWebApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(CommonConfig.class));
+
+    @Test
+    @DisplayName("Register the servlet filters and the exception handler by default")
+    void registerServletBeans_byDefault() {
+        servletRunner.run(context -> {
+            Assertions.assertNull(context.getStartupFailure());
+            Assertions.assertEquals(1, context.getBeanNamesForType(RequestTimingFilter.class).length);
+            Assertions.assertEquals(1, context.getBeanNamesForType(ResponseBufferingFilter.class).length);
+            Assertions.assertEquals(1, context.getBeanNamesForType(RequestResponseLoggingFilter.class).length);
+            Assertions.assertEquals(1, context.getBeanNamesForType(TransactionIdFilter.class).length);
+            Assertions.assertEquals(1, context.getBeanNamesForType(DefaultExceptionHandler.class).length);
+            Assertions.assertEquals(0, context.getBeanNamesForType(ReactiveExceptionHandler.class).length);
+        });
+    }
+
+    @Test
+    @DisplayName("Start the components to restart after a checkpoint with the context")
+    void startLifecycleComponents_withContext() {
+        servletRunner.run(context -> {
+            var transactionIdGenerator = context.getBean(TransactionIdGenerator.class);
+            Assertions.assertTrue(((TimeOrderedTransactionIdGenerator) transactionIdGenerator).isRunning());
+            Assertions.assertTrue(context.getBean(ErrorCatalogReloader.class).isRunning());
+        });
+        servletRunner
+                .withPropertyValues("magiavventure.lib.common.logging.async.enabled=true")
+                .run(context -> {
+                    Assertions.assertTrue(((AsyncHttpLogWriter) context.getBean(HttpLogWriter.class)).isRunning());
+                    Assertions.assertFalse(context.getBeanFactory().containsSingleton("exceptionLogSuppressor"));
+                    Assertions.assertTrue(context.getBean(ExceptionLogSuppressor.class).isRunning());
+                });
+    }
+
+    @Test
+    @DisplayName("Create the error handling beans only when first used")
+    void createErrorBeans_lazily() {
+        servletRunner.run(context -> {
+            var beanFactory = context.getBeanFactory();
+            Assertions.assertFalse(beanFactory.containsSingleton("defaultExceptionHandler"));
+            Assertions.assertFalse(beanFactory.containsSingleton("errorResponseRenderer"));
+
+            Assertions.assertNotNull(context.getBean(DefaultExceptionHandler.class));
+            Assertions.assertTrue(beanFactory.containsSingleton("errorResponseRenderer"));
+            Assertions.assertNotNull(context.getBean(HttpErrorMapper.class));
+        });
+    }
+
+    @Test
+    @DisplayName("Skip the servlet filters and the exception handler when disabled")
+    void skipServletBeans_whenDisabled() {
+        servletRunner
+                .withPropertyValues(
+                        "magiavventure.lib.common.logging.enabled=false",
+                        "magiavventure.lib.common.logging.timing-enabled=false",
+                        "magiavventure.lib.common.response.enabled=false",
+                        "magiavventure.lib.common.transaction-id.enabled=false",
+                        "magiavventure.lib.common.errors.handler-enabled=false")
+                .run(context -> {
+                    Assertions.assertNull(context.getStartupFailure());
+                    Assertions.assertEquals(0, context.getBeanNamesForType(RequestTimingFilter.class).length);
+                    Assertions.assertEquals(0, context.getBeanNamesForType(ResponseBufferingFilter.class).length);
+                    Assertions.assertEquals(0,
+                            context.getBeanNamesForType(RequestResponseLoggingFilter.class).length);
+                    Assertions.assertEquals(0, context.getBeanNamesForType(TransactionIdFilter.class).length);
+                    Assertions.assertEquals(0, context.getBeanNamesForType(DefaultExceptionHandler.class).length);
+                    Assertions.assertEquals(1, context.getBeanNamesForType(ErrorResponseRenderer.class).length);
+                });
+    }
+
+    @Test
+    @DisplayName("Forward the transaction id with the RestTemplate and RestClient only when enabled")
+    void propagateHeaders_whenEnabled() {
+        servletRunner.run(context -> {
+            Assertions.assertFalse(context.containsBean("transactionIdRestTemplateCustomizer"));
+            Assertions.assertFalse(context.containsBean("transactionIdRestClientCustomizer"));
+            Assertions.assertFalse(context.containsBean("transactionIdWebClientCustomizer"));
+        });
+        servletRunner
+                .withPropertyValues("magiavventure.lib.common.client.propagate-headers=true")
+                .run(context -> {
+                    var restTemplate = new RestTemplate();
+                    context.getBeansOfType(RestTemplateCustomizer.class).values()
+                            .forEach(customizer -> customizer.customize(restTemplate));
+
+                    Assertions.assertInstanceOf(TransactionIdClientHttpRequestInterceptor.class,
+                            restTemplate.getInterceptors().get(0));
+                    Assertions.assertTrue(context.containsBean("transactionIdRestClientCustomizer"));
+                    Assertions.assertTrue(context.containsBean("transactionIdWebClientCustomizer"));
+                });
+    }
+
+    @Test
+    @DisplayName("Decode the downstream errors of the RestTemplate only when enabled")
+    void decodeDownstreamErrors_whenEnabled() {
+        servletRunner.run(context -> Assertions.assertFalse(context.getBeanFactory()
+                .containsBean("downstreamErrorRestTemplateCustomizer")));
+        servletRunner
+                .withPropertyValues("magiavventure.lib.common.client.decode-errors=true")
+                .run(context -> {
+                    var restTemplate = new RestTemplate();
+                    context.getBeansOfType(RestTemplateCustomizer.class).values()
+                            .forEach(customizer -> customizer.customize(restTemplate));
+
+                    Assertions.assertInstanceOf(DownstreamErrorHandler.class, restTemplate.getErrorHandler());
+                });
+    }
+
+    @Test
+    @DisplayName("Register the reactive filters and the exception handler in reactive applications")
+    void registerReactiveBeans_inReactiveApplication() {
+        reactiveRunner.run(context -> {
+            Assertions.assertNull(context.getStartupFailure());
+            Assertions.assertEquals(1, context.getBeanNamesForType(ReactiveRequestTimingFilter.class).length);
+            Assertions.assertEquals(1,
+                    context.getBeanNamesForType(ReactiveRequestResponseLoggingFilter.class).length);
+            Assertions.assertEquals(1, context.getBeanNamesForType(ReactiveTransactionIdFilter.class).length);
+            Assertions.assertEquals(1, context.getBeanNamesForType(ReactiveExceptionHandler.class).length);
+            Assertions.assertEquals(0, context.getBeanNamesForType(DefaultExceptionHandler.class).length);
+            Assertions.assertEquals(0, context.getBeanNamesForType(RequestResponseLoggingFilter.class).length);
+        });
+    }
+
+    @Test
+    @DisplayName("Skip the reactive logging filter when disabled")
+    void skipReactiveLoggingFilter_whenDisabled() {
+        reactiveRunner
+                .withPropertyValues("magiavventure.lib.common.logging.enabled=false")
+                .run(context -> {
+                    Assertions.assertEquals(0,
+                            context.getBeanNamesForType(ReactiveRequestResponseLoggingFilter.class).length);
+                    Assertions.assertEquals(1,
+                            context.getBeanNamesForType(ReactiveTransactionIdFilter.class).length);
+                });
+    }
+}
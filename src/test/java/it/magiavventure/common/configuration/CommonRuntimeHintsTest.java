@@ -0,0 +1,56 @@
+package it.magiavventure.common.configuration;
+
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties;
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
+import it.magiavventure.common.model.HttpError;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.generate.ClassNameGenerator;
+import org.springframework.aot.generate.DefaultGenerationContext;
+import org.springframework.aot.generate.InMemoryGeneratedFiles;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.aot.ApplicationContextAotGenerator;
+import org.springframework.javapoet.ClassName;
+
+@DisplayName("Common runtime hints tests")
+class CommonRuntimeHintsTest {
+
+    @Test
+    @DisplayName("Register the default properties, the properties binding and the error serialization")
+    void registerHints() {
+        var hints = new RuntimeHints();
+
+        new CommonRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        assertHints(hints);
+    }
+
+    @Test
+    @DisplayName("Contribute the hints to the AOT processing of the auto-configuration")
+    void contributeHints_duringAotProcessing() {
+        var generationContext = new DefaultGenerationContext(
+                new ClassNameGenerator(ClassName.get(CommonRuntimeHintsTest.class)), new InMemoryGeneratedFiles());
+        try (var context = new AnnotationConfigApplicationContext()) {
+            context.register(CommonConfig.class);
+
+            new ApplicationContextAotGenerator().processAheadOfTime(context, generationContext);
+        }
+
+        assertHints(generationContext.getRuntimeHints());
+    }
+
+    private static void assertHints(RuntimeHints hints) {
+        var reflection = RuntimeHintsPredicates.reflection();
+        Assertions.assertTrue(RuntimeHintsPredicates.resource()
+                .forResource(CommonRuntimeHints.DEFAULT_PROPERTIES).test(hints));
+        Assertions.assertTrue(reflection.onMethod(CommonProperties.class, "setErrors").test(hints));
+        Assertions.assertTrue(reflection.onMethod(ErrorsProperties.class, "setErrorsMessages").test(hints));
+        Assertions.assertTrue(reflection.onMethod(ErrorMessage.class, "setStatus").test(hints));
+        Assertions.assertTrue(reflection.onMethod(ErrorMessage.class, "setLogLevel").test(hints));
+        Assertions.assertTrue(reflection.onMethod(HttpError.class, "getCode").test(hints));
+        Assertions.assertTrue(reflection.onMethod(HttpError.class, "getFields").test(hints));
+    }
+}
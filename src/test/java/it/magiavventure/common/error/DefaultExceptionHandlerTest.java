@@ -1,10 +1,14 @@
 package it.magiavventure.common.error;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import it.magiavventure.common.configuration.CommonProperties;
 import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties;
 import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
 import it.magiavventure.common.error.handler.DefaultExceptionHandler;
+import it.magiavventure.common.error.handler.ErrorResponseRenderer;
+import it.magiavventure.common.error.handler.ExceptionLogSuppressor;
 import it.magiavventure.common.mapper.HttpErrorMapper;
+import it.magiavventure.common.metrics.CommonMetrics;
 import it.magiavventure.common.model.HttpError;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
@@ -41,6 +45,37 @@ class DefaultExceptionHandlerTest {
     @Spy
     private HttpErrorMapper httpErrorMapper = Mappers.getMapper(HttpErrorMapper.class);
 
+    @Mock
+    private CommonMetrics commonMetrics;
+
+    @Mock
+    private ExceptionLogSuppressor exceptionLogSuppressor;
+
+    @Spy
+    private ErrorCatalogHolder errorCatalogHolder = new ErrorCatalogHolder(
+            commonProperties.getErrors().retrieveErrorCatalog());
+
+    @Spy
+    private ErrorResponseRenderer errorResponseRenderer = new ErrorResponseRenderer(errorCatalogHolder,
+            httpErrorMapper, new ObjectMapper());
+
+    @Test
+    @DisplayName("Handle downstream exception with the remote status and fields")
+    void handleDownstreamException() {
+        var errorMessage = errorCatalogHolder.current().retrieve("user-not-found");
+        var downstreamException = new DownstreamException("user-not-found", errorMessage, 410, List.of("id"));
+
+        ResponseEntity<HttpError> responseEntity = defaultExceptionHandler.handleDownstreamException(
+                downstreamException);
+
+        Assertions.assertEquals(410, responseEntity.getStatusCode().value());
+        Assertions.assertEquals("user-not-found", responseEntity.getBody().getCode());
+        Assertions.assertEquals(List.of("id"), responseEntity.getBody().getFields());
+        Mockito.verify(commonMetrics).recordError(errorMessage, 410);
+        Mockito.verify(exceptionLogSuppressor).log(Mockito.any(), Mockito.eq(errorMessage),
+                Mockito.eq(downstreamException));
+    }
+
     @ParameterizedTest
     @CsvSource({"unknown-error, unknown-error, errore sconosciuto, desc sconosciuta, 500, prova",
             "user-not-found, user-not-found, user non trovato, desc user non trovato, 404, prova",
@@ -140,6 +175,8 @@ class DefaultExceptionHandlerTest {
         Assertions.assertEquals(503, error.getStatus());
         Assertions.assertEquals("Si è verificato un errore", error.getMessage());
         Assertions.assertEquals("Il servizio non è al momento disponibile", error.getDescription());
+        Mockito.verify(commonMetrics).recordError(Mockito.argThat(errorMessage ->
+                "service-unavailable".equals(errorMessage.getCode())));
     }
 
     @Test
@@ -155,6 +192,8 @@ class DefaultExceptionHandlerTest {
         Assertions.assertEquals(400, error.getStatus());
         Assertions.assertEquals("Si è verificato un errore", error.getMessage());
         Assertions.assertEquals("È presente un errore nella richiesta", error.getDescription());
+        Mockito.verify(exceptionLogSuppressor).log(Mockito.any(), Mockito.argThat(errorMessage ->
+                "bad-request".equals(errorMessage.getCode())), Mockito.any(HttpRequestMethodNotSupportedException.class));
     }
 
     private CommonProperties retrieveCommonProperties() {
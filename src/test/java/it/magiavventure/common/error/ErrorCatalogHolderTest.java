@@ -0,0 +1,46 @@
+package it.magiavventure.common.error;
+
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+@DisplayName("Error catalog holder tests")
+class ErrorCatalogHolderTest {
+
+    private final ErrorCatalogHolder errorCatalogHolder = new ErrorCatalogHolder(ErrorCatalog.of(Map.of(
+            "not-found", ErrorMessage.builder().code("not-found").status(404).build())));
+
+    @Test
+    @DisplayName("Publish a new version of the catalog and notify the listeners")
+    void publish_newVersion() {
+        var published = new ArrayList<ErrorCatalog>();
+        errorCatalogHolder.addListener(published::add);
+
+        var errorCatalog = errorCatalogHolder.publish(Map.of(
+                "not-found", ErrorMessage.builder().code("not-found").status(410).build()));
+
+        Assertions.assertSame(errorCatalog, errorCatalogHolder.current());
+        Assertions.assertEquals(1, errorCatalog.version());
+        Assertions.assertEquals(410, errorCatalog.retrieve("not-found").getStatus());
+        Assertions.assertEquals(2, published.size());
+        Assertions.assertSame(errorCatalog, published.get(1));
+    }
+
+    @Test
+    @DisplayName("Reject an invalid catalog and keep the current one")
+    void publish_invalidCatalog() {
+        var current = errorCatalogHolder.current();
+
+        var exception = Assertions.assertThrows(IllegalArgumentException.class, () -> errorCatalogHolder.publish(Map.of(
+                "no-code", ErrorMessage.builder().status(400).build(),
+                "no-status", ErrorMessage.builder().code("no-status").build())));
+
+        Assertions.assertTrue(exception.getMessage().contains("no-code has no code"));
+        Assertions.assertTrue(exception.getMessage().contains("no-status has status 0"));
+        Assertions.assertSame(current, errorCatalogHolder.current());
+    }
+}
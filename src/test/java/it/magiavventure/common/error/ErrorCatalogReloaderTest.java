@@ -0,0 +1,134 @@
+package it.magiavventure.common.error;
+
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties;
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+@DisplayName("Error catalog reloader tests")
+class ErrorCatalogReloaderTest {
+
+    @TempDir
+    private Path directory;
+    private ErrorsProperties errorsProperties;
+    private ErrorCatalogHolder errorCatalogHolder;
+
+    @BeforeEach
+    void setUp() {
+        errorsProperties = new ErrorsProperties();
+        errorsProperties.setErrorsMessages(Map.of(
+                "not-found", ErrorMessage.builder().code("not-found").status(404).message("non trovato").build(),
+                "bad-request", ErrorMessage.builder().code("bad-request").status(400).build()));
+        errorCatalogHolder = new ErrorCatalogHolder(errorsProperties.retrieveErrorCatalog());
+    }
+
+    @Test
+    @DisplayName("Override the application errors with the ones of a properties file")
+    void reload_fromPropertiesFile() throws IOException {
+        var file = Files.writeString(directory.resolve("errors.properties"), """
+                magiavventure.lib.common.errors.errors-messages.not-found.code=not-found
+                magiavventure.lib.common.errors.errors-messages.not-found.status=404
+                magiavventure.lib.common.errors.errors-messages.not-found.message=sparito
+                magiavventure.lib.common.errors.service-errors-messages.user-exists.code=user-exists
+                magiavventure.lib.common.errors.service-errors-messages.user-exists.status=409
+                """);
+        errorsProperties.getReload().setFile(file);
+
+        var errorCatalog = new ErrorCatalogReloader(errorCatalogHolder, errorsProperties).reload();
+
+        Assertions.assertSame(errorCatalog, errorCatalogHolder.current());
+        Assertions.assertEquals("sparito", errorCatalog.retrieve("not-found").getMessage());
+        Assertions.assertEquals(409, errorCatalog.retrieve("user-exists").getStatus());
+        Assertions.assertTrue(errorCatalog.contains("bad-request"));
+    }
+
+    @Test
+    @DisplayName("Override the application errors with the ones of a YAML file")
+    void reload_fromYamlFile() throws IOException {
+        var file = Files.writeString(directory.resolve("errors.yml"), """
+                magiavventure:
+                  lib:
+                    common:
+                      errors:
+                        errors-messages:
+                          not-found:
+                            code: not-found
+                            status: 404
+                            expected: true
+                """);
+        errorsProperties.getReload().setFile(file);
+
+        var errorCatalog = new ErrorCatalogReloader(errorCatalogHolder, errorsProperties).reload();
+
+        Assertions.assertTrue(errorCatalog.expectedKeys().contains("not-found"));
+    }
+
+    @Test
+    @DisplayName("Keep the current catalog when the file is not valid")
+    void keepCurrentCatalog_whenFileNotValid() throws IOException {
+        var file = Files.writeString(directory.resolve("errors.properties"),
+                "magiavventure.lib.common.errors.errors-messages.not-found.status=999\n");
+        errorsProperties.getReload().setFile(file);
+        errorsProperties.getReload().setWatch(false);
+        var current = errorCatalogHolder.current();
+
+        new ErrorCatalogReloader(errorCatalogHolder, errorsProperties).afterPropertiesSet();
+
+        Assertions.assertSame(current, errorCatalogHolder.current());
+    }
+
+    @Test
+    @DisplayName("Reload the catalog when the watched file changes")
+    void reload_whenWatchedFileChanges() throws IOException, InterruptedException {
+        var file = directory.resolve("errors.properties");
+        errorsProperties.getReload().setFile(file);
+        var errorCatalogReloader = new ErrorCatalogReloader(errorCatalogHolder, errorsProperties);
+        errorCatalogReloader.afterPropertiesSet();
+        errorCatalogReloader.start();
+        try {
+            Files.writeString(file, """
+                    magiavventure.lib.common.errors.errors-messages.not-found.code=not-found
+                    magiavventure.lib.common.errors.errors-messages.not-found.status=410
+                    """);
+
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (errorCatalogHolder.current().retrieve("not-found").getStatus() != 410
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+
+            Assertions.assertEquals(410, errorCatalogHolder.current().retrieve("not-found").getStatus());
+        } finally {
+            errorCatalogReloader.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Read the file again when started after a stop, as after a checkpoint restore")
+    void reload_whenRestarted() throws IOException {
+        var file = directory.resolve("errors.properties");
+        errorsProperties.getReload().setFile(file);
+        errorsProperties.getReload().setWatch(false);
+        var errorCatalogReloader = new ErrorCatalogReloader(errorCatalogHolder, errorsProperties);
+        errorCatalogReloader.afterPropertiesSet();
+        errorCatalogReloader.start();
+        errorCatalogReloader.stop();
+        Files.writeString(file, """
+                magiavventure.lib.common.errors.errors-messages.not-found.code=not-found
+                magiavventure.lib.common.errors.errors-messages.not-found.status=410
+                """);
+
+        errorCatalogReloader.start();
+
+        Assertions.assertTrue(errorCatalogReloader.isRunning());
+        Assertions.assertEquals(410, errorCatalogHolder.current().retrieve("not-found").getStatus());
+    }
+}
@@ -0,0 +1,91 @@
+package it.magiavventure.common.error;
+
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties;
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+@DisplayName("Error catalog tests")
+class ErrorCatalogTest {
+
+    @Test
+    @DisplayName("Merge errors branches with service errors overriding the default ones")
+    void mergeErrorsBranches_ok() {
+        var errorsProperties = new ErrorsProperties();
+        errorsProperties.setErrorsMessages(Map.of(
+                "unknown-error", errorMessage("unknown-error", 500),
+                "not-found", errorMessage("not-found", 404)));
+        errorsProperties.setJwtErrorsMessages(Map.of("jwt-expired", errorMessage("jwt-expired", 401)));
+        errorsProperties.setServiceErrorsMessages(Map.of("not-found", errorMessage("user-not-found", 404)));
+
+        ErrorCatalog errorCatalog = errorsProperties.retrieveErrorCatalog();
+
+        Assertions.assertEquals(3, errorCatalog.asMap().size());
+        Assertions.assertEquals("user-not-found", errorCatalog.retrieve("not-found").getCode());
+        Assertions.assertEquals("jwt-expired", errorCatalog.retrieve("jwt-expired").getCode());
+        Assertions.assertSame(errorCatalog, errorsProperties.retrieveErrorCatalog());
+        Assertions.assertThrows(UnsupportedOperationException.class,
+                () -> errorCatalog.asMap().put("other", errorMessage("other", 400)));
+    }
+
+    @Test
+    @DisplayName("Retrieve unknown-error for missing or null keys")
+    void retrieveUnknownError_forMissingKey_ok() {
+        var unknownError = errorMessage("unknown-error", 500);
+        ErrorCatalog errorCatalog = ErrorCatalog.of(Map.of("unknown-error", unknownError));
+
+        Assertions.assertSame(unknownError, errorCatalog.retrieve("error-not-exists"));
+        Assertions.assertSame(unknownError, errorCatalog.retrieve(null));
+        Assertions.assertFalse(errorCatalog.contains("error-not-exists"));
+        Assertions.assertFalse(errorCatalog.contains(null));
+    }
+
+    @Test
+    @DisplayName("Find the key of an error by its code")
+    void keyOf_code_ok() {
+        ErrorCatalog errorCatalog = ErrorCatalog.of(Map.of(
+                "user-not-found", errorMessage("not-found", 404),
+                "missing-user", errorMessage("not-found", 404),
+                "bad-request", errorMessage("bad-request", 400)));
+
+        Assertions.assertEquals("bad-request", errorCatalog.keyOf("bad-request"));
+        Assertions.assertEquals("missing-user", errorCatalog.keyOf("not-found"));
+        Assertions.assertNull(errorCatalog.keyOf("other"));
+        Assertions.assertNull(errorCatalog.keyOf(null));
+    }
+
+    @Test
+    @DisplayName("Retrieve default unknown-error when it is not configured")
+    void retrieveDefaultUnknownError_whenNotConfigured_ok() {
+        ErrorCatalog errorCatalog = ErrorCatalog.of(Map.of());
+
+        ErrorMessage errorMessage = errorCatalog.retrieve("error-not-exists");
+
+        Assertions.assertEquals("unknown-error", errorMessage.getCode());
+        Assertions.assertEquals(500, errorMessage.getStatus());
+    }
+
+    @Test
+    @DisplayName("Rebuild the catalog when the errors branches change")
+    void rebuildCatalog_whenBranchesChange_ok() {
+        var errorsProperties = new ErrorsProperties();
+        ErrorCatalog emptyCatalog = errorsProperties.retrieveErrorCatalog();
+
+        errorsProperties.setErrorsMessages(Map.of("not-found", errorMessage("not-found", 404)));
+
+        Assertions.assertNotSame(emptyCatalog, errorsProperties.retrieveErrorCatalog());
+        Assertions.assertTrue(errorsProperties.retrieveErrorCatalog().contains("not-found"));
+    }
+
+    private ErrorMessage errorMessage(String code, int status) {
+        return ErrorMessage
+                .builder()
+                .code(code)
+                .status(status)
+                .message("message")
+                .build();
+    }
+}
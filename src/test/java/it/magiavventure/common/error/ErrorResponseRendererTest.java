@@ -0,0 +1,131 @@
+package it.magiavventure.common.error;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties;
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
+import it.magiavventure.common.error.handler.ErrorResponseRenderer;
+import it.magiavventure.common.error.handler.RenderedHttpErrorMessageConverter;
+import it.magiavventure.common.mapper.HttpErrorMapper;
+import it.magiavventure.common.model.HttpError;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+@DisplayName("Error response renderer tests")
+class ErrorResponseRendererTest {
+
+    private ErrorCatalogHolder errorCatalogHolder;
+    private ErrorResponseRenderer errorResponseRenderer;
+
+    @BeforeEach
+    void setUp() {
+        var errorsProperties = new ErrorsProperties();
+        errorsProperties.setErrorsMessages(Map.of(
+                "not-found", ErrorMessage.builder().code("not-found").status(404).message("non trovato").build(),
+                "user-exists", ErrorMessage.builder().code("user-exists").status(403)
+                        .message("il nome '%s' esiste").build()));
+        errorCatalogHolder = new ErrorCatalogHolder(errorsProperties.retrieveErrorCatalog());
+        errorResponseRenderer = new ErrorResponseRenderer(errorCatalogHolder,
+                Mappers.getMapper(HttpErrorMapper.class), new ObjectMapper());
+    }
+
+    @Test
+    @DisplayName("Return a new mutable error for every render of the entries without arguments")
+    void renderNewError_withoutArgs() {
+        var errorMessage = errorCatalogHolder.current().retrieve("not-found");
+
+        var httpError = errorResponseRenderer.render(errorMessage);
+        httpError.setFields(List.of("id"));
+
+        Assertions.assertNotSame(httpError, errorResponseRenderer.render(errorMessage));
+        Assertions.assertNull(errorResponseRenderer.render(errorMessage).getFields());
+        Assertions.assertEquals("non trovato", httpError.getMessage());
+    }
+
+    @Test
+    @DisplayName("Create a new error with the formatted message for the entries with arguments")
+    void createError_withArgs() {
+        var errorMessage = errorCatalogHolder.current().retrieve("user-exists");
+
+        var httpError = errorResponseRenderer.render(errorMessage, "prova");
+
+        Assertions.assertEquals("il nome 'prova' esiste", httpError.getMessage());
+        Assertions.assertEquals(403, httpError.getStatus());
+    }
+
+    @Test
+    @DisplayName("Serialize a downstream error matching the catalog entry with the rendered bytes")
+    void serializeRenderedBody_forMatchingDownstreamError() throws IOException {
+        var errorMessage = errorCatalogHolder.current().retrieve("not-found");
+
+        var httpError = errorResponseRenderer.render(new DownstreamException("not-found", errorMessage, 404, null));
+
+        Assertions.assertSame(errorResponseRenderer.serialize(errorResponseRenderer.render(errorMessage)),
+                errorResponseRenderer.serialize(httpError));
+    }
+
+    @Test
+    @DisplayName("Render a downstream error with the remote status and fields")
+    void renderDownstreamError_withRemoteStatusAndFields() {
+        var errorMessage = errorCatalogHolder.current().retrieve("not-found");
+
+        var httpError = errorResponseRenderer.render(
+                new DownstreamException("not-found", errorMessage, 410, List.of("id")));
+
+        Assertions.assertEquals(410, httpError.getStatus());
+        Assertions.assertEquals(List.of("id"), httpError.getFields());
+        Assertions.assertEquals("non trovato", httpError.getMessage());
+    }
+
+    @Test
+    @DisplayName("Render the errors again when the catalog changes")
+    void renderAgain_whenCatalogChanges() {
+        var before = errorResponseRenderer.render(errorCatalogHolder.current().retrieve("not-found"));
+        errorCatalogHolder.publish(Map.of(
+                "not-found", ErrorMessage.builder().code("not-found").status(404).message("sparito").build()));
+
+        var after = errorResponseRenderer.render(errorCatalogHolder.current().retrieve("not-found"));
+
+        Assertions.assertNotSame(before, after);
+        Assertions.assertEquals("sparito", after.getMessage());
+    }
+
+    @Test
+    @DisplayName("Write the pre-serialized body with the message converter")
+    void writeRenderedBody_withMessageConverter() throws IOException {
+        var httpError = errorResponseRenderer.render(errorCatalogHolder.current().retrieve("not-found"));
+        var converter = new RenderedHttpErrorMessageConverter(() -> errorResponseRenderer);
+        var outputMessage = new MockHttpOutputMessage();
+
+        Assertions.assertTrue(converter.canWrite(HttpError.class, MediaType.APPLICATION_JSON));
+        Assertions.assertFalse(converter.canRead(HttpError.class, MediaType.APPLICATION_JSON));
+        converter.write(httpError, MediaType.APPLICATION_JSON, outputMessage);
+
+        Assertions.assertEquals(new ObjectMapper().writeValueAsString(Mappers.getMapper(HttpErrorMapper.class)
+                        .map(errorCatalogHolder.current().retrieve("not-found"))),
+                outputMessage.getBodyAsString());
+        Assertions.assertEquals(outputMessage.getBodyAsBytes().length,
+                outputMessage.getHeaders().getContentLength());
+    }
+
+    @Test
+    @DisplayName("Write an error changed after rendering with Jackson")
+    void writeChangedError_withMessageConverter() throws IOException {
+        var httpError = errorResponseRenderer.render(errorCatalogHolder.current().retrieve("not-found"));
+        httpError.setFields(List.of("id"));
+        var converter = new RenderedHttpErrorMessageConverter(() -> errorResponseRenderer);
+        var outputMessage = new MockHttpOutputMessage();
+
+        converter.write(httpError, MediaType.APPLICATION_JSON, outputMessage);
+
+        Assertions.assertEquals(new ObjectMapper().writeValueAsString(httpError), outputMessage.getBodyAsString());
+    }
+}
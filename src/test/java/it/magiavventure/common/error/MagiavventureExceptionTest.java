@@ -0,0 +1,80 @@
+package it.magiavventure.common.error;
+
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+@DisplayName("Magiavventure exception tests")
+class MagiavventureExceptionTest {
+
+    private final ErrorCatalogHolder errorCatalogHolder = new ErrorCatalogHolder(ErrorCatalog.of(Map.of(
+            "not-found", ErrorMessage.builder().code("not-found").status(404).expected(true).build(),
+            "unknown-error", ErrorMessage.builder().code("unknown-error").status(500).build())));
+
+    @Test
+    @DisplayName("Create exception with stack trace")
+    void createException_withStackTrace() {
+        var exception = MagiavventureException.of("not-found");
+
+        Assertions.assertEquals("not-found", exception.getError().getKey());
+        Assertions.assertTrue(exception.getStackTrace().length > 0);
+    }
+
+    @Test
+    @DisplayName("Create exception with stack trace for unexpected keys of the catalog")
+    void createException_withStackTrace_forUnexpectedKey() {
+        var exception = errorCatalogHolder.exception("unknown-error");
+
+        Assertions.assertEquals("unknown-error", exception.getError().getKey());
+        Assertions.assertTrue(exception.getStackTrace().length > 0);
+    }
+
+    @Test
+    @DisplayName("Create a new stackless exception for every expected key of the catalog")
+    void createStacklessException_forExpectedKey() {
+        var exception = errorCatalogHolder.exception("not-found");
+
+        Assertions.assertEquals("not-found", exception.getError().getKey());
+        Assertions.assertEquals(0, exception.getStackTrace().length);
+        Assertions.assertEquals(0, exception.getError().getArgs().length);
+        Assertions.assertNotSame(exception, errorCatalogHolder.exception("not-found"));
+    }
+
+    @Test
+    @DisplayName("Keep the error of a stackless exception mutable")
+    void changeError_ofStacklessException() {
+        var exception = errorCatalogHolder.exception("not-found", "user");
+
+        exception.getError().setArgs(new Object[]{"group"});
+
+        Assertions.assertArrayEquals(new Object[]{"group"}, exception.getError().getArgs());
+        Assertions.assertArrayEquals(new Object[]{"user"},
+                errorCatalogHolder.exception("not-found", "user").getError().getArgs());
+    }
+
+    @Test
+    @DisplayName("Follow the expected keys of the catalog published by the holder only")
+    void followExpectedKeys_ofOwnCatalog() {
+        var otherHolder = new ErrorCatalogHolder(ErrorCatalog.of(Map.of()));
+
+        errorCatalogHolder.publish(Map.of(
+                "not-found", ErrorMessage.builder().code("not-found").status(404).build()));
+
+        Assertions.assertTrue(errorCatalogHolder.exception("not-found").getStackTrace().length > 0);
+        Assertions.assertTrue(otherHolder.exception("not-found").getStackTrace().length > 0);
+        Assertions.assertEquals(List.of(), List.copyOf(otherHolder.current().expectedKeys()));
+    }
+
+    @Test
+    @DisplayName("Create exception with stack trace for null key")
+    void createException_withStackTrace_forNullKey() {
+        var exception = errorCatalogHolder.exception(null);
+
+        Assertions.assertFalse(errorCatalogHolder.current().isExpected(null));
+        Assertions.assertTrue(exception.getStackTrace().length > 0);
+    }
+}
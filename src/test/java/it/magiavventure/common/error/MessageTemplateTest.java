@@ -0,0 +1,51 @@
+package it.magiavventure.common.error;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.MissingFormatArgumentException;
+
+@DisplayName("Message template tests")
+class MessageTemplateTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "il nome '%s' non è disponibile",
+            "%s e %s",
+            "%2$s prima di %1$s",
+            "100%% di %s%n",
+            "senza argomenti",
+            "%s",
+            "%2$d elementi di %1$s",
+            "%-10s|",
+            "%S maiuscolo"})
+    @DisplayName("Format the same message as String.format")
+    void format_sameAsStringFormat(String pattern) {
+        Object[] args = {"prova", 42};
+
+        Assertions.assertEquals(String.format(pattern, args), MessageTemplate.parse(pattern).format(args));
+    }
+
+    @Test
+    @DisplayName("Format null arguments as String.format")
+    void format_nullArgument() {
+        Assertions.assertEquals("valore null", MessageTemplate.parse("valore %s").format((Object) null));
+    }
+
+    @Test
+    @DisplayName("Fail as String.format when arguments are missing")
+    void format_missingArguments() {
+        var messageTemplate = MessageTemplate.parse("%s e %s");
+
+        Assertions.assertThrows(MissingFormatArgumentException.class, () -> messageTemplate.format("prova"));
+    }
+
+    @Test
+    @DisplayName("Format a null pattern as null")
+    void format_nullPattern() {
+        Assertions.assertNull(MessageTemplate.parse(null).format("prova"));
+    }
+}
@@ -0,0 +1,143 @@
+package it.magiavventure.common.error;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.magiavventure.common.configuration.CommonProperties;
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties;
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
+import it.magiavventure.common.error.handler.ErrorResponseRenderer;
+import it.magiavventure.common.error.handler.ExceptionLogSuppressor;
+import it.magiavventure.common.error.handler.ReactiveExceptionHandler;
+import it.magiavventure.common.mapper.HttpErrorMapper;
+import it.magiavventure.common.metrics.CommonMetrics;
+import it.magiavventure.common.metrics.MicrometerCommonMetrics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebInputException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+@DisplayName("Reactive exception handler tests")
+class ReactiveExceptionHandlerTest {
+
+    private final ErrorCatalogHolder errorCatalogHolder = new ErrorCatalogHolder(
+            commonProperties().getErrors().retrieveErrorCatalog());
+    private final HttpErrorMapper httpErrorMapper = Mappers.getMapper(HttpErrorMapper.class);
+    private final ReactiveExceptionHandler reactiveExceptionHandler = new ReactiveExceptionHandler(errorCatalogHolder,
+            httpErrorMapper, CommonMetrics.NOOP,
+            new ErrorResponseRenderer(errorCatalogHolder, httpErrorMapper, new ObjectMapper()),
+            new ExceptionLogSuppressor(Duration.ZERO, 5, 16));
+
+    @Test
+    @DisplayName("Write the catalog error of a magiavventure exception with its arguments")
+    void handleMagiavventureException() {
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/users/prova"));
+
+        reactiveExceptionHandler.handle(exchange, MagiavventureException.of("user-exists", "prova")).block();
+
+        Assertions.assertEquals(HttpStatus.FORBIDDEN, exchange.getResponse().getStatusCode());
+        Assertions.assertEquals(MediaType.APPLICATION_JSON, exchange.getResponse().getHeaders().getContentType());
+        Assertions.assertEquals("{\"code\":\"user-exists\",\"status\":403,\"message\":\"il nome 'prova' esiste\"}",
+                exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    @DisplayName("Write the downstream error with the remote status and fields")
+    void handleDownstreamException() {
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/users/prova"));
+        var errorMessage = errorCatalogHolder.current().retrieve("user-exists");
+
+        reactiveExceptionHandler.handle(exchange,
+                new DownstreamException("user-exists", errorMessage, 409, List.of("name"))).block();
+
+        Assertions.assertEquals(HttpStatus.CONFLICT, exchange.getResponse().getStatusCode());
+        Assertions.assertTrue(exchange.getResponse().getBodyAsString().block().contains("\"fields\":[\"name\"]"));
+    }
+
+    @Test
+    @DisplayName("Count the downstream error under the remote status")
+    void countDownstreamError_withRemoteStatus() {
+        var meterRegistry = new SimpleMeterRegistry();
+        var handler = new ReactiveExceptionHandler(errorCatalogHolder, httpErrorMapper,
+                new MicrometerCommonMetrics(meterRegistry, errorCatalogHolder.current(), logRecord -> {
+                }),
+                new ErrorResponseRenderer(errorCatalogHolder, httpErrorMapper, new ObjectMapper()),
+                new ExceptionLogSuppressor(Duration.ZERO, 5, 16));
+        var errorMessage = errorCatalogHolder.current().retrieve("not-found");
+
+        handler.handle(MockServerWebExchange.from(MockServerHttpRequest.get("/users/prova")),
+                new DownstreamException("not-found", errorMessage, 410, null)).block();
+
+        Assertions.assertEquals(1, meterRegistry.get(MicrometerCommonMetrics.ERRORS)
+                .tags("code", errorMessage.getCode(), "status", "410").counter().count());
+        Assertions.assertEquals(0, meterRegistry.get(MicrometerCommonMetrics.ERRORS)
+                .tags("code", errorMessage.getCode(), "status", String.valueOf(errorMessage.getStatus()))
+                .counter().count());
+    }
+
+    @Test
+    @DisplayName("Write the validation error with the invalid fields")
+    void handleWebExchangeBindException() throws NoSuchMethodException {
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/users"));
+        var bindingResult = new BeanPropertyBindingResult(new Object(), "user");
+        bindingResult.addError(new FieldError("user", "name", "must not be blank"));
+        var methodParameter = new MethodParameter(Object.class.getMethod("equals", Object.class), 0);
+
+        reactiveExceptionHandler.handle(exchange, new WebExchangeBindException(methodParameter, bindingResult)).block();
+
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, exchange.getResponse().getStatusCode());
+        Assertions.assertEquals("{\"code\":\"validation-error\",\"status\":400,\"fields\":[\"name\"]}",
+                exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    @DisplayName("Map input, not found and unknown exceptions to the catalog errors")
+    void mapFrameworkExceptions() {
+        Assertions.assertEquals("bad-request",
+                reactiveExceptionHandler.map(new ServerWebInputException("bad body")).getCode());
+        Assertions.assertEquals("not-found",
+                reactiveExceptionHandler.map(new ResponseStatusException(HttpStatus.NOT_FOUND)).getCode());
+        Assertions.assertEquals("service-unavailable",
+                reactiveExceptionHandler.map(new IllegalStateException("ko")).getCode());
+    }
+
+    @Test
+    @DisplayName("Propagate the exception when the response is already committed")
+    void propagateException_whenResponseCommitted() {
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/users"));
+        exchange.getResponse().setComplete().block();
+        var exception = new IllegalStateException("ko");
+
+        var thrown = Assertions.assertThrows(IllegalStateException.class,
+                () -> reactiveExceptionHandler.handle(exchange, exception).block());
+
+        Assertions.assertSame(exception, thrown);
+    }
+
+    private static CommonProperties commonProperties() {
+        var errorsProperties = new ErrorsProperties();
+        errorsProperties.setErrorsMessages(Map.of(
+                "user-exists", ErrorMessage.builder().code("user-exists").status(403)
+                        .message("il nome '%s' esiste").build(),
+                "validation-error", ErrorMessage.builder().code("validation-error").status(400).build(),
+                "bad-request", ErrorMessage.builder().code("bad-request").status(400).build(),
+                "not-found", ErrorMessage.builder().code("not-found").status(404).build(),
+                "service-unavailable", ErrorMessage.builder().code("service-unavailable").status(503).build()));
+        var commonProperties = new CommonProperties();
+        commonProperties.setErrors(errorsProperties);
+        return commonProperties;
+    }
+}
@@ -0,0 +1,120 @@
+package it.magiavventure.common.error.handler;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+@DisplayName("Exception log suppressor tests")
+class ExceptionLogSuppressorTest {
+
+    private static final ErrorMessage ERROR = ErrorMessage.builder().code("service-unavailable").status(503).build();
+
+    private final Logger logger = (Logger) LoggerFactory.getLogger(ExceptionLogSuppressorTest.class);
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final ExceptionLogSuppressor exceptionLogSuppressor = new ExceptionLogSuppressor(Duration.ofSeconds(10),
+            2, 2, nanoTime::get);
+
+    @BeforeEach
+    void setUp() {
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    void tearDown() {
+        logger.detachAppender(appender);
+    }
+
+    @Test
+    @DisplayName("Count the repeats of a fingerprint within the window and report them once")
+    void countRepeats_andReportThem() {
+        for (int i = 0; i < 3; i++) exceptionLogSuppressor.log(logger, ERROR, failure("boom " + i));
+
+        Assertions.assertEquals(1, appender.list.size());
+        Assertions.assertEquals("boom 0", appender.list.get(0).getFormattedMessage());
+        Assertions.assertNotNull(appender.list.get(0).getThrowableProxy());
+
+        nanoTime.addAndGet(Duration.ofSeconds(10).toNanos());
+        exceptionLogSuppressor.flush();
+
+        Assertions.assertEquals(2, appender.list.size());
+        Assertions.assertTrue(appender.list.get(1).getFormattedMessage()
+                .startsWith("2 more occurrences of java.lang.IllegalStateException at "));
+    }
+
+    @Test
+    @DisplayName("Log again with a summary when the window of a fingerprint has ended")
+    void logAgain_whenWindowEnded() {
+        logFailure("first");
+        logFailure("second");
+        nanoTime.addAndGet(Duration.ofSeconds(11).toNanos());
+        logFailure("third");
+
+        Assertions.assertEquals(3, appender.list.size());
+        Assertions.assertTrue(appender.list.get(1).getFormattedMessage().startsWith("1 more occurrences of"));
+        Assertions.assertEquals("third", appender.list.get(2).getFormattedMessage());
+    }
+
+    @Test
+    @DisplayName("Log different fingerprints and use the level of the catalog error")
+    void logDifferentFingerprints_withCatalogLevel() {
+        var warnError = ErrorMessage.builder().code("bad-request").status(400).logLevel(Level.WARN).build();
+
+        exceptionLogSuppressor.log(logger, warnError, failure("state"));
+        exceptionLogSuppressor.log(logger, warnError, new IllegalArgumentException("argument"));
+
+        Assertions.assertEquals(2, appender.list.size());
+        Assertions.assertEquals(ch.qos.logback.classic.Level.WARN, appender.list.get(0).getLevel());
+    }
+
+    @Test
+    @DisplayName("Log every exception once the fingerprints are full or without window")
+    void logEveryException_whenFullOrWithoutWindow() {
+        exceptionLogSuppressor.log(logger, ERROR, new IllegalArgumentException("a"));
+        exceptionLogSuppressor.log(logger, ERROR, new UnsupportedOperationException("b"));
+        exceptionLogSuppressor.log(logger, ERROR, failure("c"));
+        exceptionLogSuppressor.log(logger, ERROR, failure("d"));
+        var unsuppressed = new ExceptionLogSuppressor(Duration.ZERO, 5, 2);
+        unsuppressed.log(logger, ERROR, failure("e"));
+        unsuppressed.log(logger, ERROR, failure("f"));
+
+        Assertions.assertEquals(6, appender.list.size());
+    }
+
+    @Test
+    @DisplayName("Report the open windows on stop and start the scheduler again")
+    void reportOpenWindows_onStop() {
+        var suppressor = new ExceptionLogSuppressor(Duration.ofSeconds(10), 2, 2);
+        suppressor.start();
+        for (int i = 0; i < 2; i++) suppressor.log(logger, ERROR, failure("boom " + i));
+
+        suppressor.stop();
+
+        Assertions.assertFalse(suppressor.isRunning());
+        Assertions.assertEquals(2, appender.list.size());
+        Assertions.assertTrue(appender.list.get(1).getFormattedMessage().startsWith("1 more occurrences of"));
+        suppressor.start();
+        Assertions.assertTrue(suppressor.isRunning());
+        suppressor.stop();
+    }
+
+    private void logFailure(String message) {
+        exceptionLogSuppressor.log(logger, ERROR, failure(message));
+    }
+
+    private static IllegalStateException failure(String message) {
+        return new IllegalStateException(message);
+    }
+}
@@ -0,0 +1,119 @@
+package it.magiavventure.common.filter;
+
+import it.magiavventure.common.logging.HttpLogRecord;
+import it.magiavventure.common.logging.LoggingPolicy;
+import it.magiavventure.common.metrics.CommonMetrics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+@DisplayName("Reactive request and response logging filter tests")
+class ReactiveRequestResponseLoggingFilterTest {
+
+    private final List<HttpLogRecord> logRecords = new ArrayList<>();
+    private final List<String> logTransactionIds = new ArrayList<>();
+
+    @Test
+    @DisplayName("Log the request and response bodies as they flow through, up to the max body bytes")
+    void logBodies_upToMaxBodyBytes() {
+        var filter = filter(LoggingPolicy.builder().maxBodyBytes(8).build());
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest
+                .post("/test")
+                .body(Flux.just("{\"test\":", "\"prova\"}").map(this::dataBuffer)));
+        exchange.getAttributes().put(ReactiveTransactionIdFilter.TRANSACTION_ID_ATTRIBUTE, "reactive-id");
+        WebFilterChain chain = filterExchange -> DataBufferUtils
+                .join(filterExchange.getRequest().getBody())
+                .flatMap(requestBody -> {
+                    filterExchange.getResponse().setStatusCode(HttpStatus.CREATED);
+                    return filterExchange.getResponse().writeWith(Flux.just(dataBuffer("{\"id\":"), dataBuffer("1}")));
+                });
+
+        filter.filter(exchange, chain).block();
+
+        Assertions.assertEquals("{\"id\":1}", exchange.getResponse().getBodyAsString().block());
+        Assertions.assertEquals(2, logRecords.size());
+        HttpLogRecord requestRecord = logRecords.get(0);
+        Assertions.assertEquals(HttpLogRecord.Type.REQUEST, requestRecord.getType());
+        Assertions.assertEquals("POST", requestRecord.getMethod());
+        Assertions.assertEquals("{\"test\":", new String(requestRecord.getBody(), StandardCharsets.UTF_8));
+        Assertions.assertEquals(16, requestRecord.getBodySize());
+        HttpLogRecord responseRecord = logRecords.get(1);
+        Assertions.assertEquals(201, responseRecord.getStatus());
+        Assertions.assertEquals("{\"id\":1}", new String(responseRecord.getBody(), StandardCharsets.UTF_8));
+        Assertions.assertEquals(List.of("reactive-id", "reactive-id"), logTransactionIds);
+        Assertions.assertNull(MDC.get("transactionId"));
+    }
+
+    @Test
+    @DisplayName("Skip the response body capture for streaming content types")
+    void skipResponseBodyCapture_forStreamingContentType() {
+        var filter = filter(LoggingPolicy.DEFAULT);
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/events"));
+        WebFilterChain chain = filterExchange -> {
+            filterExchange.getResponse().getHeaders().setContentType(MediaType.TEXT_EVENT_STREAM);
+            return filterExchange.getResponse().writeAndFlushWith(
+                    Flux.just(Mono.just(dataBuffer("data: prova\n\n"))));
+        };
+
+        filter.filter(exchange, chain).block();
+
+        Assertions.assertEquals("data: prova\n\n", exchange.getResponse().getBodyAsString().block());
+        Assertions.assertEquals(0, logRecords.get(1).getBody().length);
+        Assertions.assertEquals(0, logRecords.get(1).getBodySize());
+    }
+
+    @Test
+    @DisplayName("Log the response of a failed chain when the error response is committed")
+    void logResponse_ofFailedChain_onCommit() {
+        var filter = filter(LoggingPolicy.DEFAULT);
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/test"));
+        WebFilterChain chain = filterExchange -> Mono.error(new IllegalStateException("ko"));
+
+        Assertions.assertThrows(IllegalStateException.class, () -> filter.filter(exchange, chain).block());
+        Assertions.assertEquals(1, logRecords.size());
+        exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        exchange.getResponse().setComplete().block();
+
+        Assertions.assertEquals(2, logRecords.size());
+        Assertions.assertEquals(503, logRecords.get(1).getStatus());
+    }
+
+    @Test
+    @DisplayName("Skip the logs of the routes with sample rate zero")
+    void skipLogs_forRouteWithSampleRateZero() {
+        var filter = filter(LoggingPolicy
+                .builder()
+                .route(LoggingPolicy.Route.builder().pattern("/actuator/**").sampleRate(0.0).build())
+                .build());
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/actuator/health"));
+
+        filter.filter(exchange, filterExchange -> filterExchange.getResponse().setComplete()).block();
+
+        Assertions.assertTrue(logRecords.isEmpty());
+    }
+
+    private ReactiveRequestResponseLoggingFilter filter(LoggingPolicy loggingPolicy) {
+        return new ReactiveRequestResponseLoggingFilter(logRecord -> {
+            logRecords.add(logRecord);
+            logTransactionIds.add(MDC.get("transactionId"));
+        }, loggingPolicy, CommonMetrics.NOOP);
+    }
+
+    private org.springframework.core.io.buffer.DataBuffer dataBuffer(String value) {
+        return DefaultDataBufferFactory.sharedInstance.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
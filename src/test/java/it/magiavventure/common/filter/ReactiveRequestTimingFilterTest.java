@@ -0,0 +1,51 @@
+package it.magiavventure.common.filter;
+
+import it.magiavventure.common.logging.LoggingPolicy;
+import it.magiavventure.common.timing.RequestTiming;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+
+@DisplayName("Reactive request timing filter tests")
+class ReactiveRequestTimingFilterTest {
+
+    @Test
+    @DisplayName("Write the Server-Timing header when the response is committed")
+    void writeServerTimingHeader_onCommit() {
+        var filter = new ReactiveRequestTimingFilter(LoggingPolicy.DEFAULT, true);
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/test"));
+        WebFilterChain chain = chainExchange -> chainExchange.getResponse().setComplete();
+
+        filter.filter(exchange, chain).block();
+
+        Assertions.assertNotNull(exchange.getAttribute(RequestTiming.ATTRIBUTE));
+        Assertions.assertTrue(exchange.getResponse().getHeaders().getFirst(RequestTiming.SERVER_TIMING_HEADER)
+                .contains("app;dur="));
+    }
+
+    @Test
+    @DisplayName("Do nothing without header and slow thresholds")
+    void doNothing_withoutHeaderAndThresholds() {
+        var filter = new ReactiveRequestTimingFilter(LoggingPolicy.DEFAULT, false);
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/test"));
+        WebFilterChain chain = chainExchange -> chainExchange.getResponse().setComplete();
+
+        filter.filter(exchange, chain).block();
+
+        Assertions.assertNull(exchange.getAttribute(RequestTiming.ATTRIBUTE));
+        Assertions.assertNull(exchange.getResponse().getHeaders().getFirst(RequestTiming.SERVER_TIMING_HEADER));
+    }
+
+    @Test
+    @DisplayName("Order the timing filter before the other library filters")
+    void orderTimingFilter_first() {
+        int timingOrder = new ReactiveRequestTimingFilter(LoggingPolicy.DEFAULT, true).getOrder();
+        int transactionIdOrder = new ReactiveTransactionIdFilter().getOrder();
+
+        Assertions.assertTrue(timingOrder < transactionIdOrder);
+        Assertions.assertTrue(transactionIdOrder < new ReactiveRequestResponseLoggingFilter().getOrder());
+    }
+}
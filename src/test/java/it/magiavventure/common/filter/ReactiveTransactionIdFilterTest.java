@@ -0,0 +1,75 @@
+package it.magiavventure.common.filter;
+
+import it.magiavventure.common.transaction.TransactionContext;
+import it.magiavventure.common.transaction.TransactionId;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+@DisplayName("Reactive transaction id filter tests")
+class ReactiveTransactionIdFilterTest {
+
+    private final AtomicReference<String> chainTransactionId = new AtomicReference<>();
+    private final WebFilterChain webFilterChain = exchange -> ReactiveTransactionIdFilter
+            .transactionId()
+            .doOnNext(chainTransactionId::set)
+            .then();
+
+    @Test
+    @DisplayName("Add transactionId from header to Reactor context, exchange attribute and response header")
+    void addTransactionIdFromHeader() {
+        var filter = new ReactiveTransactionIdFilter();
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest
+                .get("/test")
+                .header(TransactionId.TRANSACTION_ID, "incoming-id"));
+
+        filter.filter(exchange, webFilterChain).block();
+
+        Assertions.assertEquals("incoming-id", chainTransactionId.get());
+        Assertions.assertEquals("incoming-id",
+                exchange.getAttribute(ReactiveTransactionIdFilter.TRANSACTION_ID_ATTRIBUTE));
+        Assertions.assertEquals("incoming-id",
+                exchange.getResponse().getHeaders().getFirst(TransactionId.TRANSACTION_ID));
+    }
+
+    @Test
+    @DisplayName("Generate a new transactionId when the header is not valid")
+    void generateTransactionId_whenHeaderNotValid() {
+        var filter = new ReactiveTransactionIdFilter(() -> "generated", 16);
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest
+                .get("/test")
+                .header(TransactionId.TRANSACTION_ID, "not valid"));
+
+        filter.filter(exchange, webFilterChain).block();
+
+        Assertions.assertEquals("generated", chainTransactionId.get());
+        Assertions.assertEquals("generated",
+                exchange.getResponse().getHeaders().getFirst(TransactionId.TRANSACTION_ID));
+    }
+
+    @Test
+    @DisplayName("Write the W3C trace context in the Reactor context and the traceparent in the response")
+    void writeTraceContext() {
+        var filter = new ReactiveTransactionIdFilter();
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest
+                .get("/test")
+                .header(TransactionContext.TRACEPARENT, "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00"));
+        var chainContext = new AtomicReference<TransactionContext>();
+
+        filter.filter(exchange, chain -> Mono.deferContextual(context -> {
+            chainContext.set(context.get(TransactionContext.CONTEXT_KEY));
+            return Mono.empty();
+        })).block();
+
+        Assertions.assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", chainContext.get().getTraceId());
+        Assertions.assertTrue(chainContext.get().getTraceparent().endsWith("-00"));
+        Assertions.assertEquals(chainContext.get().getTraceparent(),
+                exchange.getResponse().getHeaders().getFirst(TransactionContext.TRACEPARENT));
+    }
+}
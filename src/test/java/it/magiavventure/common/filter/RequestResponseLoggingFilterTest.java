@@ -1,20 +1,34 @@
 package it.magiavventure.common.filter;
 
+import it.magiavventure.common.filter.RequestResponseLoggingFilter.CapturingRequestWrapper;
+import it.magiavventure.common.filter.RequestResponseLoggingFilter.CapturingResponseWrapper;
+import it.magiavventure.common.filter.RequestResponseLoggingFilter.CapturingServletInputStream;
+import it.magiavventure.common.logging.BodyMode;
+import it.magiavventure.common.logging.HttpLogRecord;
+import it.magiavventure.common.logging.LoggingPolicy;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletResponse;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.MDC;
 import org.springframework.mock.web.MockFilterChain;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
-import it.magiavventure.common.filter.RequestResponseLoggingFilter.BodyCachingRequestWrapper;
-import it.magiavventure.common.filter.RequestResponseLoggingFilter.CachedBodyServletInputStream;
 import org.springframework.web.util.ContentCachingResponseWrapper;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 @ExtendWith(MockitoExtension.class)
 @DisplayName("Request and response logging filter tests")
@@ -33,14 +47,14 @@ class RequestResponseLoggingFilterTest {
 
         filter.doFilter(servletRequest, servletResponse, filterChain);
 
-        Assertions.assertInstanceOf(BodyCachingRequestWrapper.class, filterChain.getRequest());
-        Assertions.assertInstanceOf(ContentCachingResponseWrapper.class, filterChain.getResponse());
-        var inputStream = ((BodyCachingRequestWrapper)filterChain.getRequest()).getInputStream();
-        inputStream.setReadListener(null);
-        Assertions.assertInstanceOf(CachedBodyServletInputStream.class, inputStream);
+        Assertions.assertInstanceOf(CapturingRequestWrapper.class, filterChain.getRequest());
+        Assertions.assertInstanceOf(CapturingResponseWrapper.class, filterChain.getResponse());
+        var inputStream = filterChain.getRequest().getInputStream();
+        Assertions.assertInstanceOf(CapturingServletInputStream.class, inputStream);
         Assertions.assertFalse(inputStream.isFinished());
         Assertions.assertTrue(inputStream.isReady());
         Assertions.assertArrayEquals(body.getBytes(StandardCharsets.UTF_8), inputStream.readAllBytes());
+        Assertions.assertTrue(inputStream.isFinished());
     }
 
     @Test
@@ -58,20 +72,17 @@ class RequestResponseLoggingFilterTest {
 
         filter.doFilter(servletRequest, cachedResponse, filterChain);
 
-        Assertions.assertInstanceOf(BodyCachingRequestWrapper.class, filterChain.getRequest());
-        Assertions.assertInstanceOf(ContentCachingResponseWrapper.class, filterChain.getResponse());
-        var inputStream = ((BodyCachingRequestWrapper)filterChain.getRequest()).getInputStream();
-        inputStream.setReadListener(null);
-        Assertions.assertInstanceOf(CachedBodyServletInputStream.class, inputStream);
-        Assertions.assertTrue(inputStream.isFinished());
-        Assertions.assertTrue(inputStream.isReady());
+        Assertions.assertInstanceOf(CapturingRequestWrapper.class, filterChain.getRequest());
+        Assertions.assertInstanceOf(CapturingResponseWrapper.class, filterChain.getResponse());
+        var inputStream = filterChain.getRequest().getInputStream();
         Assertions.assertArrayEquals(body.getBytes(StandardCharsets.UTF_8), inputStream.readAllBytes());
     }
 
     @Test
     @DisplayName("Log request and response to console but body is null")
     void logRequestAndResponse_butBodyIsNull_ok() throws ServletException, IOException {
-        var filter = new RequestResponseLoggingFilter();
+        var logRecords = new ArrayList<HttpLogRecord>();
+        var filter = new RequestResponseLoggingFilter(logRecords::add, maxBodyBytes(16));
         var filterChain = new MockFilterChain();
         var servletRequest = new MockHttpServletRequest();
         servletRequest.addHeader("test", "test");
@@ -80,15 +91,268 @@ class RequestResponseLoggingFilterTest {
 
         filter.doFilter(servletRequest, servletResponse, filterChain);
 
-        Assertions.assertInstanceOf(BodyCachingRequestWrapper.class, filterChain.getRequest());
-        Assertions.assertInstanceOf(ContentCachingResponseWrapper.class, filterChain.getResponse());
-        var inputStream = ((BodyCachingRequestWrapper)filterChain.getRequest()).getInputStream();
-        inputStream.setReadListener(null);
-        Assertions.assertInstanceOf(CachedBodyServletInputStream.class, inputStream);
-        Assertions.assertTrue(inputStream.isFinished());
-        Assertions.assertTrue(inputStream.isReady());
-        Assertions.assertNotNull(inputStream.readAllBytes());
+        Assertions.assertEquals(2, logRecords.size());
+        Assertions.assertEquals(0, logRecords.get(0).getBody().length);
+        Assertions.assertEquals(0, logRecords.get(0).getBodySize());
+        Assertions.assertArrayEquals(new String[]{"test", "test"}, logRecords.get(0).getHeaders());
+    }
+
+    @Test
+    @DisplayName("Log the request body read downstream up to the max body bytes")
+    void logRequestBody_readDownstream_upToMaxBodyBytes() throws ServletException, IOException {
+        var logRecords = new ArrayList<HttpLogRecord>();
+        var filter = new RequestResponseLoggingFilter(logRecords::add, maxBodyBytes(8));
+        var body = "{\"test\":\"prova\"}";
+        var servletRequest = new MockHttpServletRequest("POST", "/test");
+        servletRequest.setContent(body.getBytes(StandardCharsets.UTF_8));
+        var readBodies = new ArrayList<byte[]>();
+        FilterChain filterChain = (request, response) -> readBodies.add(request.getInputStream().readAllBytes());
+
+        filter.doFilter(servletRequest, new MockHttpServletResponse(), filterChain);
+
+        Assertions.assertArrayEquals(body.getBytes(StandardCharsets.UTF_8), readBodies.get(0));
+        HttpLogRecord requestRecord = logRecords.get(0);
+        Assertions.assertEquals(HttpLogRecord.Type.REQUEST, requestRecord.getType());
+        Assertions.assertEquals("POST", requestRecord.getMethod());
+        Assertions.assertEquals("/test", requestRecord.getUri());
+        Assertions.assertEquals("{\"test\":", new String(requestRecord.getBody(), StandardCharsets.UTF_8));
+        Assertions.assertEquals(body.length(), requestRecord.getBodySize());
+    }
+
+    @Test
+    @DisplayName("Log the request body read downstream through the reader keeping new lines")
+    void logRequestBody_readThroughReader_keepingNewLines() throws ServletException, IOException {
+        var logRecords = new ArrayList<HttpLogRecord>();
+        var filter = new RequestResponseLoggingFilter(logRecords::add, maxBodyBytes(1024));
+        var body = "{\n\"test\":\"è\"\n}";
+        var servletRequest = new MockHttpServletRequest("POST", "/test");
+        servletRequest.setCharacterEncoding("UTF-8");
+        servletRequest.setContent(body.getBytes(StandardCharsets.UTF_8));
+        var readBodies = new ArrayList<String>();
+        FilterChain filterChain = (request, response) ->
+                readBodies.add(request.getReader().lines().collect(Collectors.joining("\n")));
+
+        filter.doFilter(servletRequest, new MockHttpServletResponse(), filterChain);
+
+        Assertions.assertEquals(List.of(body), readBodies);
+        Assertions.assertEquals(body, new String(logRecords.get(0).getBody(), StandardCharsets.UTF_8));
     }
 
+    @Test
+    @DisplayName("Log the request even when the chain fails")
+    void logRequest_whenChainFails() {
+        var logRecords = new ArrayList<HttpLogRecord>();
+        var filter = new RequestResponseLoggingFilter(logRecords::add, maxBodyBytes(1024));
+        FilterChain filterChain = (request, response) -> {
+            throw new ServletException("errore nei test");
+        };
+
+        Assertions.assertThrows(ServletException.class, () -> filter
+                .doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(), filterChain));
+
+        Assertions.assertEquals(1, logRecords.size());
+        Assertions.assertEquals(HttpLogRecord.Type.REQUEST, logRecords.get(0).getType());
+    }
+
+    @Test
+    @DisplayName("Write the response body through to the client and log its first bytes")
+    void writeResponseBody_throughToClient_andLogFirstBytes() throws ServletException, IOException {
+        var logRecords = new ArrayList<HttpLogRecord>();
+        var filter = new RequestResponseLoggingFilter(logRecords::add, maxBodyBytes(4));
+        var servletResponse = new MockHttpServletResponse();
+        var committedDuringChain = new ArrayList<String>();
+        FilterChain filterChain = (request, response) -> {
+            response.setContentType("application/json");
+            response.getWriter().write("{\"test\":\"prova\"}");
+            response.flushBuffer();
+            committedDuringChain.add(servletResponse.getContentAsString());
+        };
+
+        filter.doFilter(new MockHttpServletRequest(), servletResponse, filterChain);
+
+        Assertions.assertEquals(List.of("{\"test\":\"prova\"}"), committedDuringChain);
+        Assertions.assertEquals("{\"test\":\"prova\"}", servletResponse.getContentAsString());
+        HttpLogRecord responseRecord = logRecords.get(1);
+        Assertions.assertEquals(HttpLogRecord.Type.RESPONSE, responseRecord.getType());
+        Assertions.assertEquals(200, responseRecord.getStatus());
+        Assertions.assertEquals("{\"te", new String(responseRecord.getBody(), StandardCharsets.UTF_8));
+        Assertions.assertEquals(16, responseRecord.getBodySize());
+    }
+
+    @ParameterizedTest
+    @CsvSource({"true", "false"})
+    @DisplayName("Drop the captured bytes and the buffered characters when the response is reset")
+    void dropCapturedBody_whenResponseIsReset(boolean resetAll) throws ServletException, IOException {
+        var logRecords = new ArrayList<HttpLogRecord>();
+        var filter = new RequestResponseLoggingFilter(logRecords::add, maxBodyBytes(1024));
+        var servletResponse = new MockHttpServletResponse();
+        FilterChain filterChain = (request, response) -> {
+            response.getWriter().write("{\"stale\":true}");
+            if (resetAll) {
+                response.reset();
+            } else {
+                response.resetBuffer();
+            }
+            response.getWriter().write("{\"error\":true}");
+        };
+
+        filter.doFilter(new MockHttpServletRequest(), servletResponse, filterChain);
+
+        Assertions.assertEquals("{\"error\":true}", servletResponse.getContentAsString());
+        Assertions.assertEquals("{\"error\":true}", new String(logRecords.get(1).getBody(), StandardCharsets.UTF_8));
+        Assertions.assertEquals(14, logRecords.get(1).getBodySize());
+    }
+
+    @Test
+    @DisplayName("Keep the same writer across a buffer reset and write what follows it")
+    void keepWriter_whenBufferIsReset() throws ServletException, IOException {
+        var logRecords = new ArrayList<HttpLogRecord>();
+        var filter = new RequestResponseLoggingFilter(logRecords::add, maxBodyBytes(1024));
+        var servletResponse = new MockHttpServletResponse();
+        FilterChain filterChain = (request, response) -> {
+            var writer = response.getWriter();
+            writer.write("{\"stale\":true}");
+            response.resetBuffer();
+            Assertions.assertSame(writer, response.getWriter());
+            writer.write("{\"error\":true}");
+        };
+
+        filter.doFilter(new MockHttpServletRequest(), servletResponse, filterChain);
+
+        Assertions.assertEquals("{\"error\":true}", servletResponse.getContentAsString());
+        Assertions.assertEquals("{\"error\":true}", new String(logRecords.get(1).getBody(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Skip the response body capture for streaming content types")
+    void skipResponseBodyCapture_forStreamingContentType() throws ServletException, IOException {
+        var logRecords = new ArrayList<HttpLogRecord>();
+        var filter = new RequestResponseLoggingFilter(logRecords::add, maxBodyBytes(1024));
+        var servletResponse = new MockHttpServletResponse();
+        FilterChain filterChain = (request, response) -> {
+            response.setContentType("text/event-stream");
+            response.getOutputStream().write("data: prova\n\n".getBytes(StandardCharsets.UTF_8));
+        };
+
+        filter.doFilter(new MockHttpServletRequest(), servletResponse, filterChain);
+
+        Assertions.assertEquals("data: prova\n\n", servletResponse.getContentAsString());
+        Assertions.assertEquals(0, logRecords.get(1).getBody().length);
+        Assertions.assertEquals(0, logRecords.get(1).getBodySize());
+    }
+
+    @Test
+    @DisplayName("Reject the writer after the output stream and vice versa")
+    void rejectWriterAfterOutputStream() throws ServletException, IOException {
+        var filter = new RequestResponseLoggingFilter();
+        var filterChain = new MockFilterChain();
+
+        filter.doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(), filterChain);
+
+        var response = filterChain.getResponse();
+        response.getOutputStream();
+        Assertions.assertThrows(IllegalStateException.class, response::getWriter);
+    }
+
+    @Test
+    @DisplayName("Skip the logs of the routes with sample rate zero")
+    void skipLogs_forRouteWithSampleRateZero() throws ServletException, IOException {
+        var logRecords = new ArrayList<HttpLogRecord>();
+        var loggingPolicy = LoggingPolicy
+                .builder()
+                .route(LoggingPolicy.Route.builder().pattern("/actuator/**").sampleRate(0.0).build())
+                .build();
+        var filter = new RequestResponseLoggingFilter(logRecords::add, loggingPolicy);
+        var servletRequest = new MockHttpServletRequest("GET", "/app/actuator/health");
+        servletRequest.setContextPath("/app");
+        var filterChain = new MockFilterChain();
+
+        filter.doFilter(servletRequest, new MockHttpServletResponse(), filterChain);
+
+        Assertions.assertTrue(logRecords.isEmpty());
+        Assertions.assertSame(servletRequest, filterChain.getRequest());
+    }
+
+    @ParameterizedTest
+    @CsvSource({"200, 0", "404, 13"})
+    @DisplayName("Log the bodies only on error status")
+    void logBodies_onlyOnErrorStatus(int status, int expectedBodyLength) throws ServletException, IOException {
+        var logRecords = new ArrayList<HttpLogRecord>();
+        var loggingPolicy = LoggingPolicy.builder().body(BodyMode.ON_ERROR).build();
+        var filter = new RequestResponseLoggingFilter(logRecords::add, loggingPolicy);
+        var servletRequest = new MockHttpServletRequest("POST", "/test");
+        servletRequest.setContent("{\"test\":\"ko\"}".getBytes(StandardCharsets.UTF_8));
+        FilterChain filterChain = (request, response) -> {
+            request.getInputStream().readAllBytes();
+            ((HttpServletResponse) response).setStatus(status);
+            response.getOutputStream().write("{\"test\":\"ko\"}".getBytes(StandardCharsets.UTF_8));
+        };
+
+        filter.doFilter(servletRequest, new MockHttpServletResponse(), filterChain);
+
+        Assertions.assertEquals(expectedBodyLength, logRecords.get(0).getBody().length);
+        Assertions.assertEquals(expectedBodyLength, logRecords.get(1).getBody().length);
+        Assertions.assertEquals(13, logRecords.get(1).getBodySize());
+    }
+
+    @Test
+    @DisplayName("Skip the body capture for excluded content types")
+    void skipBodyCapture_forExcludedContentTypes() throws ServletException, IOException {
+        var logRecords = new ArrayList<HttpLogRecord>();
+        var loggingPolicy = LoggingPolicy.builder().excludedBodyContentType("image/*").build();
+        var filter = new RequestResponseLoggingFilter(logRecords::add, loggingPolicy);
+        var servletRequest = new MockHttpServletRequest("POST", "/test");
+        servletRequest.setContentType("image/png");
+        servletRequest.setContent(new byte[]{1, 2, 3});
+        FilterChain filterChain = (request, response) -> {
+            request.getInputStream().readAllBytes();
+            response.setContentType("image/jpeg");
+            response.getOutputStream().write(new byte[]{4, 5});
+        };
+
+        filter.doFilter(servletRequest, new MockHttpServletResponse(), filterChain);
+
+        Assertions.assertEquals(0, logRecords.get(0).getBody().length);
+        Assertions.assertEquals(3, logRecords.get(0).getBodySize());
+        Assertions.assertEquals(0, logRecords.get(1).getBody().length);
+    }
+
+    @Test
+    @DisplayName("Log the request and response of an async request on completion")
+    void logAsyncRequest_onCompletion() throws ServletException, IOException {
+        var logRecords = new ArrayList<HttpLogRecord>();
+        var logContexts = new ArrayList<String>();
+        var filter = new RequestResponseLoggingFilter(logRecord -> {
+            logRecords.add(logRecord);
+            logContexts.add(MDC.get("transactionId"));
+        }, maxBodyBytes(1024));
+        var servletRequest = new MockHttpServletRequest("GET", "/test");
+        servletRequest.setAsyncSupported(true);
+        var servletResponse = new MockHttpServletResponse();
+        var asyncContext = new AtomicReference<AsyncContext>();
+        FilterChain filterChain = (request, response) -> asyncContext.set(request.startAsync(request, response));
+
+        MDC.put("transactionId", "async-id");
+        try {
+            filter.doFilter(servletRequest, servletResponse, filterChain);
+        } finally {
+            MDC.remove("transactionId");
+        }
+
+        Assertions.assertTrue(logRecords.isEmpty());
+        asyncContext.get().getResponse().getOutputStream().write("{\"test\":\"async\"}".getBytes(StandardCharsets.UTF_8));
+        asyncContext.get().complete();
+
+        Assertions.assertEquals(2, logRecords.size());
+        Assertions.assertEquals(HttpLogRecord.Type.REQUEST, logRecords.get(0).getType());
+        Assertions.assertEquals("{\"test\":\"async\"}",
+                new String(logRecords.get(1).getBody(), StandardCharsets.UTF_8));
+        Assertions.assertEquals(List.of("async-id", "async-id"), logContexts);
+        Assertions.assertNull(MDC.get("transactionId"));
+    }
+
+    private static LoggingPolicy maxBodyBytes(int maxBodyBytes) {
+        return LoggingPolicy.builder().maxBodyBytes(maxBodyBytes).build();
+    }
 
 }
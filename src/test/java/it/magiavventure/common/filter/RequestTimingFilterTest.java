@@ -0,0 +1,124 @@
+package it.magiavventure.common.filter;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import it.magiavventure.common.logging.LoggingPolicy;
+import it.magiavventure.common.timing.RequestTiming;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+@DisplayName("Request timing filter tests")
+class RequestTimingFilterTest {
+
+    private final Logger logger = (Logger) LoggerFactory.getLogger(RequestTimingFilter.class);
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+    @BeforeEach
+    void setUp() {
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    void tearDown() {
+        logger.detachAppender(appender);
+    }
+
+    @Test
+    @DisplayName("Write the Server-Timing header before the body and log the slow requests")
+    void writeServerTimingHeader_andLogSlowRequests() throws Exception {
+        var loggingPolicy = LoggingPolicy.builder().slowThreshold(Duration.ZERO).build();
+        var filter = new RequestTimingFilter(loggingPolicy, true);
+        var request = new MockHttpServletRequest("GET", "/users");
+        var response = new MockHttpServletResponse();
+        FilterChain chain = (chainRequest, chainResponse) -> {
+            ((RequestTiming) chainRequest.getAttribute(RequestTiming.ATTRIBUTE)).addError(1_000_000);
+            chainResponse.getOutputStream().write("[]".getBytes(StandardCharsets.UTF_8));
+            chainResponse.flushBuffer();
+        };
+
+        filter.doFilter(request, response, chain);
+
+        String serverTiming = response.getHeader(RequestTiming.SERVER_TIMING_HEADER);
+        Assertions.assertNotNull(serverTiming);
+        Assertions.assertTrue(serverTiming.startsWith("pre;dur="));
+        Assertions.assertTrue(serverTiming.contains(", error;dur=1.00, total;dur="));
+        Assertions.assertEquals(1, appender.list.size());
+        Assertions.assertTrue(appender.list.get(0).getFormattedMessage()
+                .startsWith("Slow request GET /users 200 took "));
+    }
+
+    @Test
+    @DisplayName("Do nothing without header and slow thresholds")
+    void doNothing_withoutHeaderAndThresholds() throws Exception {
+        var filter = new RequestTimingFilter(LoggingPolicy.DEFAULT, false);
+        var request = new MockHttpServletRequest("GET", "/users");
+        var response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, (chainRequest, chainResponse) -> { });
+
+        Assertions.assertNull(request.getAttribute(RequestTiming.ATTRIBUTE));
+        Assertions.assertNull(response.getHeader(RequestTiming.SERVER_TIMING_HEADER));
+        Assertions.assertTrue(appender.list.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Record the time of the logging filter in the request timing")
+    void recordLoggingFilterTime() throws Exception {
+        var filter = new RequestTimingFilter(LoggingPolicy.builder().slowThreshold(Duration.ofHours(1)).build(), false);
+        var loggingFilter = new RequestResponseLoggingFilter();
+        var request = new MockHttpServletRequest("GET", "/users");
+        var response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, (chainRequest, chainResponse) ->
+                loggingFilter.doFilter(chainRequest, chainResponse, (innerRequest, innerResponse) -> { }));
+
+        var requestTiming = (RequestTiming) request.getAttribute(RequestTiming.ATTRIBUTE);
+        Assertions.assertTrue(requestTiming.getLoggingNanos() > 0);
+        Assertions.assertTrue(appender.list.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Measure as pre the work done before the chain of the innermost library filter")
+    void measurePre_untilInnermostLibraryFilter() throws Exception {
+        var filter = new RequestTimingFilter(LoggingPolicy.builder().slowThreshold(Duration.ofHours(1)).build(), false);
+        var transactionIdFilter = new TransactionIdFilter();
+        var request = new MockHttpServletRequest("GET", "/users");
+        var response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, (chainRequest, chainResponse) -> {
+            sleep(Duration.ofMillis(20));
+            transactionIdFilter.doFilter(chainRequest, chainResponse, (innerRequest, innerResponse) -> { });
+        });
+
+        var requestTiming = (RequestTiming) request.getAttribute(RequestTiming.ATTRIBUTE);
+        Assertions.assertTrue(requestTiming.getPreNanos() >= Duration.ofMillis(20).toNanos());
+    }
+
+    @Test
+    @DisplayName("Order the timing filter before the other library filters")
+    void orderTimingFilter_first() {
+        Assertions.assertTrue(RequestTimingFilter.ORDER < TransactionIdFilter.ORDER);
+        Assertions.assertTrue(TransactionIdFilter.ORDER < RequestResponseLoggingFilter.ORDER);
+        Assertions.assertTrue(RequestResponseLoggingFilter.ORDER < ResponseBufferingFilter.ORDER);
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package it.magiavventure.common.filter;
+
+import it.magiavventure.common.logging.HttpLogRecord;
+import it.magiavventure.common.logging.JsonLogEncoder;
+import it.magiavventure.common.logging.LoggingPolicy;
+import it.magiavventure.common.timing.RequestTiming;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+@DisplayName("Response buffering filter tests")
+class ResponseBufferingFilterTest {
+
+    private static final String BODY = "[{\"id\":1,\"name\":\"drago\"}]";
+    private static final String REPORT = "[" + "{\"id\":1,\"name\":\"drago\"},".repeat(7) + "{}]";
+
+    private final ResponsePolicy responsePolicy = ResponsePolicy
+            .builder()
+            .route(ResponsePolicy.Route.builder().pattern("/catalogue/**").etag(true).build())
+            .route(ResponsePolicy.Route.builder().pattern("/reports/**").etag(true).compression(true).build())
+            .route(ResponsePolicy.Route.builder().pattern("/exports/**").compression(true).build())
+            .build();
+    private final ResponseBufferingFilter filter = new ResponseBufferingFilter(responsePolicy, 256, 64,
+            ResponseBufferingFilter.DEFAULT_COMPRESSION_MIME_TYPES);
+
+    @Test
+    @DisplayName("Tag the response of an enabled route with the length of the body")
+    void tagResponse_ofEnabledRoute() throws Exception {
+        var response = new MockHttpServletResponse();
+
+        filter.doFilter(catalogueRequest(), response, write(BODY));
+
+        String etag = response.getHeader(HttpHeaders.ETAG);
+        Assertions.assertNotNull(etag);
+        Assertions.assertTrue(etag.matches("\"[0-9a-f]+-[0-9a-f]{16}\""));
+        Assertions.assertEquals(BODY, response.getContentAsString());
+        Assertions.assertEquals(BODY.length(), response.getContentLength());
+        Assertions.assertNotEquals(etag, tag("[]"));
+        Assertions.assertEquals(etag, tag(BODY));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"%s", "W/%s", "\"other\", %s", "*"})
+    @DisplayName("Answer 304 without body when If-None-Match matches")
+    void answerNotModified_whenIfNoneMatchMatches(String ifNoneMatch) throws Exception {
+        var request = catalogueRequest();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch.formatted(tag(BODY)));
+        var response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, write(BODY));
+
+        Assertions.assertEquals(304, response.getStatus());
+        Assertions.assertEquals(tag(BODY), response.getHeader(HttpHeaders.ETAG));
+        Assertions.assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    @DisplayName("Send the body when If-None-Match does not match")
+    void sendBody_whenIfNoneMatchDoesNotMatch() throws Exception {
+        var request = catalogueRequest();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, tag("[]"));
+        var response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, write(BODY));
+
+        Assertions.assertEquals(200, response.getStatus());
+        Assertions.assertEquals(BODY, response.getContentAsString());
+    }
+
+    @Test
+    @DisplayName("Keep the body written with the writer and flushed")
+    void tagResponse_writtenWithWriterAndFlushed() throws Exception {
+        var response = new MockHttpServletResponse();
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        FilterChain chain = (chainRequest, chainResponse) -> {
+            chainResponse.getWriter().write(BODY.substring(0, 5));
+            chainResponse.flushBuffer();
+            chainResponse.getWriter().write(BODY.substring(5));
+        };
+
+        filter.doFilter(catalogueRequest(), response, chain);
+
+        Assertions.assertEquals(tag(BODY), response.getHeader(HttpHeaders.ETAG));
+        Assertions.assertEquals(BODY, response.getContentAsString());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    @DisplayName("Tag and send only the body written after a reset with the writer")
+    void tagResponse_writtenAfterReset(boolean resetAll) throws Exception {
+        var response = new MockHttpServletResponse();
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        FilterChain chain = (chainRequest, chainResponse) -> {
+            chainResponse.getWriter().write("[\"stale\"]");
+            if (resetAll) {
+                chainResponse.reset();
+                chainResponse.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            } else {
+                chainResponse.resetBuffer();
+            }
+            chainResponse.getWriter().write(BODY);
+        };
+
+        filter.doFilter(catalogueRequest(), response, chain);
+
+        Assertions.assertEquals(tag(BODY), response.getHeader(HttpHeaders.ETAG));
+        Assertions.assertEquals(BODY, response.getContentAsString());
+    }
+
+    @Test
+    @DisplayName("Keep the writer obtained before a buffer reset")
+    void keepWriter_whenBufferIsReset() throws Exception {
+        var response = new MockHttpServletResponse();
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        FilterChain chain = (chainRequest, chainResponse) -> {
+            var writer = chainResponse.getWriter();
+            writer.write("[\"stale\"]");
+            chainResponse.resetBuffer();
+            Assertions.assertSame(writer, chainResponse.getWriter());
+            writer.write(BODY);
+        };
+
+        filter.doFilter(catalogueRequest(), response, chain);
+
+        Assertions.assertEquals(tag(BODY), response.getHeader(HttpHeaders.ETAG));
+        Assertions.assertEquals(BODY, response.getContentAsString());
+    }
+
+    @Test
+    @DisplayName("Write through untagged the routes not enabled and the other methods")
+    void skipTag_forOtherRoutesAndMethods() throws Exception {
+        var otherRoute = new MockHttpServletResponse();
+        var post = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/users"), otherRoute, write(BODY));
+        filter.doFilter(new MockHttpServletRequest("POST", "/catalogue/items"), post, write(BODY));
+
+        Assertions.assertNull(otherRoute.getHeader(HttpHeaders.ETAG));
+        Assertions.assertNull(post.getHeader(HttpHeaders.ETAG));
+        Assertions.assertEquals(BODY, post.getContentAsString());
+    }
+
+    @Test
+    @DisplayName("Write through untagged a body larger than the maximum size")
+    void skipTag_forLargeBody() throws Exception {
+        var response = new MockHttpServletResponse();
+        String body = "x".repeat(300);
+
+        filter.doFilter(catalogueRequest(), response, write(body));
+
+        Assertions.assertNull(response.getHeader(HttpHeaders.ETAG));
+        Assertions.assertEquals(body, response.getContentAsString());
+    }
+
+    @Test
+    @DisplayName("Leave untagged the errors, the streams and the responses with their own ETag or no-store")
+    void skipTag_forErrorsStreamsAndOwnTags() throws Exception {
+        var error = new MockHttpServletResponse();
+        var stream = new MockHttpServletResponse();
+        var ownTag = new MockHttpServletResponse();
+        var noStore = new MockHttpServletResponse();
+
+        filter.doFilter(catalogueRequest(), error, (chainRequest, chainResponse) -> {
+            ((HttpServletResponse) chainResponse).setStatus(404);
+            chainResponse.getOutputStream().write(BODY.getBytes(StandardCharsets.UTF_8));
+        });
+        filter.doFilter(catalogueRequest(), stream, (chainRequest, chainResponse) -> {
+            chainResponse.setContentType("text/event-stream");
+            chainResponse.getOutputStream().write(BODY.getBytes(StandardCharsets.UTF_8));
+        });
+        filter.doFilter(catalogueRequest(), ownTag, (chainRequest, chainResponse) -> {
+            ((HttpServletResponse) chainResponse).setHeader(HttpHeaders.ETAG, "\"v1\"");
+            chainResponse.getOutputStream().write(BODY.getBytes(StandardCharsets.UTF_8));
+        });
+        filter.doFilter(catalogueRequest(), noStore, (chainRequest, chainResponse) -> {
+            ((HttpServletResponse) chainResponse).setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+            chainResponse.getOutputStream().write(BODY.getBytes(StandardCharsets.UTF_8));
+        });
+
+        Assertions.assertNull(error.getHeader(HttpHeaders.ETAG));
+        Assertions.assertEquals(BODY, error.getContentAsString());
+        Assertions.assertNull(stream.getHeader(HttpHeaders.ETAG));
+        Assertions.assertEquals(BODY, stream.getContentAsString());
+        Assertions.assertEquals("\"v1\"", ownTag.getHeader(HttpHeaders.ETAG));
+        Assertions.assertNull(noStore.getHeader(HttpHeaders.ETAG));
+        Assertions.assertEquals(BODY, noStore.getContentAsString());
+    }
+
+    @Test
+    @DisplayName("Send the 304 through the logging filter placed before")
+    void sendNotModified_throughLoggingFilter() throws Exception {
+        var request = catalogueRequest();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, tag(BODY));
+        var response = new MockHttpServletResponse();
+        var loggingFilter = new RequestResponseLoggingFilter();
+
+        loggingFilter.doFilter(request, response,
+                (chainRequest, chainResponse) -> filter.doFilter(chainRequest, chainResponse, write(BODY)));
+
+        Assertions.assertEquals(304, response.getStatus());
+        Assertions.assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    @DisplayName("Compress with gzip the responses of the routes with compression when the client accepts it")
+    void compressResponse_whenClientAcceptsGzip() throws Exception {
+        var request = reportRequest("deflate, gzip;q=0.8");
+        var response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, writeJson(REPORT));
+
+        Assertions.assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        Assertions.assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeader(HttpHeaders.VARY));
+        Assertions.assertEquals(response.getContentAsByteArray().length, response.getContentLength());
+        Assertions.assertEquals(REPORT, gunzip(response.getContentAsByteArray()));
+        Assertions.assertTrue(response.getHeader(HttpHeaders.ETAG).endsWith("-gzip\""));
+    }
+
+    @Test
+    @DisplayName("Answer 304 with the ETag of the compressed response")
+    void answerNotModified_withCompressedEtag() throws Exception {
+        var first = new MockHttpServletResponse();
+        filter.doFilter(reportRequest("gzip"), first, writeJson(REPORT));
+        var request = reportRequest("gzip");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, first.getHeader(HttpHeaders.ETAG));
+        var response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, writeJson(REPORT));
+
+        Assertions.assertEquals(304, response.getStatus());
+        Assertions.assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    @DisplayName("Send uncompressed the small bodies, the other types and the clients not accepting gzip")
+    void skipCompression() throws Exception {
+        var notAccepted = new MockHttpServletResponse();
+        var small = new MockHttpServletResponse();
+        var image = new MockHttpServletResponse();
+        var encoded = new MockHttpServletResponse();
+
+        filter.doFilter(reportRequest("gzip;q=0, identity"), notAccepted, writeJson(REPORT));
+        filter.doFilter(reportRequest("gzip"), small, writeJson(BODY));
+        filter.doFilter(reportRequest("gzip"), image, (chainRequest, chainResponse) -> {
+            chainResponse.setContentType("image/png");
+            chainResponse.getOutputStream().write(REPORT.getBytes(StandardCharsets.UTF_8));
+        });
+        filter.doFilter(reportRequest("gzip"), encoded, (chainRequest, chainResponse) -> {
+            ((HttpServletResponse) chainResponse).setHeader(HttpHeaders.CONTENT_ENCODING, "br");
+            writeJson(REPORT).doFilter(chainRequest, chainResponse);
+        });
+
+        Assertions.assertEquals(REPORT, notAccepted.getContentAsString());
+        Assertions.assertEquals(BODY, small.getContentAsString());
+        Assertions.assertEquals(REPORT, image.getContentAsString());
+        Assertions.assertEquals(REPORT, encoded.getContentAsString());
+        Assertions.assertNull(small.getHeader(HttpHeaders.CONTENT_ENCODING));
+        Assertions.assertNull(image.getHeader(HttpHeaders.CONTENT_ENCODING));
+        Assertions.assertEquals("br", encoded.getHeader(HttpHeaders.CONTENT_ENCODING));
+        Assertions.assertFalse(notAccepted.getHeader(HttpHeaders.ETAG).endsWith("-gzip\""));
+    }
+
+    @Test
+    @DisplayName("Vary on Accept-Encoding every response of the routes with compression, compressed or not")
+    void varyOnAcceptEncoding_ofCompressionRoutes() throws Exception {
+        var notAccepted = new MockHttpServletResponse();
+        var small = new MockHttpServletResponse();
+        var passedThrough = new MockHttpServletResponse();
+        var alreadyVarying = new MockHttpServletResponse();
+        var otherRoute = new MockHttpServletResponse();
+
+        filter.doFilter(reportRequest("identity"), notAccepted, writeJson(REPORT));
+        filter.doFilter(reportRequest("gzip"), small, writeJson(BODY));
+        filter.doFilter(new MockHttpServletRequest("GET", "/exports/monthly"), passedThrough, writeJson(REPORT));
+        filter.doFilter(reportRequest("gzip"), alreadyVarying, (chainRequest, chainResponse) -> {
+            ((HttpServletResponse) chainResponse).setHeader(HttpHeaders.VARY, "Origin, Accept-Encoding");
+            writeJson(REPORT).doFilter(chainRequest, chainResponse);
+        });
+        filter.doFilter(catalogueRequest(), otherRoute, writeJson(REPORT));
+
+        Assertions.assertEquals(HttpHeaders.ACCEPT_ENCODING, notAccepted.getHeader(HttpHeaders.VARY));
+        Assertions.assertEquals(HttpHeaders.ACCEPT_ENCODING, small.getHeader(HttpHeaders.VARY));
+        Assertions.assertEquals(HttpHeaders.ACCEPT_ENCODING, passedThrough.getHeader(HttpHeaders.VARY));
+        Assertions.assertEquals(REPORT, passedThrough.getContentAsString());
+        Assertions.assertEquals(List.of("Origin, Accept-Encoding"), alreadyVarying.getHeaders(HttpHeaders.VARY));
+        Assertions.assertNull(otherRoute.getHeader(HttpHeaders.VARY));
+    }
+
+    @Test
+    @DisplayName("Vary on Accept-Encoding the responses reset by the application")
+    void varyOnAcceptEncoding_whenResponseIsReset() throws Exception {
+        var response = new MockHttpServletResponse();
+
+        filter.doFilter(reportRequest("gzip"), response, (chainRequest, chainResponse) -> {
+            chainResponse.reset();
+            writeJson(BODY).doFilter(chainRequest, chainResponse);
+        });
+
+        Assertions.assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeader(HttpHeaders.VARY));
+        Assertions.assertEquals(BODY, response.getContentAsString());
+    }
+
+    @Test
+    @DisplayName("Leave uncompressed the partial responses")
+    void skipCompression_ofPartialResponses() throws Exception {
+        var partial = new MockHttpServletResponse();
+        var ranged = new MockHttpServletResponse();
+
+        filter.doFilter(reportRequest("gzip"), partial, (chainRequest, chainResponse) -> {
+            ((HttpServletResponse) chainResponse).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            writeJson(REPORT).doFilter(chainRequest, chainResponse);
+        });
+        filter.doFilter(reportRequest("gzip"), ranged, (chainRequest, chainResponse) -> {
+            ((HttpServletResponse) chainResponse).setHeader(HttpHeaders.CONTENT_RANGE, "bytes 0-199/1000");
+            writeJson(REPORT).doFilter(chainRequest, chainResponse);
+        });
+
+        Assertions.assertEquals(REPORT, partial.getContentAsString());
+        Assertions.assertEquals(REPORT, ranged.getContentAsString());
+        Assertions.assertNull(partial.getHeader(HttpHeaders.CONTENT_ENCODING));
+        Assertions.assertNull(ranged.getHeader(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    @DisplayName("Log the compressed body sent, decoded by the log encoder")
+    void logCompressedBody_ofCompressedResponse() throws Exception {
+        List<HttpLogRecord> logRecords = new ArrayList<>();
+        var timingFilter = new RequestTimingFilter(LoggingPolicy.DEFAULT, true);
+        var loggingFilter = new RequestResponseLoggingFilter(logRecords::add, LoggingPolicy.DEFAULT);
+        var response = new MockHttpServletResponse();
+
+        timingFilter.doFilter(reportRequest("gzip"), response, (timingRequest, timingResponse) ->
+                loggingFilter.doFilter(timingRequest, timingResponse, (loggingRequest, loggingResponse) ->
+                        filter.doFilter(loggingRequest, loggingResponse, writeJson(REPORT))));
+
+        Assertions.assertEquals(REPORT, gunzip(response.getContentAsByteArray()));
+        Assertions.assertNotNull(response.getHeader(RequestTiming.SERVER_TIMING_HEADER));
+        Assertions.assertArrayEquals(response.getContentAsByteArray(), logRecords.get(1).getBody());
+        Assertions.assertTrue(new JsonLogEncoder().encode(logRecords.get(1)).contains("\"body\":" + REPORT));
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {"gzip|true", "GZIP;q=1|true", "br, *|true", "gzip;q=0.0|false",
+            "deflate, br|false", "identity|false"})
+    @DisplayName("Read whether the client accepts gzip")
+    void acceptsGzip(String acceptEncoding, boolean accepted) {
+        Assertions.assertEquals(accepted,
+                ResponseBufferingFilter.acceptsGzip(Collections.enumeration(List.of(acceptEncoding))));
+    }
+
+    private String tag(String body) throws Exception {
+        var response = new MockHttpServletResponse();
+        filter.doFilter(catalogueRequest(), response, write(body));
+        return response.getHeader(HttpHeaders.ETAG);
+    }
+
+    private static MockHttpServletRequest reportRequest(String acceptEncoding) {
+        var request = new MockHttpServletRequest("GET", "/reports/monthly");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        return request;
+    }
+
+    private static FilterChain writeJson(String body) {
+        return (chainRequest, chainResponse) -> {
+            chainResponse.setContentType("application/json");
+            chainResponse.getOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
+        };
+    }
+
+    private static String gunzip(byte[] body) throws Exception {
+        try (var inputStream = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static MockHttpServletRequest catalogueRequest() {
+        return new MockHttpServletRequest("GET", "/catalogue/items");
+    }
+
+    private static FilterChain write(String body) {
+        return (chainRequest, chainResponse) -> {
+            chainResponse.setContentLength(body.length());
+            chainResponse.getOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
+            chainResponse.getOutputStream().flush();
+        };
+    }
+}
@@ -0,0 +1,57 @@
+package it.magiavventure.common.filter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Response policy tests")
+class ResponsePolicyTest {
+
+    @Test
+    @DisplayName("Resolve the ETag of the route, inheriting the default")
+    void resolveEtag_ofRoute() {
+        var responsePolicy = ResponsePolicy
+                .builder()
+                .route(ResponsePolicy.Route.builder().pattern("/catalogue/**").etag(true).build())
+                .route(ResponsePolicy.Route.builder().pattern("/catalogue/export").etag(false).build())
+                .build();
+
+        Assertions.assertTrue(responsePolicy.isEtagConfigured());
+        Assertions.assertTrue(responsePolicy.resolve("/catalogue/items").isEtag());
+        Assertions.assertTrue(responsePolicy.resolve("/catalogue/export").isEtag());
+        Assertions.assertFalse(responsePolicy.resolve("/users").isEtag());
+    }
+
+    @Test
+    @DisplayName("Apply the default ETag to the routes leaving it unset")
+    void resolveDefaultEtag() {
+        var responsePolicy = ResponsePolicy
+                .builder()
+                .etag(true)
+                .route(ResponsePolicy.Route.builder().pattern("/health").etag(false).build())
+                .route(ResponsePolicy.Route.builder().pattern("/users/*").build())
+                .build();
+
+        Assertions.assertFalse(responsePolicy.resolve("/health").isEtag());
+        Assertions.assertTrue(responsePolicy.resolve("/users/1").isEtag());
+        Assertions.assertTrue(responsePolicy.resolve("/test").isEtag());
+        Assertions.assertFalse(ResponsePolicy.DEFAULT.isEtagConfigured());
+    }
+
+    @Test
+    @DisplayName("Resolve the compression of the route, inheriting the default")
+    void resolveCompression_ofRoute() {
+        var responsePolicy = ResponsePolicy
+                .builder()
+                .route(ResponsePolicy.Route.builder().pattern("/reports/**").compression(true).build())
+                .route(ResponsePolicy.Route.builder().pattern("/catalogue/**").etag(true).build())
+                .build();
+
+        Assertions.assertTrue(responsePolicy.isCompressionConfigured());
+        Assertions.assertTrue(responsePolicy.resolve("/reports/daily").isCompression());
+        Assertions.assertFalse(responsePolicy.resolve("/reports/daily").isEtag());
+        Assertions.assertFalse(responsePolicy.resolve("/catalogue/items").isCompression());
+        Assertions.assertFalse(ResponsePolicy.DEFAULT.isCompressionConfigured());
+        Assertions.assertTrue(ResponsePolicy.builder().compression(true).build().resolve("/test").isCompression());
+    }
+}
@@ -1,42 +1,49 @@
 package it.magiavventure.common.filter;
 
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
+import it.magiavventure.common.transaction.TransactionContext;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.MDC;
-import org.springframework.mock.web.MockFilterChain;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 
 import java.io.IOException;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
 @ExtendWith(MockitoExtension.class)
 @DisplayName("Transaction id filter tests")
 class TransactionIdFilterTest {
 
+    private final AtomicReference<String> chainTransactionId = new AtomicReference<>();
+    private final FilterChain filterChain = (request, response) -> chainTransactionId.set(MDC.get("transactionId"));
+
     @Test
     @DisplayName("Add new transactionId to MDC and response header")
     void addTransactionIdToMDCAndResponseHeader_ok() throws ServletException, IOException {
         var filter = new TransactionIdFilter();
-        var filterChain = new MockFilterChain();
         var servletRequest = new MockHttpServletRequest();
         var servletResponse = new MockHttpServletResponse();
 
         filter.doFilter(servletRequest, servletResponse, filterChain);
 
         Assertions.assertNotNull(servletResponse.getHeader("transactionId"));
-        Assertions.assertNotNull(MDC.get("transactionId"));
+        Assertions.assertEquals(servletResponse.getHeader("transactionId"), chainTransactionId.get());
+        Assertions.assertEquals(7, UUID.fromString(chainTransactionId.get()).version());
     }
 
     @Test
     @DisplayName("Add transactionId from header to MDC and response header")
     void addTransactionFromHeaderIdToMDCAndResponseHeader_ok() throws ServletException, IOException {
         var filter = new TransactionIdFilter();
-        var filterChain = new MockFilterChain();
         var servletRequest = new MockHttpServletRequest();
         var transactionId = UUID.randomUUID().toString();
         servletRequest.addHeader("transactionId", transactionId);
@@ -45,14 +52,13 @@ class TransactionIdFilterTest {
         filter.doFilter(servletRequest, servletResponse, filterChain);
 
         Assertions.assertEquals(transactionId, servletResponse.getHeader("transactionId"));
-        Assertions.assertEquals(transactionId, MDC.get("transactionId"));
+        Assertions.assertEquals(transactionId, chainTransactionId.get());
     }
 
     @Test
     @DisplayName("Add transactionId from header but is empty to MDC and response header")
     void addTransactionFromHeaderButIsEmptyIdToMDCAndResponseHeader_ok() throws ServletException, IOException {
         var filter = new TransactionIdFilter();
-        var filterChain = new MockFilterChain();
         var servletRequest = new MockHttpServletRequest();
         servletRequest.addHeader("transactionId", "");
         var servletResponse = new MockHttpServletResponse();
@@ -60,6 +66,130 @@ class TransactionIdFilterTest {
         filter.doFilter(servletRequest, servletResponse, filterChain);
 
         Assertions.assertNotNull(servletResponse.getHeader("transactionId"));
-        Assertions.assertNotNull(MDC.get("transactionId"));
+        Assertions.assertNotNull(chainTransactionId.get());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"abc def", "abc\r\nfake: header", "{\"json\":true}", "<script>"})
+    @DisplayName("Replace transactionId from header with forbidden characters")
+    void replaceTransactionIdFromHeader_withForbiddenCharacters(String transactionId)
+            throws ServletException, IOException {
+        var filter = new TransactionIdFilter();
+        var servletRequest = new MockHttpServletRequest();
+        servletRequest.addHeader("transactionId", transactionId);
+        var servletResponse = new MockHttpServletResponse();
+
+        filter.doFilter(servletRequest, servletResponse, filterChain);
+
+        Assertions.assertNotEquals(transactionId, chainTransactionId.get());
+        Assertions.assertEquals(servletResponse.getHeader("transactionId"), chainTransactionId.get());
+    }
+
+    @Test
+    @DisplayName("Replace transactionId from header longer than max length")
+    void replaceTransactionIdFromHeader_tooLong() throws ServletException, IOException {
+        var filter = new TransactionIdFilter(() -> "generated", 8);
+        var servletRequest = new MockHttpServletRequest();
+        servletRequest.addHeader("transactionId", "123456789");
+        var servletResponse = new MockHttpServletResponse();
+
+        filter.doFilter(servletRequest, servletResponse, filterChain);
+
+        Assertions.assertEquals("generated", chainTransactionId.get());
+        Assertions.assertEquals("generated", servletResponse.getHeader("transactionId"));
+    }
+
+    @Test
+    @DisplayName("Remove transactionId from MDC after the request, also on error")
+    void removeTransactionIdFromMDC_afterRequest() {
+        var filter = new TransactionIdFilter();
+        var servletRequest = new MockHttpServletRequest();
+        var servletResponse = new MockHttpServletResponse();
+
+        Assertions.assertThrows(IllegalStateException.class, () -> filter.doFilter(servletRequest, servletResponse,
+                (request, response) -> {
+                    throw new IllegalStateException("ko");
+                }));
+
+        Assertions.assertNull(MDC.get("transactionId"));
+    }
+
+    @Test
+    @DisplayName("Restore the transactionId of the request on the async dispatch")
+    void restoreTransactionId_onAsyncDispatch() throws ServletException, IOException {
+        var filter = new TransactionIdFilter();
+        var servletRequest = new MockHttpServletRequest();
+        servletRequest.addHeader("transactionId", "first-dispatch");
+        var servletResponse = new MockHttpServletResponse();
+        filter.doFilter(servletRequest, servletResponse, filterChain);
+        servletRequest.removeHeader("transactionId");
+        servletRequest.setDispatcherType(DispatcherType.ASYNC);
+        chainTransactionId.set(null);
+
+        filter.doFilter(servletRequest, servletResponse, filterChain);
+
+        Assertions.assertEquals("first-dispatch", chainTransactionId.get());
+        Assertions.assertNull(MDC.get("transactionId"));
+    }
+
+    @Test
+    @DisplayName("Do not touch the MDC when the filter is created")
+    void doNotTouchMDC_onCreation() {
+        MDC.remove("transactionId");
+
+        new TransactionIdFilter();
+
+        Assertions.assertNull(MDC.get("transactionId"));
+    }
+
+    @Test
+    @DisplayName("Continue the W3C trace of the request with a new span")
+    void continueTrace_fromTraceparent() throws ServletException, IOException {
+        var filter = new TransactionIdFilter();
+        var servletRequest = new MockHttpServletRequest();
+        servletRequest.addHeader("traceparent", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+        servletRequest.addHeader("tracestate", "congo=t61rcWkgMzE");
+        var servletResponse = new MockHttpServletResponse();
+        var chainContext = new AtomicReference<TransactionContext>();
+
+        filter.doFilter(servletRequest, servletResponse,
+                (request, response) -> chainContext.set(TransactionContext.current()));
+
+        Assertions.assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", chainContext.get().getTransactionId());
+        Assertions.assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", chainContext.get().getTraceId());
+        Assertions.assertEquals("congo=t61rcWkgMzE", chainContext.get().getTracestate());
+        Assertions.assertEquals(chainContext.get().getTraceparent(), servletResponse.getHeader("traceparent"));
+        Assertions.assertNotEquals("00f067aa0ba902b7", chainContext.get().getSpanId());
+        Assertions.assertNull(TransactionContext.current());
+    }
+
+    @Test
+    @DisplayName("Keep the legacy transactionId next to the W3C trace")
+    void keepTransactionId_withTraceparent() throws ServletException, IOException {
+        var filter = new TransactionIdFilter();
+        var servletRequest = new MockHttpServletRequest();
+        servletRequest.addHeader("transactionId", "legacy-id");
+        servletRequest.addHeader("traceparent", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+        var servletResponse = new MockHttpServletResponse();
+
+        filter.doFilter(servletRequest, servletResponse, filterChain);
+
+        Assertions.assertEquals("legacy-id", chainTransactionId.get());
+        Assertions.assertTrue(servletResponse.getHeader("traceparent")
+                .startsWith("00-4bf92f3577b34da6a3ce929d0e0e4736-"));
+    }
+
+    @Test
+    @DisplayName("Ignore the W3C headers when the trace context is disabled")
+    void ignoreTraceparent_whenTraceContextDisabled() throws ServletException, IOException {
+        var filter = new TransactionIdFilter(() -> "generated", 64, false);
+        var servletRequest = new MockHttpServletRequest();
+        servletRequest.addHeader("traceparent", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+        var servletResponse = new MockHttpServletResponse();
+
+        filter.doFilter(servletRequest, servletResponse, filterChain);
+
+        Assertions.assertEquals("generated", chainTransactionId.get());
+        Assertions.assertNull(servletResponse.getHeader("traceparent"));
     }
 }
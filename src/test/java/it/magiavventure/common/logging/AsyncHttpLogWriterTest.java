@@ -0,0 +1,216 @@
+package it.magiavventure.common.logging;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@DisplayName("Async http log writer tests")
+class AsyncHttpLogWriterTest {
+
+    @Test
+    @DisplayName("Write records on the background thread with the caller MDC")
+    void writeRecords_onBackgroundThread_ok() throws InterruptedException {
+        var written = new CopyOnWriteArrayList<String>();
+        var latch = new CountDownLatch(2);
+        HttpLogWriter delegate = logRecord -> {
+            written.add(Thread.currentThread().getName() + "|" + MDC.get("transactionId") + "|" + logRecord.getUri());
+            latch.countDown();
+        };
+        var writer = new AsyncHttpLogWriter(delegate, 16, OverflowPolicy.DROP, Duration.ofSeconds(1));
+        writer.start();
+
+        MDC.put("transactionId", "tx-1");
+        try {
+            writer.write(logRecord("/first"));
+            writer.write(logRecord("/second"));
+        } finally {
+            MDC.remove("transactionId");
+        }
+
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(List.of("magiavventure-http-log-writer|tx-1|/first",
+                "magiavventure-http-log-writer|tx-1|/second"), written);
+        Assertions.assertEquals(2, writer.getEnqueuedCount());
+        Assertions.assertEquals(0, writer.getDroppedCount());
+        writer.stop();
+    }
+
+    @Test
+    @DisplayName("Drop and count records when the queue is full")
+    void dropRecords_whenQueueIsFull_ok() throws InterruptedException {
+        var blocked = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        HttpLogWriter delegate = logRecord -> {
+            blocked.countDown();
+            awaitQuietly(release);
+        };
+        var writer = new AsyncHttpLogWriter(delegate, 1, OverflowPolicy.DROP, Duration.ofSeconds(1));
+        writer.start();
+
+        writer.write(logRecord("/in-progress"));
+        Assertions.assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        writer.write(logRecord("/queued"));
+        writer.write(logRecord("/dropped"));
+
+        Assertions.assertEquals(1, writer.getQueuedCount());
+        Assertions.assertEquals(1, writer.getDroppedCount());
+        release.countDown();
+        writer.stop();
+    }
+
+    @Test
+    @DisplayName("Wait for a free slot when the queue is full with the block policy")
+    void waitForFreeSlot_whenQueueIsFull() throws InterruptedException {
+        var written = new CopyOnWriteArrayList<String>();
+        var latch = new CountDownLatch(200);
+        HttpLogWriter delegate = logRecord -> {
+            written.add(logRecord.getUri());
+            latch.countDown();
+        };
+        var writer = new AsyncHttpLogWriter(delegate, 1, OverflowPolicy.BLOCK, Duration.ofSeconds(1));
+        writer.start();
+
+        var threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            var thread = new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    writer.write(logRecord("/" + i));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(200, written.size());
+        Assertions.assertEquals(0, writer.getDroppedCount());
+        writer.stop();
+    }
+
+    @Test
+    @DisplayName("Wake the idle worker as soon as a record is written")
+    void wakeIdleWorker_onWrite() throws InterruptedException {
+        var latch = new CountDownLatch(1);
+        var writer = new AsyncHttpLogWriter(logRecord -> latch.countDown(), 16, OverflowPolicy.DROP,
+                Duration.ofSeconds(1));
+        writer.start();
+        Thread.sleep(50);
+
+        writer.write(logRecord("/idle"));
+
+        Assertions.assertTrue(latch.await(1, TimeUnit.SECONDS));
+        writer.stop();
+    }
+
+    @Test
+    @DisplayName("Flush queued records on stop")
+    void flushQueuedRecords_onStop_ok() throws InterruptedException {
+        var written = new CopyOnWriteArrayList<HttpLogRecord>();
+        var writer = new AsyncHttpLogWriter(written::add, 1024, OverflowPolicy.BLOCK, Duration.ofSeconds(5));
+        writer.start();
+
+        for (int i = 0; i < 100; i++) {
+            writer.write(logRecord("/" + i));
+        }
+        writer.stop();
+
+        Assertions.assertEquals(100, written.size());
+        Assertions.assertEquals(0, writer.getQueuedCount());
+    }
+
+    @Test
+    @DisplayName("Count the records still queued when the shutdown times out as dropped")
+    void countNotWrittenRecords_whenShutdownTimesOut() throws InterruptedException {
+        var blocked = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        HttpLogWriter delegate = logRecord -> {
+            blocked.countDown();
+            awaitQuietly(release);
+        };
+        var writer = new AsyncHttpLogWriter(delegate, 16, OverflowPolicy.DROP, Duration.ofMillis(50));
+        writer.start();
+
+        writer.write(logRecord("/in-progress"));
+        Assertions.assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        writer.write(logRecord("/queued"));
+        writer.write(logRecord("/queued"));
+        writer.stop();
+
+        Assertions.assertEquals(2, writer.getDroppedCount());
+        release.countDown();
+    }
+
+    @Test
+    @DisplayName("Write records on the caller thread after stop")
+    void writeRecords_onCallerThread_afterStop() {
+        var written = new CopyOnWriteArrayList<String>();
+        var writer = new AsyncHttpLogWriter(logRecord -> written.add(Thread.currentThread().getName()),
+                16, OverflowPolicy.DROP, Duration.ofSeconds(1));
+        writer.start();
+        writer.stop();
+
+        writer.write(logRecord("/late"));
+
+        Assertions.assertEquals(List.of(Thread.currentThread().getName()), written);
+    }
+
+    @Test
+    @DisplayName("Write records on the caller thread before start and on a new worker after a restart")
+    void writeRecords_onNewWorker_afterRestart() throws InterruptedException {
+        var written = new CopyOnWriteArrayList<String>();
+        var latch = new CountDownLatch(1);
+        var writer = new AsyncHttpLogWriter(logRecord -> {
+            written.add(Thread.currentThread().getName());
+            latch.countDown();
+        }, 16, OverflowPolicy.DROP, Duration.ofSeconds(1));
+
+        writer.write(logRecord("/before-start"));
+        writer.start();
+        writer.stop();
+        writer.start();
+        writer.write(logRecord("/after-restart"));
+
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(writer.isRunning());
+        writer.stop();
+        Assertions.assertFalse(writer.isRunning());
+        Assertions.assertEquals(List.of(Thread.currentThread().getName(), "magiavventure-http-log-writer"), written);
+    }
+
+    @Test
+    @DisplayName("Reject non positive queue capacity")
+    void rejectNonPositiveQueueCapacity() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new AsyncHttpLogWriter(logRecord -> {}, 0, OverflowPolicy.DROP, Duration.ZERO));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static HttpLogRecord logRecord(String uri) {
+        return HttpLogRecord
+                .builder()
+                .type(HttpLogRecord.Type.REQUEST)
+                .method("GET")
+                .uri(uri)
+                .headers(new String[0])
+                .body(new byte[0])
+                .build();
+    }
+}
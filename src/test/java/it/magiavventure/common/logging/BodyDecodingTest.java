@@ -0,0 +1,88 @@
+package it.magiavventure.common.logging;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+@DisplayName("Body decoding tests")
+class BodyDecodingTest {
+
+    @Test
+    @DisplayName("Read the charset of the content type")
+    void readCharset_ofContentType() {
+        Assertions.assertEquals(StandardCharsets.ISO_8859_1, BodyDecoding.charset("text/plain; Charset=\"ISO-8859-1\""));
+        Assertions.assertEquals(StandardCharsets.UTF_16BE, BodyDecoding.charset("application/json;charset=utf-16be;q=1"));
+        Assertions.assertEquals(StandardCharsets.UTF_8, BodyDecoding.charset("text/plain; charset=unknown"));
+        Assertions.assertEquals(StandardCharsets.UTF_8, BodyDecoding.charset(null));
+    }
+
+    @Test
+    @DisplayName("Tell text content types from binary ones")
+    void tellText_fromBinaryContentTypes() {
+        Assertions.assertTrue(BodyDecoding.isText(null));
+        Assertions.assertTrue(BodyDecoding.isText("text/html; charset=UTF-8"));
+        Assertions.assertTrue(BodyDecoding.isText("application/problem+json"));
+        Assertions.assertTrue(BodyDecoding.isText("application/x-www-form-urlencoded"));
+        Assertions.assertFalse(BodyDecoding.isText("image/png"));
+        Assertions.assertFalse(BodyDecoding.isText("application/protobuf"));
+    }
+
+    @Test
+    @DisplayName("Decode gzip and deflate bodies up to the cap")
+    void decodeGzipAndDeflateBodies_upToCap() throws Exception {
+        byte[] text = "{\"test\":\"prova\"}".getBytes(StandardCharsets.UTF_8);
+
+        var gzip = BodyDecoding.decode(gzip(text), "GZIP", 1024);
+        var deflate = BodyDecoding.decode(deflate(text), "deflate", 1024);
+        var capped = BodyDecoding.decode(gzip(text), "gzip", 4);
+
+        Assertions.assertArrayEquals(text, gzip.bytes());
+        Assertions.assertTrue(gzip.complete());
+        Assertions.assertArrayEquals(text, deflate.bytes());
+        Assertions.assertArrayEquals(Arrays.copyOf(text, 4), capped.bytes());
+        Assertions.assertFalse(capped.complete());
+    }
+
+    @Test
+    @DisplayName("Decode the captured prefix of a gzip body")
+    void decodeCapturedPrefix_ofGzipBody() throws Exception {
+        byte[] text = "a".repeat(4000).concat("b".repeat(4000)).getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = gzip(text);
+
+        var decoded = BodyDecoding.decode(Arrays.copyOf(compressed, compressed.length - 10), "gzip", 10000);
+
+        Assertions.assertFalse(decoded.complete());
+        Assertions.assertTrue(decoded.bytes().length > 0);
+    }
+
+    @Test
+    @DisplayName("Do not decode unsupported encodings")
+    void notDecode_unsupportedEncodings() {
+        Assertions.assertNull(BodyDecoding.decode(new byte[]{1, 2, 3}, "br", 1024));
+        Assertions.assertNull(BodyDecoding.decode(new byte[]{1, 2, 3}, "gzip", 1024));
+        Assertions.assertFalse(BodyDecoding.isEncoded("identity"));
+    }
+
+    static byte[] gzip(byte[] bytes) throws Exception {
+        var outputStream = new ByteArrayOutputStream();
+        try (var gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(bytes);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] bytes) throws Exception {
+        var outputStream = new ByteArrayOutputStream();
+        try (var deflaterOutputStream = new DeflaterOutputStream(outputStream, new Deflater())) {
+            deflaterOutputStream.write(bytes);
+        }
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,234 @@
+package it.magiavventure.common.logging;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+
+@DisplayName("Json log encoder tests")
+class JsonLogEncoderTest {
+
+    private final JsonLogEncoder jsonLogEncoder = new JsonLogEncoder();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("Encode request with escaped headers and json body")
+    void encodeRequest_withEscapedHeadersAndJsonBody() throws Exception {
+        var body = "{\"test\":\"prova è\"}";
+        var logRecord = HttpLogRecord
+                .builder()
+                .type(HttpLogRecord.Type.REQUEST)
+                .method("POST")
+                .uri("/test")
+                .headers(new String[]{"x-quote", "say \"hi\"\n", "x-null", null})
+                .body(body.getBytes(StandardCharsets.UTF_8))
+                .bodySize(body.getBytes(StandardCharsets.UTF_8).length)
+                .build();
+
+        JsonNode json = objectMapper.readTree(jsonLogEncoder.encode(logRecord));
+
+        Assertions.assertEquals("POST", json.get("method").asText());
+        Assertions.assertEquals("/test", json.get("url").asText());
+        Assertions.assertEquals("say \"hi\"\n", json.get("headers").get("x-quote").asText());
+        Assertions.assertTrue(json.get("headers").get("x-null").isNull());
+        Assertions.assertEquals("prova è", json.get("body").get("test").asText());
+        Assertions.assertNull(json.get("status"));
+    }
+
+    @Test
+    @DisplayName("Encode response with truncated body as string")
+    void encodeResponse_withTruncatedBodyAsString() throws Exception {
+        var logRecord = HttpLogRecord
+                .builder()
+                .type(HttpLogRecord.Type.RESPONSE)
+                .method("GET")
+                .uri("/test")
+                .headers(new String[0])
+                .status(200)
+                .body("{\"test\":".getBytes(StandardCharsets.UTF_8))
+                .bodySize(16)
+                .build();
+
+        JsonNode json = objectMapper.readTree(jsonLogEncoder.encode(logRecord));
+
+        Assertions.assertEquals(200, json.get("status").asInt());
+        Assertions.assertEquals("{", json.get("body").asText());
+        Assertions.assertEquals("{\"test\":", objectMapper.readTree(new JsonLogEncoder(Redaction.NONE)
+                .encode(logRecord)).get("body").asText());
+        Assertions.assertEquals(16, json.get("bodySize").asLong());
+    }
+
+    @Test
+    @DisplayName("Encode response with text and empty bodies")
+    void encodeResponse_withTextAndEmptyBodies() throws Exception {
+        var textRecord = HttpLogRecord
+                .builder()
+                .type(HttpLogRecord.Type.RESPONSE)
+                .method("GET")
+                .uri("/test")
+                .headers(new String[0])
+                .status(500)
+                .body("line \\ one\r\n\u0001".getBytes(StandardCharsets.UTF_8))
+                .bodySize(13)
+                .build();
+        var emptyRecord = HttpLogRecord
+                .builder()
+                .type(HttpLogRecord.Type.RESPONSE)
+                .method("GET")
+                .uri("/test")
+                .headers(new String[0])
+                .status(204)
+                .body(new byte[0])
+                .build();
+
+        Assertions.assertEquals("line \\ one\r\n\u0001",
+                objectMapper.readTree(jsonLogEncoder.encode(textRecord)).get("body").asText());
+        Assertions.assertTrue(objectMapper.readTree(jsonLogEncoder.encode(emptyRecord)).get("body").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Encode request with redacted headers and body fields")
+    void encodeRequest_withRedactedHeadersAndBodyFields() throws Exception {
+        var body = "{\"username\":\"test\",\"password\":\"secret\"}";
+        var logRecord = HttpLogRecord
+                .builder()
+                .type(HttpLogRecord.Type.REQUEST)
+                .method("POST")
+                .uri("/login")
+                .headers(new String[]{"Authorization", "Bearer token", "accept", "application/json"})
+                .body(body.getBytes(StandardCharsets.UTF_8))
+                .bodySize(body.length())
+                .build();
+
+        JsonNode json = objectMapper.readTree(jsonLogEncoder.encode(logRecord));
+
+        Assertions.assertEquals("***", json.get("headers").get("Authorization").asText());
+        Assertions.assertEquals("application/json", json.get("headers").get("accept").asText());
+        Assertions.assertEquals("test", json.get("body").get("username").asText());
+        Assertions.assertEquals("***", json.get("body").get("password").asText());
+        Assertions.assertEquals("Bearer token", objectMapper.readTree(new JsonLogEncoder(Redaction.NONE)
+                .encode(logRecord)).get("headers").get("Authorization").asText());
+    }
+
+    @Test
+    @DisplayName("Encode truncated body with redacted fields as masked string")
+    void encodeTruncatedBody_withRedactedFieldsAsMaskedString() throws Exception {
+        var logRecord = HttpLogRecord
+                .builder()
+                .type(HttpLogRecord.Type.REQUEST)
+                .method("POST")
+                .uri("/login")
+                .headers(new String[0])
+                .body("{\"password\":\"secret\",\"na".getBytes(StandardCharsets.UTF_8))
+                .bodySize(64)
+                .build();
+
+        JsonNode json = objectMapper.readTree(jsonLogEncoder.encode(logRecord));
+
+        Assertions.assertEquals("{\"password\":\"***\"", json.get("body").asText());
+        Assertions.assertEquals(64, json.get("bodySize").asLong());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"{\"user\":\"bob\",,\"password\":\"hunter2\"}",
+            "{\"user\":'bob',\"password\":\"hunter2\"}"})
+    @DisplayName("Encode invalid body with redacted fields as the masked prefix")
+    void encodeInvalidBody_withRedactedFieldsAsMaskedPrefix(String body) throws Exception {
+        var logRecord = HttpLogRecord
+                .builder()
+                .type(HttpLogRecord.Type.REQUEST)
+                .method("POST")
+                .uri("/login")
+                .headers(new String[0])
+                .body(body.getBytes(StandardCharsets.UTF_8))
+                .bodySize(body.length())
+                .build();
+
+        String encoded = jsonLogEncoder.encode(logRecord);
+
+        Assertions.assertFalse(encoded.contains("hunter2"));
+        Assertions.assertTrue(objectMapper.readTree(encoded).get("body").asText().startsWith("{"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"{\"a\":}", "{\"user\":\"bob\",,\"name\":\"x\"}", "{\"a\":1} {\"b\":2}", "[1,2}"})
+    @DisplayName("Encode invalid JSON body as string")
+    void encodeInvalidJsonBody_asString(String body) throws Exception {
+        var logRecord = HttpLogRecord
+                .builder()
+                .type(HttpLogRecord.Type.RESPONSE)
+                .method("GET")
+                .uri("/test")
+                .headers(new String[0])
+                .status(400)
+                .body(body.getBytes(StandardCharsets.UTF_8))
+                .bodySize(body.length())
+                .build();
+
+        JsonNode json = objectMapper.readTree(new JsonLogEncoder(Redaction.NONE).encode(logRecord));
+
+        Assertions.assertTrue(json.get("body").isTextual());
+        Assertions.assertEquals(body, json.get("body").asText());
+        Assertions.assertTrue(objectMapper.readTree(jsonLogEncoder.encode(logRecord)).get("body").isTextual());
+    }
+
+    @Test
+    @DisplayName("Encode gzip body decoded with the charset of the content type")
+    void encodeGzipBody_decodedWithCharset() throws Exception {
+        var body = BodyDecodingTest.gzip("{\"test\":\"prova è\"}".getBytes(StandardCharsets.ISO_8859_1));
+        var logRecord = HttpLogRecord
+                .builder()
+                .type(HttpLogRecord.Type.RESPONSE)
+                .method("GET")
+                .uri("/test")
+                .headers(new String[]{"Content-Type", "application/json;charset=ISO-8859-1", "Content-Encoding", "gzip"})
+                .status(200)
+                .body(body)
+                .bodySize(body.length)
+                .build();
+
+        JsonNode json = objectMapper.readTree(jsonLogEncoder.encode(logRecord));
+
+        Assertions.assertEquals("prova è", json.get("body").get("test").asText());
+        Assertions.assertEquals("gzip", json.get("bodyEncoding").asText());
+    }
+
+    @Test
+    @DisplayName("Encode binary and brotli bodies as summary")
+    void encodeBinaryAndBrotliBodies_asSummary() throws Exception {
+        var binaryRecord = HttpLogRecord
+                .builder()
+                .type(HttpLogRecord.Type.RESPONSE)
+                .method("GET")
+                .uri("/test")
+                .headers(new String[]{"content-type", "application/protobuf"})
+                .status(200)
+                .body(new byte[]{1, 2, 3})
+                .bodySize(300)
+                .build();
+        var brotliRecord = HttpLogRecord
+                .builder()
+                .type(HttpLogRecord.Type.RESPONSE)
+                .method("GET")
+                .uri("/test")
+                .headers(new String[]{"content-type", "text/plain", "content-encoding", "br"})
+                .status(200)
+                .body(new byte[]{1, 2, 3})
+                .bodySize(3)
+                .build();
+
+        JsonNode binary = objectMapper.readTree(jsonLogEncoder.encode(binaryRecord)).get("body");
+        JsonNode brotli = objectMapper.readTree(jsonLogEncoder.encode(brotliRecord)).get("body");
+
+        Assertions.assertEquals("application/protobuf", binary.get("contentType").asText());
+        Assertions.assertEquals(300, binary.get("size").asLong());
+        Assertions.assertEquals(3, binary.get("capturedBytes").asInt());
+        Assertions.assertEquals("55bc801d", binary.get("crc32").asText());
+        Assertions.assertEquals("br", brotli.get("contentEncoding").asText());
+    }
+}
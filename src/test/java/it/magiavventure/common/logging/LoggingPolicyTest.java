@@ -0,0 +1,97 @@
+package it.magiavventure.common.logging;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.time.Duration;
+
+@DisplayName("Logging policy tests")
+class LoggingPolicyTest {
+
+    private final LoggingPolicy loggingPolicy = LoggingPolicy
+            .builder()
+            .body(BodyMode.ON_ERROR)
+            .route(LoggingPolicy.Route.builder().pattern("/health").sampleRate(0.0).build())
+            .route(LoggingPolicy.Route.builder().pattern("/actuator/**").sampleRate(0.0).build())
+            .route(LoggingPolicy.Route.builder().pattern("/users/{id}/avatar").body(BodyMode.NEVER).build())
+            .route(LoggingPolicy.Route.builder().pattern("/**").sampleRate(0.5).build())
+            .excludedBodyContentType("image/*")
+            .excludedBodyContentType("application/octet-stream")
+            .build();
+
+    @ParameterizedTest
+    @CsvSource({"/health, 0.0, ON_ERROR",
+            "/actuator, 0.0, ON_ERROR",
+            "/actuator/prometheus, 0.0, ON_ERROR",
+            "/users/1/avatar, 1.0, NEVER",
+            "/users/1, 0.5, ON_ERROR",
+            "/healthz, 0.5, ON_ERROR"})
+    @DisplayName("Resolve the first matching route")
+    void resolveFirstMatchingRoute(String path, double expectedSampleRate, BodyMode expectedBody) {
+        LoggingPolicy.Decision decision = loggingPolicy.resolve(path);
+
+        Assertions.assertEquals(expectedSampleRate, decision.getSampleRate());
+        Assertions.assertEquals(expectedBody, decision.getBody());
+    }
+
+    @Test
+    @DisplayName("Resolve the default decision when no route matches")
+    void resolveDefaultDecision_whenNoRouteMatches() {
+        LoggingPolicy.Decision decision = LoggingPolicy.DEFAULT.resolve("/test");
+
+        Assertions.assertEquals(1.0, decision.getSampleRate());
+        Assertions.assertEquals(BodyMode.ALWAYS, decision.getBody());
+        Assertions.assertTrue(decision.sample());
+        Assertions.assertEquals(LoggingPolicy.DEFAULT_MAX_BODY_BYTES, LoggingPolicy.DEFAULT.getMaxBodyBytes());
+    }
+
+    @Test
+    @DisplayName("Sample the requests according to the sample rate")
+    void sampleRequests_accordingToSampleRate() {
+        Assertions.assertFalse(loggingPolicy.resolve("/health").sample());
+        int sampled = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (loggingPolicy.resolve("/users").sample()) sampled++;
+        }
+        Assertions.assertTrue(sampled > 4_000 && sampled < 6_000);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"image/png, true",
+            "IMAGE/JPEG, true",
+            "application/octet-stream, true",
+            "application/octet-stream;charset=UTF-8, true",
+            "application/octet-streaming, false",
+            "application/json, false"})
+    @DisplayName("Exclude the body of the configured content types")
+    void excludeBody_ofConfiguredContentTypes(String contentType, boolean expectedExcluded) {
+        Assertions.assertEquals(expectedExcluded, loggingPolicy.isBodyExcluded(contentType));
+    }
+
+    @Test
+    @DisplayName("Do not exclude the body when the content type is missing")
+    void doNotExcludeBody_whenContentTypeIsMissing() {
+        Assertions.assertFalse(loggingPolicy.isBodyExcluded(null));
+    }
+
+    @Test
+    @DisplayName("Resolve the slow threshold of the route, inheriting the default")
+    void resolveSlowThreshold_ofRoute() {
+        var timingPolicy = LoggingPolicy
+                .builder()
+                .slowThreshold(Duration.ofSeconds(1))
+                .route(LoggingPolicy.Route.builder().pattern("/reports/**")
+                        .slowThreshold(Duration.ofSeconds(10)).build())
+                .route(LoggingPolicy.Route.builder().pattern("/health").sampleRate(0.0).build())
+                .build();
+
+        Assertions.assertTrue(timingPolicy.isSlowThresholdConfigured());
+        Assertions.assertFalse(timingPolicy.resolve("/reports/monthly").isSlow(Duration.ofSeconds(5).toNanos()));
+        Assertions.assertTrue(timingPolicy.resolve("/health").isSlow(Duration.ofSeconds(5).toNanos()));
+        Assertions.assertFalse(LoggingPolicy.DEFAULT.isSlowThresholdConfigured());
+        Assertions.assertFalse(LoggingPolicy.DEFAULT.resolve("/test").isSlow(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,96 @@
+package it.magiavventure.common.logging;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+@DisplayName("Redaction tests")
+class RedactionTest {
+
+    private final Redaction redaction = Redaction.builder()
+            .header("Authorization")
+            .header("x-api-key")
+            .bodyField("password")
+            .bodyField("$.card.number")
+            .build();
+
+    @Test
+    @DisplayName("Match header names ignoring case")
+    void matchHeaderNames_ignoringCase() {
+        Assertions.assertTrue(redaction.isHeaderRedacted("authorization"));
+        Assertions.assertTrue(redaction.isHeaderRedacted("X-API-KEY"));
+        Assertions.assertFalse(redaction.isHeaderRedacted("content-type"));
+        Assertions.assertFalse(redaction.isHeaderRedacted(null));
+        Assertions.assertFalse(Redaction.NONE.isHeaderRedacted("authorization"));
+    }
+
+    @Test
+    @DisplayName("Mask body fields by name at any depth and by path from the root")
+    void maskBodyFields_byNameAndPath() {
+        var builder = new StringBuilder();
+
+        var outcome = mask("""
+                {"user":{"Password":"secret","roles":["a"]},"card":{"number":"4111","cvv":"1"},
+                "items":[{"card":{"number":"keep"}}],"password":{"nested":true}}""", builder);
+
+        Assertions.assertEquals(Redaction.Outcome.MASKED, outcome);
+        Assertions.assertEquals("{\"user\":{\"Password\":\"***\",\"roles\":[\"a\"]},\"card\":{\"number\":\"***\","
+                + "\"cvv\":\"1\"},\"items\":[{\"card\":{\"number\":\"keep\"}}],\"password\":\"***\"}", builder.toString());
+    }
+
+    @Test
+    @DisplayName("Match paths through arrays")
+    void matchPaths_throughArrays() {
+        var builder = new StringBuilder();
+
+        mask("[{\"card\":{\"number\":\"4111\"}}]", builder);
+
+        Assertions.assertEquals("[{\"card\":{\"number\":\"***\"}}]", builder.toString());
+    }
+
+    @Test
+    @DisplayName("Leave body unchanged without redacted fields")
+    void leaveBodyUnchanged_withoutRedactedFields() {
+        var outcome = mask("{\"name\":\"test\"}", new StringBuilder());
+
+        Assertions.assertEquals(Redaction.Outcome.UNCHANGED, outcome);
+    }
+
+    @Test
+    @DisplayName("Never write the value of a redacted field cut by truncation")
+    void neverWriteValue_ofTruncatedRedactedField() {
+        var builder = new StringBuilder();
+
+        var outcome = mask("{\"a\":1,\"password\":\"sec", builder);
+
+        Assertions.assertEquals(Redaction.Outcome.INCOMPLETE, outcome);
+        Assertions.assertFalse(builder.toString().contains("sec"));
+        Assertions.assertTrue(builder.toString().startsWith("{\"a\":1"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"{\"user\":\"bob\",,\"password\":\"hunter2\"}",
+            "{\"user\":'bob',\"password\":\"hunter2\"}"})
+    @DisplayName("Report an invalid body as incomplete even when nothing was masked before the error")
+    void reportIncomplete_forInvalidBody(String body) {
+        var builder = new StringBuilder();
+
+        var outcome = mask(body, builder);
+
+        Assertions.assertEquals(Redaction.Outcome.INCOMPLETE, outcome);
+        Assertions.assertFalse(builder.toString().contains("hunter2"));
+    }
+
+    @Test
+    @DisplayName("Report content after the root value as incomplete")
+    void reportIncomplete_forContentAfterRoot() {
+        Assertions.assertEquals(Redaction.Outcome.INCOMPLETE, mask("{\"a\":1} {\"b\":2}", new StringBuilder()));
+        Assertions.assertEquals(Redaction.Outcome.UNCHANGED, mask("{\"a\":1} \n", new StringBuilder()));
+    }
+
+    private Redaction.Outcome mask(String body, StringBuilder builder) {
+        return redaction.appendMaskedJson(body.toCharArray(), 0, body.length(), builder);
+    }
+}
@@ -0,0 +1,131 @@
+package it.magiavventure.common.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.magiavventure.common.configuration.CommonProperties.ErrorsProperties.ErrorMessage;
+import it.magiavventure.common.error.ErrorCatalog;
+import it.magiavventure.common.logging.AsyncHttpLogWriter;
+import it.magiavventure.common.logging.HttpLogRecord;
+import it.magiavventure.common.logging.OverflowPolicy;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@DisplayName("Micrometer common metrics tests")
+class MicrometerCommonMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ErrorCatalog errorCatalog;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        errorCatalog = ErrorCatalog.of(Map.of(
+                "not-found", ErrorMessage.builder().code("not-found").status(404).build()));
+    }
+
+    @Test
+    @DisplayName("Register an error counter for every catalog code")
+    void registerErrorCounters_forCatalogCodes() {
+        new MicrometerCommonMetrics(meterRegistry, errorCatalog, logRecord -> {
+        });
+
+        Assertions.assertNotNull(meterRegistry.find(MicrometerCommonMetrics.ERRORS)
+                .tags("code", "not-found", "status", "404").counter());
+        Assertions.assertNotNull(meterRegistry.find(MicrometerCommonMetrics.ERRORS)
+                .tags("code", "unknown-error", "status", "500").counter());
+        Assertions.assertNull(meterRegistry.find(MicrometerCommonMetrics.LOGGING_QUEUE_SIZE).gauge());
+    }
+
+    @Test
+    @DisplayName("Count errors by code and fall back for codes missing from the catalog")
+    void recordError_byCode() {
+        var commonMetrics = new MicrometerCommonMetrics(meterRegistry, errorCatalog, logRecord -> {
+        });
+
+        commonMetrics.recordError(ErrorMessage.builder().code("not-found").status(404).build());
+        commonMetrics.recordError(ErrorMessage.builder().code("not-found").status(404).build());
+        commonMetrics.recordError(ErrorMessage.builder().code("custom").status(418).build());
+
+        Assertions.assertEquals(2, meterRegistry.get(MicrometerCommonMetrics.ERRORS)
+                .tags("code", "not-found").counter().count());
+        Assertions.assertEquals(1, meterRegistry.get(MicrometerCommonMetrics.ERRORS)
+                .tags("code", "other", "status", "418").counter().count());
+    }
+
+    @Test
+    @DisplayName("Reuse the fallback counter of a status without registering it again")
+    void recordError_reusesFallbackCounter() {
+        var commonMetrics = new MicrometerCommonMetrics(meterRegistry, errorCatalog, logRecord -> {
+        });
+        commonMetrics.recordError(ErrorMessage.builder().code("custom").status(418).build());
+        var counter = meterRegistry.get(MicrometerCommonMetrics.ERRORS).tags("code", "other", "status", "418")
+                .counter();
+        meterRegistry.remove(counter);
+
+        commonMetrics.recordError(ErrorMessage.builder().code("other-custom").status(418).build());
+
+        Assertions.assertEquals(2, counter.count());
+        Assertions.assertNull(meterRegistry.find(MicrometerCommonMetrics.ERRORS)
+                .tags("code", "other", "status", "418").counter());
+    }
+
+    @Test
+    @DisplayName("Count an error answered with another status under the returned status")
+    void recordError_withReturnedStatus() {
+        var commonMetrics = new MicrometerCommonMetrics(meterRegistry, errorCatalog, logRecord -> {
+        });
+        var notFound = errorCatalog.retrieve("not-found");
+
+        commonMetrics.recordError(notFound, 410);
+        commonMetrics.recordError(notFound, 410);
+        commonMetrics.recordError(notFound, 404);
+        commonMetrics.recordError(ErrorMessage.builder().code("custom").status(418).build(), 409);
+
+        Assertions.assertEquals(2, meterRegistry.get(MicrometerCommonMetrics.ERRORS)
+                .tags("code", "not-found", "status", "410").counter().count());
+        Assertions.assertEquals(1, meterRegistry.get(MicrometerCommonMetrics.ERRORS)
+                .tags("code", "not-found", "status", "404").counter().count());
+        Assertions.assertEquals(1, meterRegistry.get(MicrometerCommonMetrics.ERRORS)
+                .tags("code", "other", "status", "409").counter().count());
+    }
+
+    @Test
+    @DisplayName("Record logging filter overhead and logged body sizes")
+    void recordLoggingMeters() {
+        var commonMetrics = new MicrometerCommonMetrics(meterRegistry, errorCatalog, logRecord -> {
+        });
+
+        commonMetrics.recordLoggingFilterOverhead(TimeUnit.MICROSECONDS.toNanos(5));
+        commonMetrics.recordLoggedBodyBytes(HttpLogRecord.Type.REQUEST, 10);
+        commonMetrics.recordLoggedBodyBytes(HttpLogRecord.Type.RESPONSE, 30);
+
+        Assertions.assertEquals(1, meterRegistry.get(MicrometerCommonMetrics.LOGGING_FILTER_OVERHEAD)
+                .timer().count());
+        Assertions.assertEquals(10, meterRegistry.get(MicrometerCommonMetrics.LOGGED_BODY_BYTES)
+                .tags("direction", "request").summary().totalAmount());
+        Assertions.assertEquals(30, meterRegistry.get(MicrometerCommonMetrics.LOGGED_BODY_BYTES)
+                .tags("direction", "response").summary().totalAmount());
+    }
+
+    @Test
+    @DisplayName("Expose queue size and dropped records of the async writer")
+    void registerAsyncWriterMeters() throws InterruptedException {
+        var asyncHttpLogWriter = new AsyncHttpLogWriter(logRecord -> {
+        }, 16, OverflowPolicy.DROP, Duration.ofSeconds(1));
+        asyncHttpLogWriter.start();
+        try {
+            new MicrometerCommonMetrics(meterRegistry, errorCatalog, asyncHttpLogWriter);
+
+            Assertions.assertNotNull(meterRegistry.find(MicrometerCommonMetrics.LOGGING_QUEUE_SIZE).gauge());
+            Assertions.assertEquals(0, meterRegistry.get(MicrometerCommonMetrics.LOGGING_DROPPED)
+                    .functionCounter().count());
+        } finally {
+            asyncHttpLogWriter.stop();
+        }
+    }
+}
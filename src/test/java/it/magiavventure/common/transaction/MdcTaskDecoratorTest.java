@@ -0,0 +1,69 @@
+package it.magiavventure.common.transaction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+@DisplayName("Mdc task decorator tests")
+class MdcTaskDecoratorTest {
+
+    private final MdcTaskDecorator mdcTaskDecorator = new MdcTaskDecorator();
+
+    @AfterEach
+    void tearDown() {
+        MDC.clear();
+    }
+
+    @Test
+    @DisplayName("Carry the MDC of the submitting thread to the task thread")
+    void carryMdc_toTaskThread() throws InterruptedException {
+        var executor = Executors.newSingleThreadExecutor();
+        var taskTransactionId = new AtomicReference<String>();
+        var leftTransactionId = new AtomicReference<String>("not-checked");
+        MDC.put("transactionId", "submitted");
+
+        executor.execute(mdcTaskDecorator.decorate(() -> taskTransactionId.set(MDC.get("transactionId"))));
+        executor.execute(() -> leftTransactionId.set(MDC.get("transactionId")));
+        executor.shutdown();
+
+        Assertions.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        Assertions.assertEquals("submitted", taskTransactionId.get());
+        Assertions.assertNull(leftTransactionId.get());
+    }
+
+    @Test
+    @DisplayName("Restore the previous MDC of the running thread")
+    void restorePreviousMdc_ofRunningThread() {
+        MDC.put("transactionId", "submitted");
+        var task = mdcTaskDecorator.decorate(() -> Assertions.assertEquals("submitted", MDC.get("transactionId")));
+        MDC.put("transactionId", "running");
+
+        task.run();
+
+        Assertions.assertEquals("running", MDC.get("transactionId"));
+    }
+
+    @Test
+    @DisplayName("Carry the transaction context of the submitting thread to the task")
+    void carryTransactionContext_toTask() {
+        var transactionContext = TransactionContext.of("submitted");
+        var previous = TransactionContext.attach(transactionContext);
+        Runnable task;
+        try {
+            task = mdcTaskDecorator.decorate(() -> Assertions.assertSame(transactionContext,
+                    TransactionContext.current()));
+        } finally {
+            TransactionContext.restore(previous);
+        }
+
+        task.run();
+
+        Assertions.assertNull(TransactionContext.current());
+    }
+}
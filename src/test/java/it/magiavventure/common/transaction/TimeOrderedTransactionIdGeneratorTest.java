@@ -0,0 +1,65 @@
+package it.magiavventure.common.transaction;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.UUID;
+
+@DisplayName("Time ordered transaction id generator tests")
+class TimeOrderedTransactionIdGeneratorTest {
+
+    private final TimeOrderedTransactionIdGenerator generator = new TimeOrderedTransactionIdGenerator();
+
+    @Test
+    @DisplayName("Generate version 7 UUIDs with the IETF variant")
+    void generate_version7Uuid() {
+        var uuid = UUID.fromString(generator.generate());
+
+        Assertions.assertEquals(7, uuid.version());
+        Assertions.assertEquals(2, uuid.variant());
+    }
+
+    @Test
+    @DisplayName("Encode the timestamp in the first 48 bits")
+    void next_encodesTimestamp() {
+        long epochMillis = 1_700_000_000_000L;
+
+        var uuid = generator.next(epochMillis);
+
+        Assertions.assertEquals(epochMillis, uuid.getMostSignificantBits() >>> 16);
+    }
+
+    @Test
+    @DisplayName("Sort ids created in different milliseconds by creation time")
+    void next_sortsByTime() {
+        var first = generator.next(1_700_000_000_000L).toString();
+        var second = generator.next(1_700_000_000_001L).toString();
+
+        Assertions.assertTrue(first.compareTo(second) < 0);
+    }
+
+    @Test
+    @DisplayName("Generate unique ids")
+    void generate_unique() {
+        var ids = new HashSet<String>();
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(generator.generate());
+        }
+
+        Assertions.assertEquals(10_000, ids.size());
+    }
+
+    @Test
+    @DisplayName("Draw a new salt on every start, so restored instances do not repeat the ids")
+    void start_drawsNewSalt() {
+        long salt = generator.salt();
+
+        generator.start();
+
+        Assertions.assertNotEquals(salt, generator.salt());
+        Assertions.assertTrue(generator.isRunning());
+        Assertions.assertTrue(generator.isAutoStartup());
+    }
+}
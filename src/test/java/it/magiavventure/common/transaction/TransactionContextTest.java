@@ -0,0 +1,114 @@
+package it.magiavventure.common.transaction;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.HttpHeaders;
+
+@DisplayName("Transaction context tests")
+class TransactionContextTest {
+
+    private static final String TRACEPARENT = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+    private static final TransactionIdGenerator GENERATOR = () -> "018f3c6e-7b2a-7c3d-9e4f-0a1b2c3d4e5f";
+
+    @Test
+    @DisplayName("Continue a valid traceparent with a new span and keep the tracestate")
+    void resolve_continuesTraceparent() {
+        var transactionContext = TransactionContext.resolve(null, TRACEPARENT, "rojo=00f067aa0ba902b7", GENERATOR);
+
+        Assertions.assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", transactionContext.getTransactionId());
+        Assertions.assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", transactionContext.getTraceId());
+        Assertions.assertEquals(16, transactionContext.getSpanId().length());
+        Assertions.assertEquals("00-4bf92f3577b34da6a3ce929d0e0e4736-" + transactionContext.getSpanId() + "-01",
+                transactionContext.getTraceparent());
+        Assertions.assertEquals("rojo=00f067aa0ba902b7", transactionContext.getTracestate());
+    }
+
+    @Test
+    @DisplayName("Start the trace from a UUID transaction id, so the two ids match")
+    void resolve_startsTraceFromTransactionId() {
+        var transactionContext = TransactionContext.resolve(null, null, "rojo=00f067aa0ba902b7", GENERATOR);
+
+        Assertions.assertEquals("018f3c6e-7b2a-7c3d-9e4f-0a1b2c3d4e5f", transactionContext.getTransactionId());
+        Assertions.assertEquals("018f3c6e7b2a7c3d9e4f0a1b2c3d4e5f", transactionContext.getTraceId());
+        Assertions.assertTrue(transactionContext.getTraceparent().endsWith("-01"));
+        Assertions.assertNull(transactionContext.getTracestate());
+    }
+
+    @Test
+    @DisplayName("Start a random trace when the transaction id is not made of 32 hex digits")
+    void resolve_startsRandomTrace_forOtherTransactionIds() {
+        var transactionContext = TransactionContext.resolve("legacy-id", null, null, GENERATOR);
+
+        Assertions.assertEquals("legacy-id", transactionContext.getTransactionId());
+        Assertions.assertEquals(32, transactionContext.getTraceId().length());
+        Assertions.assertTrue(TransactionContext.isValidTraceparent(transactionContext.getTraceparent()));
+    }
+
+    @Test
+    @DisplayName("Keep only the sampled flag of the incoming traceparent")
+    void resolve_keepsSampledFlag() {
+        var notSampled = TransactionContext.resolve(null, TRACEPARENT.replace("-01", "-02"), null, GENERATOR);
+
+        Assertions.assertTrue(notSampled.getTraceparent().endsWith("-00"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7",
+            "00-4BF92F3577B34DA6A3CE929D0E0E4736-00f067aa0ba902b7-01",
+            "00-00000000000000000000000000000000-00f067aa0ba902b7-01",
+            "00-4bf92f3577b34da6a3ce929d0e0e4736-0000000000000000-01",
+            "ff-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01",
+            "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01-extra",
+            "01-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01extra",
+            "00_4bf92f3577b34da6a3ce929d0e0e4736_00f067aa0ba902b7_01"
+    })
+    @DisplayName("Reject traceparent headers with an unknown layout")
+    void isValidTraceparent_rejectsUnknownLayout(String traceparent) {
+        Assertions.assertFalse(TransactionContext.isValidTraceparent(traceparent));
+    }
+
+    @Test
+    @DisplayName("Accept traceparent headers of future versions with additional fields")
+    void isValidTraceparent_acceptsFutureVersions() {
+        Assertions.assertTrue(TransactionContext.isValidTraceparent(
+                "01-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01-future"));
+    }
+
+    @Test
+    @DisplayName("Drop a tracestate with control characters")
+    void resolve_dropsTracestateWithControlCharacters() {
+        var transactionContext = TransactionContext.resolve(null, TRACEPARENT, "rojo=1\r\nfake: header", GENERATOR);
+
+        Assertions.assertNull(transactionContext.getTracestate());
+    }
+
+    @Test
+    @DisplayName("Write the headers to forward, keeping the ones already set")
+    void writeHeaders_keepsHeadersAlreadySet() {
+        var transactionContext = TransactionContext.resolve(null, TRACEPARENT, "rojo=1", GENERATOR);
+        var headers = new HttpHeaders();
+        headers.set(TransactionId.TRANSACTION_ID, "explicit");
+
+        transactionContext.writeHeaders(headers);
+
+        Assertions.assertEquals("explicit", headers.getFirst(TransactionId.TRANSACTION_ID));
+        Assertions.assertEquals(transactionContext.getTraceparent(), headers.getFirst(TransactionContext.TRACEPARENT));
+        Assertions.assertEquals("rojo=1", headers.getFirst(TransactionContext.TRACESTATE));
+    }
+
+    @Test
+    @DisplayName("Write only the transaction id when the trace context is disabled")
+    void writeHeaders_transactionIdOnly() {
+        var headers = new HttpHeaders();
+
+        TransactionContext.of("legacy-id").writeHeaders(headers);
+
+        Assertions.assertEquals("legacy-id", headers.getFirst(TransactionId.TRANSACTION_ID));
+        Assertions.assertFalse(headers.containsKey(TransactionContext.TRACEPARENT));
+    }
+}